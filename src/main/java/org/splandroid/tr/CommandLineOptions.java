@@ -54,6 +54,58 @@ class CommandLineOptions {
   public static final String OPTION_LONG_PROPS_FILE = "propfile";
   public static final String OPTION_PROPS_FILE_HELP = "Specifies the properties file to use";
 
+  public static final String OPTION_JOBS = "j";
+  public static final String OPTION_LONG_JOBS = "jobs";
+  public static final String OPTION_JOBS_HELP = "Sets the number of test cases in a test suite that "
+      + "may run concurrently";
+
+  public static final String OPTION_TEST_JOBS = "t";
+  public static final String OPTION_LONG_TEST_JOBS = "testjobs";
+  public static final String OPTION_TEST_JOBS_HELP = "Sets the number of thread-safe tests in a test suite "
+      + "that may run concurrently";
+
+  public static final String OPTION_COMPONENTS = "c";
+  public static final String OPTION_LONG_COMPONENTS = "components";
+  public static final String OPTION_COMPONENTS_HELP = "Sets the number of components that may be "
+      + "tested concurrently";
+
+  public static final String OPTION_SHARD = "s";
+  public static final String OPTION_LONG_SHARD = "shard";
+  public static final String OPTION_SHARD_HELP = "Runs one shard of each test suite, given as "
+      + "<index>/<count> where index is from 1 to count";
+
+  public static final String OPTION_SHARD_HISTORY = "sh";
+  public static final String OPTION_LONG_SHARD_HISTORY = "shardhistory";
+  public static final String OPTION_SHARD_HISTORY_HELP = "Balances the shards by the test case durations "
+      + "in the given history file, which every shard must be given. Otherwise test cases are "
+      + "dealt to the shards by their IDs";
+
+  public static final String OPTION_COORDINATOR = "co";
+  public static final String OPTION_LONG_COORDINATOR = "coordinator";
+  public static final String OPTION_COORDINATOR_HELP = "Hands the test suites' test cases to workers "
+      + "that connect to [<host>:]<port>. The host defaults to the loopback address";
+
+  public static final String OPTION_WORKER = "wo";
+  public static final String OPTION_LONG_WORKER = "worker";
+  public static final String OPTION_WORKER_HELP = "Runs test cases handed out by the coordinator at "
+      + "[<host>:]<port> instead of test suites given on the command line";
+
+  public static final String OPTION_NO_VALIDATE = "nv";
+  public static final String OPTION_LONG_NO_VALIDATE = "novalidate";
+  public static final String OPTION_NO_VALIDATE_HELP = "Skips checking, before each test suite is run, "
+      + "that its test classes have the setters and test methods it uses";
+
+  public static final String OPTION_STREAM = "st";
+  public static final String OPTION_LONG_STREAM = "stream";
+  public static final String OPTION_STREAM_HELP = "Reads each test suite's test cases while they are "
+      + "run, in file order, instead of reading them all before the suite starts";
+
+  public static final String OPTION_MERGE = "m";
+  public static final String OPTION_LONG_MERGE = "merge";
+  public static final String OPTION_MERGE_HELP = "Merges the results files or directories given, such "
+      + "as those of the shards of a test suite, into a single results file instead of "
+      + "running test suites";
+
   public static final String OPTION_HELP = "h";
   public static final String OPTION_LONG_HELP = "help";
   public static final String OPTION_HELP_HELP = "Displays application usage";
@@ -62,8 +114,22 @@ class CommandLineOptions {
   public static final String SUITE_ARGUMENT_ERROR_FMT = "Invalid test suite argument. Argument cannot contain both "
       + "includes and excludes: [%s]\n\n";
   public static final String LOG_LEVEL_ARGUMENT_ERROR_FMT = "Invalid log level: [%s]";
+  public static final String COUNT_ARGUMENT_ERROR_FMT = "Invalid %s argument, expected a positive "
+      + "integer: [%s]\n";
+
+  public static final String SHARD_ARGUMENT_ERROR_FMT = "Invalid shard argument, expected <index>/<count> "
+      + "with index from 1 to count: [%s]\n";
+  public static final String SHARD_HISTORY_ARGUMENT_ERROR_FMT = "Shard history file not found: [%s]\n";
+  public static final String ADDRESS_ARGUMENT_ERROR_FMT = "Invalid %s argument, expected [<host>:]<port>: "
+      + "[%s]\n";
+  public static final String STREAM_ARGUMENT_ERROR_FMT = "The %s option cannot be used with "
+      + "the %s option\n";
+  public static final String MERGE_ARGUMENT_ERROR_FMT = "The %s option expects one or more results "
+      + "files or directories\n";
 
   public static final String OPTION_SUITE_DELIMITER = ":";
+  public static final String OPTION_SHARD_DELIMITER = "/";
+  public static final String OPTION_ADDRESS_DELIMITER = ":";
   public static final String OPTION_SUITE_EXCLUDE_PREFIX = "-";
 
   public static final String HELP_HEADER = "Where options are:";
@@ -72,5 +138,8 @@ class CommandLineOptions {
       + "Prefixing a test case ID with a '-' character excludes the "
       + "test case from the component's test suite. Otherwise, only the "
       + "test cases specified are included in the components test suite. "
-      + "Mixing includes and excludes is not supported.";
+      + "Mixing includes and excludes is not supported.\n\n"
+      + "The results of several runs, such as the shards of a test suite, "
+      + "are combined into a single report with:\n"
+      + "-" + OPTION_MERGE + " [options] <results file or directory>+";
 }
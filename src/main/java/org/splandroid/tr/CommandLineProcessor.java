@@ -18,6 +18,9 @@
  */
 package org.splandroid.tr;
 
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -141,6 +144,65 @@ class CommandLineProcessor {
         CommandLineOptions.OPTION_LOG_FILE_HELP,
         defaultLogFileName));
 
+    // Concurrent test cases
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_JOBS,
+        CommandLineOptions.OPTION_LONG_JOBS, true,
+        CommandLineOptions.OPTION_JOBS_HELP,
+        "1"));
+
+    // Concurrent thread-safe tests
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_TEST_JOBS,
+        CommandLineOptions.OPTION_LONG_TEST_JOBS, true,
+        CommandLineOptions.OPTION_TEST_JOBS_HELP,
+        "1"));
+
+    // Concurrent components
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_COMPONENTS,
+        CommandLineOptions.OPTION_LONG_COMPONENTS, true,
+        CommandLineOptions.OPTION_COMPONENTS_HELP,
+        "1"));
+
+    // Test suite shard
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_SHARD,
+        CommandLineOptions.OPTION_LONG_SHARD, true,
+        CommandLineOptions.OPTION_SHARD_HELP));
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_SHARD_HISTORY,
+        CommandLineOptions.OPTION_LONG_SHARD_HISTORY, true,
+        CommandLineOptions.OPTION_SHARD_HISTORY_HELP));
+
+    // Distributed coordinator and worker
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_COORDINATOR,
+        CommandLineOptions.OPTION_LONG_COORDINATOR, true,
+        CommandLineOptions.OPTION_COORDINATOR_HELP));
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_WORKER,
+        CommandLineOptions.OPTION_LONG_WORKER, true,
+        CommandLineOptions.OPTION_WORKER_HELP));
+
+    // Test suite validation
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_NO_VALIDATE,
+        CommandLineOptions.OPTION_LONG_NO_VALIDATE,
+        CommandLineOptions.OPTION_NO_VALIDATE_HELP));
+
+    // Streamed test suites
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_STREAM,
+        CommandLineOptions.OPTION_LONG_STREAM,
+        CommandLineOptions.OPTION_STREAM_HELP));
+
+    // Merge results
+    supportedOptions.add(new CommandLineOption(
+        CommandLineOptions.OPTION_MERGE,
+        CommandLineOptions.OPTION_LONG_MERGE,
+        CommandLineOptions.OPTION_MERGE_HELP));
+
     options = new Options();
     for (CommandLineOption option : supportedOptions) {
       options.addOption(option);
@@ -210,6 +272,151 @@ class CommandLineProcessor {
     return logFile;
   }
 
+  public int getJobs() {
+    return getCountOption(CommandLineOptions.OPTION_JOBS);
+  }
+
+  public int getTestJobs() {
+    return getCountOption(CommandLineOptions.OPTION_TEST_JOBS);
+  }
+
+  public int getConcurrentComponents() {
+    return getCountOption(CommandLineOptions.OPTION_COMPONENTS);
+  }
+
+  /**
+   * @return true if test suites are to be validated before they are run
+   */
+  public boolean isValidating() {
+    return commandLine.hasOption(CommandLineOptions.OPTION_NO_VALIDATE) == false;
+  }
+
+  /**
+   * Streamed test suites are run in file order, so they cannot be sharded or
+   * handed out by a coordinator.
+   * 
+   * @return true if test cases are to be read as they are run
+   */
+  public boolean isStreaming() {
+    if (commandLine.hasOption(CommandLineOptions.OPTION_STREAM) == false) {
+      return false;
+    }
+
+    for (String optionName : new String[] { CommandLineOptions.OPTION_SHARD,
+        CommandLineOptions.OPTION_COORDINATOR }) {
+      if (commandLine.hasOption(optionName)) {
+        System.err.printf(CommandLineOptions.STREAM_ARGUMENT_ERROR_FMT,
+            CommandLineOptions.OPTION_LONG_STREAM, getOption(optionName)
+                .getLongOpt());
+        System.exit(1);
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Shard specs have the format &lt;index&gt;/&lt;count&gt;, where the index
+   * runs from 1 to the count.
+   * 
+   * @return The shard to run, or null if the test suites are not sharded
+   */
+  public ShardInfo getShard() {
+    final String value = getStringOption(CommandLineOptions.OPTION_SHARD);
+    if (value == null) {
+      return null;
+    }
+
+    final String[] parts = value
+        .split(CommandLineOptions.OPTION_SHARD_DELIMITER);
+    int index = 0;
+    int count = 0;
+    if (parts.length == 2) {
+      try {
+        index = Integer.parseInt(parts[0].trim());
+        count = Integer.parseInt(parts[1].trim());
+      } catch (NumberFormatException ex) {
+        count = 0;
+      }
+    }
+
+    if (count < 1 || index < 1 || index > count) {
+      System.err.printf(CommandLineOptions.SHARD_ARGUMENT_ERROR_FMT, value);
+      System.exit(1);
+    }
+
+    return new ShardInfo(index, count);
+  }
+
+  /**
+   * The shard history is given to every shard so that they all compute the
+   * same split. A machine's own duration history is never used for this.
+   * 
+   * @return The duration history file to balance shards by, or null if the
+   *         shards are split by test case ID
+   */
+  public File getShardHistoryFile() {
+    final String value = getStringOption(CommandLineOptions.OPTION_SHARD_HISTORY);
+    if (value == null) {
+      return null;
+    }
+
+    final File historyFile = new File(value);
+    if (historyFile.isFile() == false) {
+      System.err.printf(CommandLineOptions.SHARD_HISTORY_ARGUMENT_ERROR_FMT,
+          value);
+      System.exit(1);
+    }
+
+    return historyFile;
+  }
+
+  /**
+   * @return The address for the coordinator to listen on, or null if not
+   *         coordinating workers
+   */
+  public InetSocketAddress getCoordinatorAddress() {
+    return getAddressOption(CommandLineOptions.OPTION_COORDINATOR);
+  }
+
+  /**
+   * @return The address of the coordinator to work for, or null if not a
+   *         worker
+   */
+  public InetSocketAddress getWorkerAddress() {
+    return getAddressOption(CommandLineOptions.OPTION_WORKER);
+  }
+
+  /**
+   * Merging is asked for by an option rather than a command word, so that no
+   * component name is mistaken for it.
+   * 
+   * @return true if results are to be merged instead of test suites run
+   */
+  public boolean isMergeCommand() {
+    return commandLine.hasOption(CommandLineOptions.OPTION_MERGE);
+  }
+
+  /**
+   * @return The results files or directories given to the merge command
+   */
+  public Collection<File> getMergeInputs() {
+    assert isMergeCommand() : "Not the merge command";
+    final String[] args = commandLine.getArgs();
+    if (args.length == 0) {
+      System.err.printf(CommandLineOptions.MERGE_ARGUMENT_ERROR_FMT,
+          CommandLineOptions.OPTION_LONG_MERGE);
+      System.exit(1);
+    }
+
+    final Collection<File> inputs = new ArrayList<File>();
+    for (String arg : args) {
+      inputs.add(new File(arg));
+    }
+
+    return inputs;
+  }
+
   /**
    * Test suite specs have the format:
    * <p>
@@ -279,6 +486,57 @@ class CommandLineProcessor {
     return value;
   }
 
+  private int getCountOption(String optionName) {
+    final String value = getStringOption(optionName);
+
+    int count = 0;
+    try {
+      count = Integer.parseInt(value);
+    } catch (NumberFormatException ex) {
+      count = 0;
+    }
+
+    if (count < 1) {
+      System.err.printf(CommandLineOptions.COUNT_ARGUMENT_ERROR_FMT,
+          getOption(optionName).getLongOpt(), value);
+      System.exit(1);
+    }
+
+    return count;
+  }
+
+  /**
+   * Addresses have the format [&lt;host&gt;:]&lt;port&gt;. The host defaults
+   * to the loopback address.
+   */
+  private InetSocketAddress getAddressOption(String optionName) {
+    final String value = getStringOption(optionName);
+    if (value == null) {
+      return null;
+    }
+
+    final int delimiter = value
+        .lastIndexOf(CommandLineOptions.OPTION_ADDRESS_DELIMITER);
+    final String host = (delimiter < 0) ? null : value.substring(0, delimiter);
+    int port = -1;
+    try {
+      port = Integer.parseInt(value.substring(delimiter + 1));
+    } catch (NumberFormatException ex) {
+      port = -1;
+    }
+
+    if (port < 0 || port > 65535 || (host != null && host.length() == 0)) {
+      System.err.printf(CommandLineOptions.ADDRESS_ARGUMENT_ERROR_FMT,
+          getOption(optionName).getLongOpt(), value);
+      System.exit(1);
+    }
+
+    if (host == null) {
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+    return new InetSocketAddress(host, port);
+  }
+
   private CommandLineOption getOption(String optionName) {
     final CommandLineOption option = (CommandLineOption )options
         .getOption(optionName);
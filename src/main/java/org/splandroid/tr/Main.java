@@ -18,45 +18,186 @@
  */
 package org.splandroid.tr;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
-import org.splandroid.tr.commons.Conditionals;
+import org.splandroid.tr.commons.NamedThreadFactory;
+import org.splandroid.tr.distributed.Coordinator;
+import org.splandroid.tr.distributed.Worker;
 import org.splandroid.tr.events.IEventObserver;
-import org.splandroid.tr.parsers.IParser;
 import org.splandroid.tr.parsers.ISymbolMap;
 import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestCaseSource;
+import org.splandroid.tr.parsers.ParserException;
+import org.splandroid.tr.parsers.TestCasePipeline;
 import org.splandroid.tr.parsers.profile.ProfileParser;
+import org.splandroid.tr.parsers.tests.TestSuiteCache;
 import org.splandroid.tr.parsers.tests.TestsParser;
 import org.splandroid.tr.reporting.IReportFacade;
 import org.splandroid.tr.reporting.TRTestReportFactory;
+import org.splandroid.tr.reporting.TRTestResults;
+import org.splandroid.tr.testing.DurationHistory;
 import org.splandroid.tr.testing.ITRTestInputProvider;
 import org.splandroid.tr.testing.ITRTestOutputManager;
 import org.splandroid.tr.testing.TRTestInputProvider;
+import org.splandroid.tr.testing.TRTestCaseSharder;
 import org.splandroid.tr.testing.TRTestOutputManager;
 import org.splandroid.tr.testing.TRTestSuite;
+import org.splandroid.tr.testing.TRTestSuiteValidator;
 
 public class Main {
-  interface Comparator {
-    public int compare(String currentTestCaseId, Collection<String> testCaseIds);
+  /**
+   * Settings, taken from the command line, that every component is tested
+   * with.
+   */
+  private static class ComponentSettings {
+    public final String testInfoDir;
+    public final String testResultsDir;
+    public final Date timeNow;
+    public final int jobs;
+    public final int testJobs;
+    public final DurationHistory durationHistory;
+    public final ShardInfo shard;
+    public final DurationHistory shardHistory;
+    public final TRTestResults results;
+    public final boolean validate;
+    public final boolean stream;
+    public final TestSuitePrefetcher prefetcher;
+
+    public ComponentSettings(String testInfo, String testResults, Date time,
+        int noJobs, int noTestJobs, DurationHistory history,
+        ShardInfo shardInfo, DurationHistory shardDurations,
+        TRTestResults runResults, boolean validateSuites,
+        boolean streamSuites, TestSuitePrefetcher suitePrefetcher) {
+      testInfoDir = testInfo;
+      testResultsDir = testResults;
+      timeNow = time;
+      jobs = noJobs;
+      testJobs = noTestJobs;
+      durationHistory = history;
+      shard = shardInfo;
+      shardHistory = shardDurations;
+      results = runResults;
+      validate = validateSuites;
+      stream = streamSuites;
+      prefetcher = suitePrefetcher;
+    }
+  }
+
+  /**
+   * Parses components' test suites on a pool of threads, a few components
+   * ahead of the component being set up, so that parsing overlaps the testing
+   * of earlier components. Each parse has its own input provider and parsers.
+   */
+  private static class TestSuitePrefetcher {
+    private final String testInfoDir;
+    private final ExecutorService pool;
+    private final int prefetchCount;
+    private final LinkedList<TestSuiteInfo> waiting;
+    private final Map<TestSuiteInfo, Future<List<ITestCaseDescriptor>>> parsing;
+
+    public TestSuitePrefetcher(Collection<TestSuiteInfo> suites,
+        String testInfo, int noThreads) {
+      testInfoDir = testInfo;
+      pool = Executors.newFixedThreadPool(noThreads, new NamedThreadFactory(
+          "parser"));
+      prefetchCount = noThreads * prefetchedSuitesPerThread;
+      waiting = new LinkedList<TestSuiteInfo>(suites);
+      parsing = new IdentityHashMap<TestSuiteInfo, Future<List<ITestCaseDescriptor>>>();
+      prefetch();
+    }
+
+    private void submit(final TestSuiteInfo suite) {
+      parsing.put(suite, pool.submit(new Callable<List<ITestCaseDescriptor>>() {
+        public List<ITestCaseDescriptor> call() throws Exception {
+          final String component = suite.getComponent();
+          final ITRTestInputProvider testInputProv = new TRTestInputProvider(
+              testInfoDir);
+          testInputProv.setComponent(component);
+          return setUpTestSuite(suite, testInputProv, null);
+        }
+      }));
+    }
+
+    private void prefetch() {
+      while (parsing.size() < prefetchCount && waiting.isEmpty() == false) {
+        submit(waiting.removeFirst());
+      }
+    }
+
+    private synchronized Future<List<ITestCaseDescriptor>> take(
+        TestSuiteInfo suite) {
+      if (parsing.containsKey(suite) == false) {
+        waiting.remove(suite);
+        submit(suite);
+      }
+      final Future<List<ITestCaseDescriptor>> testCases = parsing
+          .remove(suite);
+      prefetch();
+      return testCases;
+    }
+
+    /**
+     * Get a test suite's parsed test cases, waiting for them if they are still
+     * being parsed.
+     */
+    public List<ITestCaseDescriptor> get(TestSuiteInfo suite) throws Exception {
+      try {
+        return take(suite).get();
+      } catch (ExecutionException ex) {
+        final Throwable cause = ex.getCause();
+        if (cause instanceof Exception) {
+          throw (Exception )cause;
+        }
+        throw new TRException(cause);
+      }
+    }
+
+    public void shutdown() {
+      pool.shutdownNow();
+    }
   }
 
   private static final String applicationName = "tr";
-  private static final String usageMessage = " [options] <test suites>";
+  private static final String usageMessage = " [options] <test suites> | -"
+      + CommandLineOptions.OPTION_MERGE + " [options] <results>";
 
   private static final String propertiesFile = applicationName + ".prop";
   private static final String logFile = applicationName + ".log";
+  private static final String durationHistoryFile = "durations.properties";
+  private static final String testSuiteCacheFile = "tests.cache";
+
+  // Test cases read ahead of those running, per job, in a streamed suite
+  private static final int streamedTestCasesPerJob = 4;
+
+  // Test suites parsed ahead of those being set up, per parser thread
+  private static final int prefetchedSuitesPerThread = 2;
 
   private static final String loggingFilePropertyName = "log4j.appender.A1.File";
 
@@ -79,34 +220,65 @@ public class Main {
   }
 
   /**
-   * Remove test cases from the list of test-cases. This allows only certain
-   * test cases to be run in a test suite. The comparator defines which test
-   * case is to be removed.
-   * 
-   * @param testCases
-   * @param testCaseIds
-   * @param comparator
+   * Keep only the test cases a test suite selects, for test cases that were
+   * not selected while they were parsed.
    */
-  private static void removeTestCaseDescriptors(
-      List<ITestCaseDescriptor> testCases, Collection<String> testCaseIds,
-      Comparator comparator) {
-    final Iterator<ITestCaseDescriptor> iterator = testCases.iterator();
-
-    while (iterator.hasNext()) {
-      final ITestCaseDescriptor testCase = iterator.next();
-      final String currentTestCaseId = testCase.getId();
-      if (comparator.compare(currentTestCaseId, testCaseIds) == 0) {
+  private static List<ITestCaseDescriptor> selectTestCases(TestSuiteInfo suite,
+      List<ITestCaseDescriptor> testCases) {
+    if (suite.isSelectingAll() == true) {
+      return testCases;
+    }
+
+    final List<ITestCaseDescriptor> selected = new ArrayList<ITestCaseDescriptor>();
+    for (ITestCaseDescriptor testCase : testCases) {
+      if (suite.isSelected(testCase.getId()) == true) {
+        selected.add(testCase);
+      } else {
         logger.info(String.format("Removing test case with ID [%s]",
             testCase.getId()));
-        iterator.remove();
       }
     }
+    return selected;
+  }
+
+  /**
+   * Parse a component's profile.xml into a symbol table for its tests.xml.
+   * 
+   * @param environmentNames
+   *          - If not null, the process environment variables the profile
+   *          expects to exist are added to it
+   */
+  private static ISymbolMap parseProfile(String component,
+      InputStream profileStream, Set<String> environmentNames)
+      throws Exception {
+    logger.debug(String.format("Parsing profile for [%s]...", component));
+    final ISymbolMap symbols = new SymbolMap();
+    final ProfileParser profileParser = new ProfileParser();
+    profileParser.setSymbolTable(symbols).parse(profileStream);
+    if (environmentNames != null) {
+      environmentNames.addAll(profileParser.getExpectedEnvironmentNames());
+    }
+
+    return symbols;
+  }
+
+  private static byte[] readInput(InputStream stream) throws IOException {
+    try {
+      return IOUtils.toByteArray(stream);
+    } finally {
+      stream.close();
+    }
   }
 
   /**
    * Setup the configuration for a test suite. This method reads the profile.xml
    * for the component to define the tags/attributes in the component's
    * tests.xml file. The tests.xml file then drives the running of the tests.
+   * Only the test cases the suite selects are returned. When all test cases
+   * are selected they are cached, and the cached copy is used instead while
+   * the XML files and the environment variables they use, or expect to exist,
+   * are unchanged. A variable the profile expects that has gone missing since
+   * invalidates the cached copy, so that the profile parse reports it.
    * 
    * @param component
    *          - Name of the component in RCS
@@ -116,78 +288,46 @@ public class Main {
       ITRTestInputProvider testInputProv, ITRTestOutputManager resultMgr)
       throws Exception {
     final String component = suite.getComponent();
-    final InputStream profileStream = testInputProv.getProfileFileStream();
+    final byte[] profileXML = readInput(testInputProv.getProfileFileStream());
+    final byte[] testsXML = readInput(testInputProv.getTestsFileStream());
+    final TestSuiteCache cache = new TestSuiteCache(new File(
+        testInputProv.getComponentInputDirectory(), testSuiteCacheFile),
+        profileXML, testsXML);
 
-    logger.debug(String.format("Parsing profile for [%s]...", component));
-    final ISymbolMap symbols = new SymbolMap();
-    final IParser profileParser = new ProfileParser();
-    profileParser.setSymbolTable(symbols).parse(profileStream);
+    try {
+      final List<ITestCaseDescriptor> testCases = cache.load();
+      if (testCases != null) {
+        logger.debug(String.format("Loaded cached tests for [%s]", component));
+        return selectTestCases(suite, testCases);
+      }
+    } catch (IOException ex) {
+      logger.warn(String.format("Failed to load cached tests for [%s]: %s",
+          component, ex.getMessage()));
+    }
+
+    final Set<String> environmentNames = new TreeSet<String>();
+    final ISymbolMap symbols = parseProfile(component, new ByteArrayInputStream(
+        profileXML), environmentNames);
 
     logger.debug(String.format("Parsing tests for [%s]...", component));
-    final InputStream testsFile = testInputProv.getTestsFileStream();
     final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>();
-    final IParser testsParser = new TestsParser(testCases);
-    testsParser.setSymbolTable(symbols).parse(testsFile);
-
-    return testCases;
-  }
-
-  /**
-   * Removes test cases from the test suite. The test cases to be removed are
-   * derived from the includes and excludes collections contained in the test
-   * suite info object.
-   * 
-   * @param suite
-   *          - The test suite
-   * @param testCases
-   *          - The list of test cases to consider
-   */
-  private static void removeTestCases(TestSuiteInfo suite,
-      List<ITestCaseDescriptor> testCases) {
-    final Collection<String> includes = suite.getTestCaseIncludes();
-    final Collection<String> excludes = suite.getTestCaseExcludes();
-    final int includesSize = includes.size();
-    final int excludesSize = excludes.size();
+    final TestsParser testsParser = new TestsParser(testCases);
+    testsParser.setTestCaseSelector(suite).setSymbolTable(symbols).parse(
+        new ByteArrayInputStream(testsXML));
 
-    assert Conditionals.implies(includesSize > 0, excludesSize == 0);
-    assert Conditionals.implies(excludesSize > 0, includesSize == 0);
-
-    /*
-     * Handle the include test cases by removing test cases by removing test
-     * case that are NOT in the includes set.
-     */
-    if (includesSize > 0) {
-      final Comparator comp = new Comparator() {
-        public int compare(final String currentTestCaseId,
-            final Collection<String> testCaseIds) {
-          int comparison = 0;
-          for (String testCaseId : testCaseIds) {
-            comparison += currentTestCaseId.equals(testCaseId) ? 1 : 0;
-          }
-          return comparison;
-        }
-      };
-      removeTestCaseDescriptors(testCases, includes, comp);
+    // A partial parse is not cached, so that another selection can use it
+    if (suite.isSelectingAll() == false) {
+      return testCases;
     }
-
-    /*
-     * Handle the excludes test cases by removing the test cases specified in
-     * the exclude set.
-     */
-    if (excludesSize > 0) {
-      final Comparator comp = new Comparator() {
-        public int compare(final String currentTestCaseId,
-            final Collection<String> testCaseIds) {
-          for (String testCaseId : testCaseIds) {
-            if (currentTestCaseId.equals(testCaseId)) {
-              return 0;
-            }
-          }
-          return 1;
-        }
-      };
-      removeTestCaseDescriptors(testCases, excludes, comp);
+    try {
+      environmentNames.addAll(testsParser.getProcessEnvironmentNames());
+      cache.store(testCases, environmentNames);
+    } catch (IOException ex) {
+      logger.warn(String.format("Failed to cache tests for [%s]: %s",
+          component, ex.getMessage()));
     }
+
+    return testCases;
   }
 
   /**
@@ -199,24 +339,29 @@ public class Main {
    */
   private static boolean runTestSuite(String suiteId,
       List<ITestCaseDescriptor> testCases, ITRTestInputProvider testInputProv,
-      ITRTestOutputManager resultMgr, IReportFacade reporter) {
+      ITRTestOutputManager resultMgr, IReportFacade reporter,
+      ComponentSettings settings) {
     final TRTestSuite testSuite = new TRTestSuite(suiteId, testCases,
-        testInputProv, resultMgr, reporter);
+        testInputProv, resultMgr, reporter, settings.jobs, settings.testJobs);
+    testSuite.setDurationHistory(settings.durationHistory);
     return testSuite.run();
   }
 
   /**
-   * Set up and run a test suite
+   * Set up a test suite: parse its test cases and select those to run.
    * 
    * @param suite
    * @param testInputProv
    * @param resultMgr
    * @param reporter
-   * @throws Exception
+   * @param settings
+   *          - Settings common to all components
+   * @return The test cases to run, or null if the set up failed
    */
-  private static boolean setUpAndRunTestSuite(TestSuiteInfo suite,
-      ITRTestInputProvider testInputProv, ITRTestOutputManager resultMgr,
-      IReportFacade reporter) {
+  private static List<ITestCaseDescriptor> setUpComponentTestSuite(
+      TestSuiteInfo suite, ITRTestInputProvider testInputProv,
+      ITRTestOutputManager resultMgr, IReportFacade reporter,
+      ComponentSettings settings) {
     final String component = suite.getComponent();
     List<ITestCaseDescriptor> testCases = null;
 
@@ -224,26 +369,399 @@ public class Main {
     // TODO: Move the suite setup to org.splandroid.tr.testing pkg?
     reporter.startingTestSuiteSetUp(component);
     try {
-      testCases = setUpTestSuite(suite, testInputProv, resultMgr);
-      removeTestCases(suite, testCases);
+      if (settings.prefetcher != null) {
+        testCases = settings.prefetcher.get(suite);
+      } else {
+        testCases = setUpTestSuite(suite, testInputProv, resultMgr);
+      }
+      if (settings.shard != null) {
+        final TRTestCaseSharder sharder = new TRTestCaseSharder(component,
+            settings.shardHistory);
+        testCases = sharder.getShard(testCases, settings.shard.getIndex(),
+            settings.shard.getCount());
+        logger.info(String.format(
+            "Running shard %s of test suite for [%s]: %d test cases",
+            settings.shard, component, testCases.size()));
+      }
+      if (settings.validate == true) {
+        TRTestSuiteValidator.validate(component, testCases);
+      }
     } catch (Exception ex) {
       logger.fatal(String.format(
           "Processing of test suite set-up for component [%s] failed: %s",
           component, ex.getMessage()), ex);
       reporter.errorTestSuiteSetUp(component, ex);
-      return false;
+      return null;
     }
     reporter.finishedTestSuiteSetUp(component);
 
+    return testCases;
+  }
+
+  /**
+   * Set up a streamed test suite: parse its profile and start reading its
+   * tests.xml on a thread of its own, a few test cases ahead of those being
+   * run. Test cases are selected by the parser, and validated if needed, as
+   * they are read.
+   * 
+   * @return The test cases to run, or null if the set up failed
+   */
+  private static ITestCaseSource setUpStreamedTestSuite(TestSuiteInfo suite,
+      ITRTestInputProvider testInputProv, IReportFacade reporter,
+      ComponentSettings settings) {
+    final String component = suite.getComponent();
+    ITestCaseSource testCases = null;
+
+    reporter.startingTestSuiteSetUp(component);
+    try {
+      final ISymbolMap symbols = parseProfile(component,
+          testInputProv.getProfileFileStream(), null);
+
+      logger.debug(String.format("Opening tests for [%s]...", component));
+      final TestsParser testsParser = new TestsParser(
+          new ArrayList<ITestCaseDescriptor>());
+      testsParser.setTestCaseSelector(suite).setSymbolTable(symbols);
+      ITestCaseSource source = testsParser.stream(testInputProv
+          .getTestsFileStream());
+      if (settings.validate == true) {
+        source = new ValidatedTestCaseSource(component, source);
+      }
+      testCases = new TestCasePipeline(component, source, settings.jobs
+          * streamedTestCasesPerJob);
+    } catch (Exception ex) {
+      logger.fatal(String.format(
+          "Processing of test suite set-up for component [%s] failed: %s",
+          component, ex.getMessage()), ex);
+      reporter.errorTestSuiteSetUp(component, ex);
+      return null;
+    }
+    reporter.finishedTestSuiteSetUp(component);
+
+    return testCases;
+  }
+
+  /**
+   * Set up and run a streamed test suite
+   */
+  private static boolean setUpAndRunStreamedTestSuite(TestSuiteInfo suite,
+      ITRTestInputProvider testInputProv, ITRTestOutputManager resultMgr,
+      IReportFacade reporter, ComponentSettings settings) {
+    final String component = suite.getComponent();
+    final ITestCaseSource testCases = setUpStreamedTestSuite(suite,
+        testInputProv, reporter, settings);
+    if (testCases == null) {
+      return false;
+    }
+
+    final TRTestSuite testSuite = new TRTestSuite(component, testCases,
+        testInputProv, resultMgr, reporter, settings.jobs, settings.testJobs);
+    final boolean passed = testSuite.run();
+
+    logger.info(String.format("Finished test suite for [%s]", component));
+
+    return passed;
+  }
+
+  /**
+   * Set up and run a test suite
+   * 
+   * @param suite
+   * @param testInputProv
+   * @param resultMgr
+   * @param reporter
+   * @param settings
+   *          - Settings common to all components
+   * @throws Exception
+   */
+  private static boolean setUpAndRunTestSuite(TestSuiteInfo suite,
+      ITRTestInputProvider testInputProv, ITRTestOutputManager resultMgr,
+      IReportFacade reporter, ComponentSettings settings) {
+    if (settings.stream == true) {
+      return setUpAndRunStreamedTestSuite(suite, testInputProv, resultMgr,
+          reporter, settings);
+    }
+
+    final String component = suite.getComponent();
+    final List<ITestCaseDescriptor> testCases = setUpComponentTestSuite(suite,
+        testInputProv, resultMgr, reporter, settings);
+    if (testCases == null) {
+      return false;
+    }
+
     // Run the test suite
     final boolean passed = runTestSuite(component, testCases, testInputProv,
-        resultMgr, reporter);
+        resultMgr, reporter, settings);
 
     logger.info(String.format("Finished test suite for [%s]", component));
 
     return passed;
   }
 
+  /**
+   * Build a reporter facade with its own set of reporters. Reporters hold the
+   * name of the component under test, so each component that is tested needs
+   * its own facade.
+   * 
+   * @param settings
+   *          - Settings holding the duration history and test results to
+   *          record test cases in, or null to only log
+   * @return The reporter facade
+   */
+  private static IReportFacade createReporter(ComponentSettings settings) {
+    final IEventObserver logFileReporter = new org.splandroid.tr.reporters.logfile.Reporter();
+    // final IReporter htmlFileReporter =
+    // new org.splandroid.tr.reporting.html.Reporter(resultMgr);
+    if (settings == null) {
+      return TRTestReportFactory.getReporter(logFileReporter);
+    }
+    final IEventObserver durationRecorder = new org.splandroid.tr.reporters.history.Recorder(
+        settings.durationHistory);
+    final IEventObserver resultsRecorder = new org.splandroid.tr.reporters.results.Recorder(
+        settings.results);
+    return TRTestReportFactory.getReporter(logFileReporter, durationRecorder,
+        resultsRecorder);
+  }
+
+  /**
+   * Merge the results files of several runs, such as the shards of a test
+   * suite, into a single results file. Where runs have results for the same
+   * test case the last one given is kept.
+   * 
+   * @param inputs
+   *          - Results files, or the suite results directories holding them
+   * @param suiteResultDir
+   *          - Directory to write the merged results file to
+   */
+  private static void mergeResults(Collection<File> inputs, File suiteResultDir) {
+    final TRTestResults merged = new TRTestResults();
+    for (File input : inputs) {
+      final TRTestResults inputResults = new TRTestResults();
+      try {
+        inputResults.load(input);
+      } catch (IOException ex) {
+        logger.fatal(String.format("Failed to load results from [%s]: %s",
+            input.getPath(), ex.getMessage()));
+        System.exit(1);
+      }
+      for (TRTestResults.Result result : inputResults.getResults()) {
+        if (merged.add(result) != null) {
+          logger.warn(String.format(
+              "Test case [%s] of component [%s] has more than one result; "
+                  + "keeping the result from [%s]", result.getTestCaseId(),
+              result.getComponent(), input.getPath()));
+        }
+      }
+    }
+
+    try {
+      merged.save(suiteResultDir,
+          String.format("Merged from %d results", inputs.size()));
+    } catch (IOException ex) {
+      logger.fatal(String.format("Failed to save merged results: %s",
+          ex.getMessage()));
+      System.exit(1);
+    }
+
+    // Summarise the merged results by component
+    final Map<String, int[]> summary = new LinkedHashMap<String, int[]>();
+    for (TRTestResults.Result result : merged.getResults()) {
+      int[] counts = summary.get(result.getComponent());
+      if (counts == null) {
+        counts = new int[TRTestResults.Status.values().length];
+        summary.put(result.getComponent(), counts);
+      }
+      counts[result.getStatus().ordinal()]++;
+    }
+    for (Map.Entry<String, int[]> component : summary.entrySet()) {
+      final int[] counts = component.getValue();
+      logger.info(String.format(
+          "Component [%s]: %d passed, %d failed, %d errors", component
+              .getKey(), counts[TRTestResults.Status.PASSED.ordinal()],
+          counts[TRTestResults.Status.FAILED.ordinal()],
+          counts[TRTestResults.Status.ERROR.ordinal()]));
+    }
+  }
+
+  /**
+   * Test a component. The component is given its own test input provider,
+   * test output manager and reporter, so nothing is shared with any other
+   * component being tested at the same time.
+   * 
+   * @param suite
+   *          - The component's test suite
+   * @param settings
+   *          - Settings common to all components
+   * @return true if the component passed
+   */
+  private static boolean testComponent(TestSuiteInfo suite,
+      ComponentSettings settings) {
+    final String componentUnderTest = suite.getComponent();
+    final ITRTestInputProvider testInputProv = new TRTestInputProvider(
+        settings.testInfoDir);
+    final ITRTestOutputManager resultMgr = new TRTestOutputManager(
+        settings.testResultsDir, settings.timeNow);
+    final IReportFacade reporter = createReporter(settings);
+
+    // Notify objects of the component under test
+    testInputProv.setComponent(componentUnderTest);
+    resultMgr.setComponent(componentUnderTest);
+    reporter.setComponent(componentUnderTest);
+
+    reporter.startingComponent();
+    final boolean passed = setUpAndRunTestSuite(suite, testInputProv,
+        resultMgr, reporter, settings);
+    if (passed == true) {
+      reporter.passedComponent();
+    } else {
+      reporter.failedComponent();
+    }
+
+    return passed;
+  }
+
+  /**
+   * Set up the components' test suites and hand their test cases to worker
+   * processes through a coordinator.
+   * 
+   * @param suites
+   *          - The components' test suites
+   * @param settings
+   *          - Settings common to all components
+   * @param address
+   *          - The address for the coordinator to listen on
+   */
+  private static void coordinateComponents(Collection<TestSuiteInfo> suites,
+      ComponentSettings settings, InetSocketAddress address) {
+    final Coordinator coordinator;
+    try {
+      coordinator = new Coordinator(address);
+    } catch (IOException ex) {
+      logger.fatal(String.format("Failed to start coordinator on [%s]: %s",
+          address, ex.getMessage()), ex);
+      return;
+    }
+
+    final Map<String, IReportFacade> reporters = new LinkedHashMap<String, IReportFacade>();
+    for (TestSuiteInfo suite : suites) {
+      final String componentUnderTest = suite.getComponent();
+      final ITRTestInputProvider testInputProv = new TRTestInputProvider(
+          settings.testInfoDir);
+      final ITRTestOutputManager resultMgr = new TRTestOutputManager(
+          settings.testResultsDir, settings.timeNow);
+      final IReportFacade reporter = createReporter(settings);
+
+      // Notify objects of the component under test
+      testInputProv.setComponent(componentUnderTest);
+      resultMgr.setComponent(componentUnderTest);
+      reporter.setComponent(componentUnderTest);
+
+      reporter.startingComponent();
+      final List<ITestCaseDescriptor> testCases = setUpComponentTestSuite(
+          suite, testInputProv, resultMgr, reporter, settings);
+      if (testCases == null) {
+        reporter.failedComponent();
+        continue;
+      }
+      try {
+        coordinator.addSuite(componentUnderTest, testCases, reporter);
+      } catch (IOException ex) {
+        logger.fatal(String.format(
+            "Failed to encode test suite for component [%s]: %s",
+            componentUnderTest, ex.getMessage()), ex);
+        reporter.errorTestSuite(componentUnderTest, ex);
+        reporter.failedComponent();
+        continue;
+      }
+      reporters.put(componentUnderTest, reporter);
+    }
+
+    logger.info(String.format("Coordinator waiting for workers on port %d",
+        coordinator.getPort()));
+    System.out.printf("Coordinator waiting for workers on port %d\n",
+        coordinator.getPort());
+
+    Map<String, Boolean> results;
+    try {
+      results = coordinator.run();
+    } catch (InterruptedException ex) {
+      logger.fatal("Interrupted waiting for workers", ex);
+      Thread.currentThread().interrupt();
+      return;
+    }
+
+    for (Map.Entry<String, IReportFacade> component : reporters.entrySet()) {
+      final IReportFacade reporter = component.getValue();
+      if (results.get(component.getKey()) == true) {
+        reporter.passedComponent();
+      } else {
+        reporter.failedComponent();
+      }
+    }
+  }
+
+  /**
+   * Run test cases handed out by a coordinator until it has no more.
+   * 
+   * @param settings
+   *          - Settings common to all components
+   * @param address
+   *          - The coordinator's address
+   */
+  private static void runWorker(ComponentSettings settings,
+      InetSocketAddress address) {
+    final Worker worker = new Worker(address, settings.testInfoDir,
+        settings.testResultsDir, settings.timeNow);
+    try {
+      worker.run();
+    } catch (IOException ex) {
+      logger.fatal(String.format("Lost coordinator [%s]: %s", address,
+          ex.getMessage()), ex);
+    }
+  }
+
+  /**
+   * Test up to concurrentComponents components at the same time.
+   * 
+   * @param suites
+   *          - The components' test suites
+   * @param settings
+   *          - Settings common to all components
+   * @param concurrentComponents
+   *          - The maximum number of components to test at once
+   */
+  private static void testComponentsConcurrently(
+      Collection<TestSuiteInfo> suites, final ComponentSettings settings,
+      int concurrentComponents) {
+    final ExecutorService pool = Executors.newFixedThreadPool(Math.min(
+        concurrentComponents, suites.size()), new NamedThreadFactory(
+        "component"));
+    final Map<String, Future<Boolean>> results = new LinkedHashMap<String, Future<Boolean>>();
+    try {
+      for (final TestSuiteInfo suite : suites) {
+        results.put(suite.getComponent(), pool.submit(new Callable<Boolean>() {
+          public Boolean call() {
+            return testComponent(suite, settings);
+          }
+        }));
+      }
+
+      for (Map.Entry<String, Future<Boolean>> result : results.entrySet()) {
+        try {
+          result.getValue().get();
+        } catch (ExecutionException ex) {
+          logger.fatal(String.format("Testing of component [%s] failed: %s",
+              result.getKey(), ex.getCause().getMessage()), ex.getCause());
+        } catch (InterruptedException ex) {
+          logger.fatal("Interrupted waiting for components", ex);
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
   /**
    * Load the harness' properties file
    * 
@@ -265,6 +783,37 @@ public class Main {
     return props;
   }
 
+  /**
+   * Validates the test cases of a streamed test suite as they are read.
+   */
+  private static class ValidatedTestCaseSource implements ITestCaseSource {
+    private final String component;
+    private final ITestCaseSource source;
+
+    public ValidatedTestCaseSource(String componentName,
+        ITestCaseSource testCases) {
+      component = componentName;
+      source = testCases;
+    }
+
+    public ITestCaseDescriptor next() throws ParserException {
+      final ITestCaseDescriptor testCase = source.next();
+      if (testCase != null) {
+        try {
+          TRTestSuiteValidator.validate(component,
+              Collections.singletonList(testCase));
+        } catch (TRException ex) {
+          throw new ParserException(ex.getMessage(), ex);
+        }
+      }
+      return testCase;
+    }
+
+    public void close() {
+      source.close();
+    }
+  }
+
   public static void main(String[] args) {
     // Create the command line processor
     final CommandLineProcessor cliProcessor =
@@ -289,10 +838,9 @@ public class Main {
     // Time of test
     final Date timeNow = new Date();
     
-    // Build test input and result providers/managers.
+    // Build the suite's result directory. Each component builds its own test
+    // input provider and result manager.
     final String testInfoDir = cliProcessor.getTestInfoDirectory();
-    final ITRTestInputProvider testInputProv = new TRTestInputProvider(
-        testInfoDir);
     final String testResultsDir = cliProcessor.getTestResultsDirectory();
     final ITRTestOutputManager resultMgr = new TRTestOutputManager(
         testResultsDir, timeNow);
@@ -339,36 +887,97 @@ public class Main {
     Logger.getRootLogger().setLevel(logLevel);
     logger = Logger.getLogger(Main.class);
 
+    if (cliProcessor.isMergeCommand()) {
+      mergeResults(cliProcessor.getMergeInputs(), suiteResultDir);
+      return;
+    }
+
+    final ShardInfo shard = cliProcessor.getShard();
+
+    // Durations shared by every shard, to balance the shards by
+    DurationHistory shardHistory = null;
+    final File shardHistoryFile = cliProcessor.getShardHistoryFile();
+    if (shard != null && shardHistoryFile != null) {
+      shardHistory = new DurationHistory(shardHistoryFile);
+      try {
+        shardHistory.load();
+      } catch (IOException ex) {
+        logger.fatal(String.format("Failed to load shard history from [%s]: %s",
+            shardHistoryFile.getPath(), ex.getMessage()));
+        System.exit(1);
+      }
+    }
+
+    // Test case durations from earlier runs
+    final DurationHistory durationHistory = new DurationHistory(new File(
+        testResultsDir, durationHistoryFile));
+    try {
+      durationHistory.load();
+    } catch (IOException ex) {
+      logger.warn(String.format("Failed to load test case durations: %s",
+          ex.getMessage()));
+    }
     
     // Create reporters
-    final IEventObserver logFileReporter = new org.splandroid.tr.reporters.logfile.Reporter();
-    // final IReporter htmlFileReporter =
-    // new org.splandroid.tr.reporting.html.Reporter(resultMgr);
-    final IReportFacade reporter = TRTestReportFactory
-        .getReporter(logFileReporter);
+    final IReportFacade reporter = createReporter(null);
 
     reporter.started("Test harness");
 
     // For each test suite do...
     final Collection<TestSuiteInfo> suites = cliProcessor.getTestSuites();
+    final TRTestResults results = new TRTestResults();
+    final int concurrentComponents = cliProcessor.getConcurrentComponents();
+    final InetSocketAddress coordinatorAddress = cliProcessor
+        .getCoordinatorAddress();
+    final InetSocketAddress workerAddress = cliProcessor.getWorkerAddress();
+
+    // Parse the components' test suites ahead of setting them up
+    TestSuitePrefetcher prefetcher = null;
+    if (workerAddress == null && cliProcessor.isStreaming() == false
+        && suites.size() > 1) {
+      prefetcher = new TestSuitePrefetcher(suites, testInfoDir, Math.min(
+          Runtime.getRuntime().availableProcessors(), suites.size()));
+    }
 
-    for (TestSuiteInfo suite : suites) {
-      // Notify objects of the current component under test
-      final String componentUnderTest = suite.getComponent();
-      testInputProv.setComponent(componentUnderTest);
-      resultMgr.setComponent(componentUnderTest);
-      reporter.setComponent(componentUnderTest);
+    final ComponentSettings settings = new ComponentSettings(testInfoDir,
+        testResultsDir, timeNow, cliProcessor.getJobs(),
+        cliProcessor.getTestJobs(), durationHistory, shard, shardHistory,
+        results,
+        cliProcessor.isValidating(), cliProcessor.isStreaming(), prefetcher);
 
-      reporter.startingComponent();
-      final boolean passed = setUpAndRunTestSuite(suite, testInputProv,
-          resultMgr, reporter);
-      if (passed == true) {
-        reporter.passedComponent();
+    try {
+      if (workerAddress != null) {
+        runWorker(settings, workerAddress);
+      } else if (coordinatorAddress != null) {
+        coordinateComponents(suites, settings, coordinatorAddress);
+      } else if (concurrentComponents > 1 && suites.size() > 1) {
+        testComponentsConcurrently(suites, settings, concurrentComponents);
       } else {
-        reporter.failedComponent();
+        for (TestSuiteInfo suite : suites) {
+          testComponent(suite, settings);
+        }
+      }
+    } finally {
+      if (prefetcher != null) {
+        prefetcher.shutdown();
       }
     }
 
     reporter.finished("Test harness");
+
+    try {
+      results.save(suiteResultDir,
+          (shard == null) ? null : String.format("Shard %s", shard));
+    } catch (IOException ex) {
+      logger.error(String.format("Failed to save test results: %s",
+          ex.getMessage()));
+    }
+
+    try {
+      durationHistory.save();
+    } catch (IOException ex) {
+      logger.warn(String.format("Failed to save test case durations: %s",
+          ex.getMessage()));
+    }
   }
 }
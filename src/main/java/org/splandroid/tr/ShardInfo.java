@@ -0,0 +1,48 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr;
+
+/**
+ * Describes the shard of each test suite to run, as specified on the command
+ * line. The index runs from 1 to the shard count.
+ */
+class ShardInfo {
+  private final int shardIndex;
+  private final int shardCount;
+
+  public ShardInfo(int index, int count) {
+    assert count > 0 : "Shard count must be positive";
+    assert index > 0 && index <= count : "Shard index out of range";
+    shardIndex = index;
+    shardCount = count;
+  }
+
+  public int getIndex() {
+    return shardIndex;
+  }
+
+  public int getCount() {
+    return shardCount;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d/%d", shardIndex, shardCount);
+  }
+}
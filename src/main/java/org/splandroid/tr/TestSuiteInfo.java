@@ -19,22 +19,27 @@
 package org.splandroid.tr;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.splandroid.tr.parsers.ITestCaseSelector;
 
 /**
  * Describes a test suite as specified on the command line. This structure holds
  * the name of the component, and the test cases that should be included in and
- * excluded from the test suite run.
+ * excluded from the test suite run. A test case is selected if it is included,
+ * or if there are no includes and it is not excluded.
  */
-class TestSuiteInfo {
+class TestSuiteInfo implements ITestCaseSelector {
   private final String componentName;
-  private final Collection<String> includesTestCases;
-  private final Collection<String> excludesTestCases;
+  private final Set<String> includesTestCases;
+  private final Set<String> excludesTestCases;
 
   public TestSuiteInfo(String component, Collection<String> includes,
       Collection<String> excludes) {
     componentName = component;
-    includesTestCases = includes;
-    excludesTestCases = excludes;
+    includesTestCases = new HashSet<String>(includes);
+    excludesTestCases = new HashSet<String>(excludes);
   }
 
   public String getComponent() {
@@ -48,4 +53,18 @@ class TestSuiteInfo {
   public Collection<String> getTestCaseExcludes() {
     return excludesTestCases;
   }
+
+  /**
+   * @return True if all the component's test cases are selected
+   */
+  public boolean isSelectingAll() {
+    return includesTestCases.isEmpty() && excludesTestCases.isEmpty();
+  }
+
+  public boolean isSelected(String testCaseId) {
+    if (includesTestCases.isEmpty() == false) {
+      return includesTestCases.contains(testCaseId);
+    }
+    return excludesTestCases.contains(testCaseId) == false;
+  }
 }
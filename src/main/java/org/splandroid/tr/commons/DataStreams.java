@@ -0,0 +1,53 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.commons;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Reads and writes strings of any length, or null, on data streams. Unlike
+ * DataOutput#writeUTF a string is not limited to 64KB.
+ */
+public class DataStreams {
+  private static final Charset utf8 = Charset.forName("UTF-8");
+
+  public static void writeString(DataOutput out, String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(utf8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  public static String readString(DataInput in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, utf8);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.commons;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The harness process's environment, read once. A process's environment does
+ * not change while it runs, so the parsers share one read-only copy instead of
+ * asking the system for each variable.
+ */
+public class EnvironmentSnapshot {
+  private static final Map<String, String> processEnvironment = Collections
+      .unmodifiableMap(new HashMap<String, String>(System.getenv()));
+
+  /**
+   * @return The process's environment variables, which cannot be changed
+   */
+  public static Map<String, String> getProcessEnvironment() {
+    return processEnvironment;
+  }
+
+  /**
+   * Build the environment block a child process is started with, as passed to
+   * Runtime.exec: the process's environment with the given variables set
+   * over it, as NAME=value strings.
+   */
+  public static String[] createEnvironmentBlock(Map<String, String> variables) {
+    final Map<String, String> merged = new HashMap<String, String>(
+        processEnvironment);
+    merged.putAll(variables);
+
+    final String[] block = new String[merged.size()];
+    int idx = 0;
+    for (Map.Entry<String, String> variable : merged.entrySet()) {
+      block[idx++] = variable.getKey() + "=" + variable.getValue();
+    }
+    return block;
+  }
+}
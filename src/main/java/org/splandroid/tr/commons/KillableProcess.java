@@ -23,36 +23,39 @@ package org.splandroid.tr.commons;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.tools.ant.taskdefs.ExecuteStreamHandler;
 
 /**
- * A wrapper around java.lang.Process that spawns processes in a separate
- * thread. The spawned processes can be killed.
+ * A wrapper around java.lang.Process that spawns processes and has the shared
+ * process engine poll for them to finish. The spawned processes can be killed.
+ * 
+ * @see org.splandroid.tr.commons.ProcessEngine
  */
 public class KillableProcess {
 
-  private Thread thread = null;
-  private Process process = null;
+  private volatile Process process = null;
   private ProcessStatus procStatus = null;
-  private Semaphore finishSema = null;
-  private boolean killRequested = false;
+  private volatile CountDownLatch finishLatch = null;
+  private volatile boolean killRequested = false;
   private ExecuteStreamHandler streamHandler = null;
   private List<String> cmdLine = null;
   private File workingDir = null;
   private List<ImmutablePair<String, String>> envVars = null;
+  private String[] envBlock = null;
 
   public KillableProcess(String execCmd, File workingDir,
       ExecuteStreamHandler streamHandler) {
     // Build a process status object for this process
     procStatus = new ProcessStatus();
 
-    // A semaphore to notify when the thread has finished
-    finishSema = new Semaphore(1);
+    // A latch to notify when the thread has finished; none until started
+    finishLatch = new CountDownLatch(0);
 
     // An empty command line
     cmdLine = new ArrayList<String>();
@@ -105,58 +108,99 @@ public class KillableProcess {
   }
 
   /**
-   * Start the thread that will spawn the defined process as long as the process
-   * is not running.
+   * Set the executable's whole environment, as NAME=value strings, in place of
+   * the harness' environment and any variables added to it. The block is
+   * handed to the process as it is, so a block built once can be shared by
+   * many processes.
+   * 
+   * @param environmentBlock
+   *          - The environment block, which is not changed
+   * @see org.splandroid.tr.commons.EnvironmentSnapshot#createEnvironmentBlock(Map)
+   */
+  final public void setEnvironmentBlock(String[] environmentBlock) {
+    envBlock = environmentBlock;
+  }
+
+  /**
+   * Spawn the defined process, as long as the process is not running. The
+   * process is then watched, and its streams pumped, by the process engine.
    */
   final public synchronized void start() {
-    if (this.isRunning() == false) {
-      // Generate a unique-ish name for the thread
-      final int hash = cmdLine.hashCode();
-      final String thrName = String.format("KillableProcess-%d", hash);
-
-      // Build a thread that'll run the process
-      thread = new Thread(thrName) {
-        public void run() {
-          // Launch the process and wait for completion
-          try {
-            final ProcessBuilder pb = new ProcessBuilder(cmdLine);
-            // Add the passed in environment
-            Map<String, String> procEnv = pb.environment();
-            for (ImmutablePair<String, String> p : envVars) {
-              procEnv.put(p.getLeft(), p.getRight());
-            }
-
-            // Add working directory
-            pb.directory(workingDir);
-            // Start the process
-            process = pb.start();
-            if (process != null) {
-              // Re-direct the streams
-              try {
-                streamHandler.setProcessInputStream(process.getOutputStream());
-                streamHandler.setProcessOutputStream(process.getInputStream());
-                streamHandler.setProcessErrorStream(process.getErrorStream());
-              } catch (Exception e) {
-                process.destroy();
-                throw e;
-              }
-              streamHandler.start();
-              final int retValue = process.waitFor();
-              streamHandler.stop();
-              procStatus.setReturnValue(retValue);
-            }
-          } catch (Exception ex) {
-            procStatus.setException(ex);
-          } finally {
-            finishSema.release();
-          }
+    if (this.isRunning() == true) {
+      return;
+    }
+
+    final CountDownLatch finished = new CountDownLatch(1);
+    killRequested = false;
+    finishLatch = finished;
+    try {
+      // The process inherits the harness' environment as it is unless it has
+      // an environment block, or variables to add to the harness' environment
+      String[] environment = envBlock;
+      if (environment == null && envVars.isEmpty() == false) {
+        final Map<String, String> variables = new HashMap<String, String>();
+        for (ImmutablePair<String, String> p : envVars) {
+          variables.put(p.getLeft(), p.getRight());
         }
-      };
-      thread.setDaemon(true);
-      finishSema.acquireUninterruptibly();
-      thread.start();
-      killRequested = false;
+        environment = EnvironmentSnapshot.createEnvironmentBlock(variables);
+      }
+
+      // Start the process in its working directory
+      process = Runtime.getRuntime().exec(
+          cmdLine.toArray(new String[cmdLine.size()]), environment, workingDir);
+      // Re-direct the streams
+      try {
+        streamHandler.setProcessInputStream(process.getOutputStream());
+        streamHandler.setProcessOutputStream(process.getInputStream());
+        streamHandler.setProcessErrorStream(process.getErrorStream());
+        streamHandler.start();
+      } catch (Exception e) {
+        process.destroy();
+        throw e;
+      }
+    } catch (Exception ex) {
+      procStatus.setException(ex);
+      finished.countDown();
+      return;
     }
+
+    // Wait for the process to exit
+    final Process startedProcess = process;
+    ProcessEngine.register(new ProcessEngine.Poller() {
+      public ProcessEngine.Poll poll() {
+        final int retValue;
+        try {
+          retValue = startedProcess.exitValue();
+        } catch (IllegalThreadStateException ex) {
+          return ProcessEngine.Poll.IDLE;
+        }
+
+        try {
+          streamHandler.stop();
+          procStatus.setReturnValue(retValue);
+        } catch (Exception ex) {
+          procStatus.setException(ex);
+        } finally {
+          finished.countDown();
+        }
+        return ProcessEngine.Poll.FINISHED;
+      }
+    });
+  }
+
+  /**
+   * Wait for the process to finish. Returns once the process has exited and
+   * its streams have been drained, or at once if it is not running. The exit
+   * is found by the process engine polling the process, so it may be noticed
+   * up to the engine's longest poll delay, 16 ms, after the process has exited.
+   * 
+   * @return ProcessStatus The process return status
+   * @throws InterruptedException
+   *           if the waiting thread is interrupted; the process keeps running
+   */
+  final public ProcessStatus waitFor() throws InterruptedException {
+    finishLatch.await();
+    return procStatus;
   }
 
   /**
@@ -165,8 +209,11 @@ public class KillableProcess {
    */
   final public synchronized void kill() {
     if (killRequested == false && this.isRunning() == true) {
-      process.destroy();
       killRequested = true;
+      final Process runningProcess = process;
+      if (runningProcess != null) {
+        runningProcess.destroy();
+      }
     }
   }
 
@@ -176,7 +223,7 @@ public class KillableProcess {
    * @return boolean
    */
   final public boolean isRunning() {
-    return (finishSema.availablePermits() == 0);
+    return (finishLatch.getCount() > 0);
   }
 
   /**
@@ -0,0 +1,43 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.commons;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds daemon threads named after what they are used for, numbered in the
+ * order they are built, so that log lines from a pool's threads can be told
+ * apart. A thread keeps its name for as long as it lives.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+  private final String prefix;
+  private final AtomicInteger count = new AtomicInteger(0);
+
+  public NamedThreadFactory(String namePrefix) {
+    prefix = namePrefix;
+  }
+
+  public Thread newThread(Runnable runnable) {
+    final Thread thread = new Thread(runnable, String.format("%s-%d", prefix,
+        count.incrementAndGet()));
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.commons;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.tools.ant.taskdefs.ExecuteStreamHandler;
+
+/**
+ * Copies a process's standard output and error to the given streams by
+ * polling them on the shared process engine's threads rather than on threads
+ * of its own. Only the bytes available on them are read while the process
+ * runs, so that no engine thread is held waiting on a stream. Once the process
+ * has exited what is left of its output and error is copied by stop.
+ * 
+ * The given input is copied to the process's standard input on a thread of
+ * its own, as reading it may block, such as when it is shared with other
+ * readers. An input other than System.in is read until its end, and the
+ * process's standard input is then closed, so that a process reading a finite
+ * input to its end exits. System.in never ends, so it is only read when it has
+ * bytes available, and is let go once the process has finished.
+ * 
+ * @see org.splandroid.tr.commons.ProcessEngine
+ */
+public class PooledPumpStreamHandler implements ExecuteStreamHandler {
+  private static final int bufferSize = 4096;
+  private static final int maxReadsPerPoll = 16;
+  private static final long minInputDelayms = 1;
+  private static final long maxInputDelayms = 16;
+  private static final NamedThreadFactory inputThreads = new NamedThreadFactory(
+      "ProcessInput");
+
+  private final OutputStream out;
+  private final OutputStream err;
+  private final InputStream input;
+  private final byte[] buffer = new byte[bufferSize];
+  private final byte[] inputBuffer = new byte[bufferSize];
+
+  private InputStream processOut = null;
+  private InputStream processErr = null;
+  private OutputStream processIn = null;
+
+  private Pump outputPump = null;
+  private Pump errorPump = null;
+  private Pump inputPump = null;
+  private volatile boolean stopped = false;
+
+  public PooledPumpStreamHandler(OutputStream out, OutputStream err,
+      InputStream input) {
+    this.out = out;
+    this.err = err;
+    this.input = input;
+  }
+
+  public void setProcessInputStream(OutputStream os) throws IOException {
+    if (input == null) {
+      os.close();
+    } else {
+      processIn = os;
+    }
+  }
+
+  public void setProcessOutputStream(InputStream is) throws IOException {
+    processOut = is;
+  }
+
+  public void setProcessErrorStream(InputStream is) throws IOException {
+    processErr = is;
+  }
+
+  public synchronized void start() throws IOException {
+    outputPump = createPump(processOut, out, false);
+    errorPump = createPump(processErr, err, false);
+    inputPump = createPump(input, processIn, true);
+    ProcessEngine.register(new ProcessEngine.Poller() {
+      public ProcessEngine.Poll poll() {
+        return pumpOutput();
+      }
+    });
+    if (inputPump != null) {
+      final Pump pump = inputPump;
+      inputThreads.newThread(new Runnable() {
+        public void run() {
+          pump.pumpInput(inputBuffer);
+        }
+      }).start();
+    }
+  }
+
+  /**
+   * Copy what is left of the process's output and error, and stop copying the
+   * input. Called once the process has exited.
+   */
+  public synchronized void stop() {
+    stopped = true;
+    if (inputPump != null) {
+      inputPump.end();
+    }
+    if (outputPump != null) {
+      outputPump.drain(buffer);
+    }
+    if (errorPump != null) {
+      errorPump.drain(buffer);
+    }
+
+    flush(out);
+    flush(err);
+  }
+
+  private synchronized ProcessEngine.Poll pumpOutput() {
+    if (stopped == true) {
+      return ProcessEngine.Poll.FINISHED;
+    }
+
+    boolean copied = false;
+    for (Pump pump : new Pump[] { outputPump, errorPump }) {
+      if (pump != null && pump.pumpAvailable(buffer) == true) {
+        copied = true;
+      }
+    }
+
+    return (copied == true) ? ProcessEngine.Poll.ACTIVE
+        : ProcessEngine.Poll.IDLE;
+  }
+
+  private static Pump createPump(InputStream is, OutputStream os,
+      boolean isInput) {
+    if (is == null || os == null) {
+      return null;
+    }
+    return new Pump(is, os, isInput);
+  }
+
+  private static void flush(OutputStream os) {
+    try {
+      os.flush();
+    } catch (IOException ex) {
+      // Nothing more can be done with the stream
+    }
+  }
+
+  /**
+   * Copies one stream to another until the first is exhausted or the copy is
+   * ended. An input pump closes the process's standard input when it ends.
+   */
+  private static class Pump {
+    private final InputStream in;
+    private final OutputStream out;
+    private final boolean isInput;
+    private final boolean readsToEnd;
+
+    private volatile boolean ended = false;
+
+    public Pump(InputStream in, OutputStream out, boolean isInput) {
+      this.in = in;
+      this.out = out;
+      this.isInput = isInput;
+      this.readsToEnd = in != System.in;
+    }
+
+    /**
+     * Copy the bytes that can be read without blocking, up to a limit so that
+     * a busy stream does not hold up the others.
+     * 
+     * @return true if any bytes were copied
+     */
+    public boolean pumpAvailable(byte[] buffer) {
+      if (ended == true) {
+        return false;
+      }
+
+      boolean copied = false;
+      try {
+        for (int reads = 0; reads < maxReadsPerPoll; reads++) {
+          final int available = in.available();
+          if (available <= 0) {
+            break;
+          }
+          final int length = in.read(buffer, 0, Math.min(available,
+              buffer.length));
+          if (length < 0) {
+            end();
+            break;
+          }
+          out.write(buffer, 0, length);
+          copied = true;
+        }
+      } catch (IOException ex) {
+        // The process has closed its end of the stream
+        end();
+      }
+
+      return copied;
+    }
+
+    /**
+     * Copy the input to the process until the input ends or the copy is
+     * ended. System.in is only read when it has bytes available, and is looked
+     * at less and less often while it has none, up to a limit.
+     */
+    public void pumpInput(byte[] buffer) {
+      long delayms = minInputDelayms;
+      try {
+        while (ended == false) {
+          int length = buffer.length;
+          if (readsToEnd == false) {
+            final int available = in.available();
+            if (available <= 0) {
+              Thread.sleep(delayms);
+              delayms = Math.min(delayms * 2, maxInputDelayms);
+              continue;
+            }
+            length = Math.min(available, buffer.length);
+          }
+          length = in.read(buffer, 0, length);
+          if (length < 0) {
+            break;
+          }
+          out.write(buffer, 0, length);
+          out.flush();
+          delayms = minInputDelayms;
+        }
+      } catch (IOException ex) {
+        // The process has closed its end of the stream
+      } catch (InterruptedException ex) {
+        // The copy is no longer wanted
+      }
+      end();
+    }
+
+    /**
+     * Copy the rest of the stream, until its end. Only used for the process's
+     * output and error once it has exited, when reading does not wait.
+     */
+    public void drain(byte[] buffer) {
+      if (ended == true) {
+        return;
+      }
+
+      try {
+        int length;
+        while ((length = in.read(buffer)) >= 0) {
+          out.write(buffer, 0, length);
+        }
+      } catch (IOException ex) {
+        // The process has closed its end of the stream
+      }
+      end();
+    }
+
+    public void end() {
+      ended = true;
+      if (isInput == true) {
+        try {
+          out.close();
+        } catch (IOException ex) {
+          // The process has already closed its standard input
+        }
+      }
+    }
+  }
+}
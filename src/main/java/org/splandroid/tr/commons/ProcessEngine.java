@@ -0,0 +1,91 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.commons;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches child processes, and pumps their streams, on a fixed number of
+ * daemon threads however many processes are running. Nothing blocks waiting
+ * on a process: each registered poller is polled in turn, doing whatever work
+ * is ready, such as copying the bytes available on a stream or checking for
+ * the process's exit value. A poller with work to do is polled again at once;
+ * an idle one is polled less and less often, up to a limit.
+ */
+final class ProcessEngine {
+  private static final int noThreads = Math.max(2, Runtime.getRuntime()
+      .availableProcessors());
+  private static final long minPollDelayms = 1;
+  private static final long maxPollDelayms = 16;
+
+  private static final ScheduledExecutorService scheduler = Executors
+      .newScheduledThreadPool(noThreads, new NamedThreadFactory(
+          "ProcessEngine"));
+
+  /**
+   * The outcome of polling a poller.
+   */
+  enum Poll {
+    // Work was done; poll again at once
+    ACTIVE,
+    // Nothing was ready; poll again after a delay
+    IDLE,
+    // Nothing more to do; stop polling
+    FINISHED
+  }
+
+  /**
+   * Work that is polled by the engine. A poller must not block, other than
+   * briefly once it has finished, and must not throw.
+   */
+  interface Poller {
+    Poll poll();
+  }
+
+  private ProcessEngine() {
+  }
+
+  /**
+   * Poll a poller on the engine's threads until it has finished.
+   */
+  static void register(final Poller poller) {
+    scheduler.execute(new Runnable() {
+      private long delayms = minPollDelayms;
+
+      public void run() {
+        switch (poller.poll()) {
+        case ACTIVE:
+          delayms = minPollDelayms;
+          scheduler.execute(this);
+          break;
+
+        case IDLE:
+          scheduler.schedule(this, delayms, TimeUnit.MILLISECONDS);
+          delayms = Math.min(delayms * 2, maxPollDelayms);
+          break;
+
+        default:
+          break;
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.distributed;
+
+import static org.splandroid.tr.commons.DataStreams.readString;
+import static org.splandroid.tr.commons.DataStreams.writeString;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.splandroid.tr.TRException;
+import org.splandroid.tr.events.TRTestEvent;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.tests.TestCaseDescriptorCodec;
+import org.splandroid.tr.reporting.IReportFacade;
+
+/**
+ * Hands the test cases of one or more parsed test suites to worker processes
+ * over TCP. Each worker asks for its next test case once it has finished its
+ * current one, so a slow worker takes fewer test cases. The workers' test
+ * events are reported through each suite's own reporter as they arrive. If a
+ * worker is lost while running a test case then the lost attempt's test case,
+ * and any tests it had started, are reported as errors, and the test case is
+ * handed to another worker. After a limit on its attempts the test case is
+ * left as an error.
+ */
+public class Coordinator {
+  private static final Logger logger = Logger.getLogger(Coordinator.class);
+  private static final long pollDelayms = 100;
+  private static final int maxAttempts = 3;
+  private static final long maxAcceptDelayms = 5000;
+
+  private final ServerSocket serverSocket;
+  private final Map<String, Suite> suites;
+  private final BlockingQueue<Assignment> queue;
+  private final AtomicInteger remaining;
+  private final Object finishedLock = new Object();
+
+  /**
+   * The state of a suite whose test cases are being run by the workers.
+   */
+  private static class Suite {
+    public final String component;
+    public final IReportFacade reporter;
+    public volatile boolean passed = true;
+    public volatile Throwable error = null;
+
+    public Suite(String componentName, IReportFacade suiteReporter) {
+      component = componentName;
+      reporter = suiteReporter;
+    }
+  }
+
+  /**
+   * A test case, already encoded for sending, and the suite it belongs to.
+   */
+  private static class Assignment {
+    public final Suite suite;
+    public final String testCaseId;
+    public final byte[] encodedTestCase;
+    // Only used by the worker's connection that is running the test case
+    public int attempts = 0;
+    public boolean started = false;
+    public final Set<String> runningTests = new HashSet<String>();
+
+    public Assignment(Suite testSuite, String id, byte[] encoded) {
+      suite = testSuite;
+      testCaseId = id;
+      encodedTestCase = encoded;
+    }
+  }
+
+  /**
+   * Bind the coordinator to an address. A port of 0 binds to any free port.
+   * 
+   * @throws IOException
+   */
+  public Coordinator(InetSocketAddress address) throws IOException {
+    serverSocket = new ServerSocket();
+    serverSocket.bind(address);
+    suites = new LinkedHashMap<String, Suite>();
+    queue = new LinkedBlockingQueue<Assignment>();
+    remaining = new AtomicInteger(0);
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Add a parsed test suite whose test cases are to be run by the workers.
+   * 
+   * @param component
+   *          - The suite's component
+   * @param testCases
+   *          - The suite's test cases
+   * @param reporter
+   *          - The reporter for the suite's component
+   * @throws IOException
+   *           if a test case cannot be encoded, in which case none of the
+   *           suite's test cases are added
+   */
+  public void addSuite(String component, List<ITestCaseDescriptor> testCases,
+      IReportFacade reporter) throws IOException {
+    final Suite suite = new Suite(component, reporter);
+    final List<Assignment> assignments = new ArrayList<Assignment>(
+        testCases.size());
+    for (ITestCaseDescriptor testCase : testCases) {
+      final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+      TestCaseDescriptorCodec.encode(testCase, new DataOutputStream(encoded));
+      assignments.add(new Assignment(suite, testCase.getId(), encoded
+          .toByteArray()));
+    }
+
+    suites.put(component, suite);
+    remaining.addAndGet(assignments.size());
+    queue.addAll(assignments);
+  }
+
+  /**
+   * Serve the test cases to workers until every test case has run, then report
+   * the end of each suite.
+   * 
+   * @return Each suite's passed flag, by component
+   * @throws InterruptedException
+   */
+  public Map<String, Boolean> run() throws InterruptedException {
+    for (Suite suite : suites.values()) {
+      suite.reporter.startingTestSuite(suite.component);
+    }
+
+    final Thread acceptor = new Thread(new Runnable() {
+      public void run() {
+        acceptWorkers();
+      }
+    }, "coordinator");
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+    try {
+      synchronized (finishedLock) {
+        while (remaining.get() > 0) {
+          finishedLock.wait();
+        }
+      }
+    } finally {
+      close();
+    }
+
+    final Map<String, Boolean> results = new LinkedHashMap<String, Boolean>();
+    for (Suite suite : suites.values()) {
+      if (suite.error != null) {
+        suite.reporter.errorTestSuite(suite.component, suite.error);
+      } else if (suite.passed == true) {
+        suite.reporter.passedTestSuite(suite.component);
+      } else {
+        suite.reporter.failedTestSuite(suite.component);
+      }
+      results.put(suite.component, suite.error == null && suite.passed);
+    }
+
+    return results;
+  }
+
+  private void close() {
+    try {
+      serverSocket.close();
+    } catch (IOException ex) {
+      logger.warn(String.format("Failed to close coordinator socket: %s",
+          ex.getMessage()));
+    }
+  }
+
+  /**
+   * Accept workers until the coordinator is closed. After a failed accept the
+   * next is tried after a delay that doubles with each failure in a row, up to
+   * a limit, so that a lasting failure does not spin.
+   */
+  private void acceptWorkers() {
+    long delayms = pollDelayms;
+    while (serverSocket.isClosed() == false) {
+      final Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException ex) {
+        if (serverSocket.isClosed() == true) {
+          break;
+        }
+        logger.error(String.format(
+            "Failed to accept worker, retrying in %d ms: %s", delayms,
+            ex.getMessage()));
+        try {
+          Thread.sleep(delayms);
+        } catch (InterruptedException interruptedEx) {
+          break;
+        }
+        delayms = Math.min(delayms * 2, maxAcceptDelayms);
+        continue;
+      }
+      delayms = pollDelayms;
+
+      final String workerName = socket.getRemoteSocketAddress().toString();
+      logger.info(String.format("Worker [%s] connected", workerName));
+      final Thread connection = new Thread(new Runnable() {
+        public void run() {
+          serveWorker(socket, workerName);
+        }
+      }, "worker " + workerName);
+      connection.setDaemon(true);
+      connection.start();
+    }
+  }
+
+  private void serveWorker(Socket socket, String workerName) {
+    Assignment current = null;
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(
+          socket.getInputStream()));
+      final DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream()));
+
+      while (true) {
+        expectMessage(in.readByte(), Protocol.REQUEST);
+        current = nextAssignment();
+        if (current == null) {
+          out.writeByte(Protocol.DONE);
+          out.flush();
+          break;
+        }
+
+        out.writeByte(Protocol.TEST_CASE);
+        writeString(out, current.suite.component);
+        out.writeInt(current.encodedTestCase.length);
+        out.write(current.encodedTestCase);
+        out.flush();
+
+        current.attempts++;
+        current.started = false;
+        current.runningTests.clear();
+        runAssignment(current, in);
+        current = null;
+      }
+    } catch (IOException ex) {
+      if (current != null && current.attempts < maxAttempts) {
+        final String msg = String.format(
+            "Worker [%s] lost while running test case [%s]; "
+                + "handing it to another worker: %s", workerName,
+            current.testCaseId, ex.getMessage());
+        logger.warn(msg);
+        abortAttempt(current, new TRException(msg, ex), false);
+        queue.add(current);
+      } else if (current != null) {
+        final String msg = String.format(
+            "Worker [%s] lost while running test case [%s], "
+                + "giving up after %d attempts: %s", workerName,
+            current.testCaseId, current.attempts, ex.getMessage());
+        logger.error(msg);
+        final TRException error = new TRException(msg, ex);
+        abortAttempt(current, error, true);
+        complete(current, false, error);
+      } else {
+        logger.warn(String.format("Worker [%s] lost: %s", workerName,
+            ex.getMessage()));
+      }
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException ex) {
+        // Nothing more can be done with the worker
+      }
+    }
+  }
+
+  /**
+   * Replay a worker's events for a test case until it reports the test case's
+   * result.
+   */
+  private void runAssignment(Assignment assignment, DataInputStream in)
+      throws IOException {
+    final IReportFacade reporter = assignment.suite.reporter;
+    while (true) {
+      final byte message = in.readByte();
+      switch (message) {
+      case Protocol.EVENT:
+        final TRTestEvent event = Protocol.readEvent(in);
+        switch (event.getKind()) {
+        case TEST_CASE_STARTED:
+          assignment.started = true;
+          break;
+
+        case TEST_STARTED:
+          assignment.runningTests.add(event.getId());
+          break;
+
+        case TEST_FINISHED:
+          assignment.runningTests.remove(event.getId());
+          break;
+
+        default:
+          break;
+        }
+        replayEvent(reporter, event);
+        break;
+
+      case Protocol.RESULT:
+        complete(assignment, in.readBoolean(), null);
+        return;
+
+      case Protocol.ERROR:
+        complete(assignment, false, new TRRemoteException(readString(in), null));
+        return;
+
+      default:
+        throw new IOException(String.format("Unexpected message [%d]",
+            message));
+      }
+    }
+  }
+
+  /**
+   * Report the end of a lost attempt at a test case, so that every test and
+   * test case the attempt started is finished before the next attempt starts.
+   * 
+   * @param always
+   *          - Whether to report the test case's error even if the attempt did
+   *          not start it
+   */
+  private static void abortAttempt(Assignment assignment, Throwable error,
+      boolean always) {
+    final IReportFacade reporter = assignment.suite.reporter;
+    for (String testId : assignment.runningTests) {
+      reporter.errorTest(testId, error);
+    }
+    if (assignment.started == true || always == true) {
+      reporter.errorTestCase(assignment.testCaseId, error);
+    }
+  }
+
+  private Assignment nextAssignment() {
+    while (remaining.get() > 0) {
+      try {
+        final Assignment assignment = queue.poll(pollDelayms,
+            TimeUnit.MILLISECONDS);
+        if (assignment != null) {
+          return assignment;
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private void complete(Assignment assignment, boolean passed, Throwable error) {
+    final Suite suite = assignment.suite;
+    if (passed == false) {
+      suite.passed = false;
+    }
+    if (error != null && suite.error == null) {
+      suite.error = error;
+    }
+
+    if (remaining.decrementAndGet() == 0) {
+      synchronized (finishedLock) {
+        finishedLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Report a worker's test case and test events. Suite and component events
+   * are reported by the coordinator itself.
+   */
+  private static void replayEvent(IReportFacade reporter, TRTestEvent event) {
+    final String id = event.getId();
+    final Throwable thr = event.getThrowable();
+
+    switch (event.getKind()) {
+    case TEST_CASE_STARTED:
+      reporter.startingTestCase(id, event.getDescription());
+      break;
+
+    case TEST_CASE_FINISHED:
+      if (event.isFailure() == false) {
+        reporter.passedTestCase(id);
+      } else if (thr == null) {
+        reporter.failedTestCase(id);
+      } else {
+        reporter.errorTestCase(id, thr);
+      }
+      break;
+
+    case TEST_STARTED:
+      reporter.startingTest(id);
+      break;
+
+    case TEST_FINISHED:
+      if (event.isFailure() == false) {
+        reporter.passedTest(id);
+      } else if (thr == null) {
+        reporter.failedTest(id, event.getDescription());
+      } else {
+        reporter.errorTest(id, thr);
+      }
+      break;
+
+    default:
+      logger.debug(String.format("Ignoring worker event [%s]", event.getKind()));
+    }
+  }
+
+  private static void expectMessage(byte message, byte expected)
+      throws IOException {
+    if (message != expected) {
+      throw new IOException(String.format(
+          "Unexpected message [%d], expected [%d]", message, expected));
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.distributed;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+import org.splandroid.tr.events.IEventObserver;
+import org.splandroid.tr.events.TRTestEvent;
+
+/**
+ * Sends a worker's test events to its coordinator.
+ */
+class EventForwarder implements IEventObserver {
+  private static final Logger logger = Logger.getLogger(EventForwarder.class);
+
+  private final DataOutputStream out;
+
+  public EventForwarder(DataOutputStream coordinatorStream) {
+    out = coordinatorStream;
+  }
+
+  public void setComponent(String component) {
+  }
+
+  public void update(TRTestEvent event) {
+    try {
+      synchronized (out) {
+        Protocol.writeEvent(out, event);
+        out.flush();
+      }
+    } catch (IOException ex) {
+      logger.error(String.format("Failed to send test event [%s] for [%s]: %s",
+          event.getKind(), event.getId(), ex.getMessage()));
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.distributed;
+
+import static org.splandroid.tr.commons.DataStreams.readString;
+import static org.splandroid.tr.commons.DataStreams.writeString;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.splandroid.tr.events.TRTestEvent;
+import org.splandroid.tr.events.TRTestEventKind;
+
+/**
+ * The messages passed between a coordinator and its workers. A worker asks for
+ * a test case with a REQUEST; the coordinator answers with a TEST_CASE, or with
+ * DONE once every test case has run. While a worker runs a test case it sends
+ * an EVENT for each test event, then a RESULT, or an ERROR if the test case
+ * could not be built.
+ */
+class Protocol {
+  // Worker to coordinator
+  public static final byte REQUEST = 1;
+  public static final byte EVENT = 2;
+  public static final byte RESULT = 3;
+  public static final byte ERROR = 4;
+
+  // Coordinator to worker
+  public static final byte TEST_CASE = 16;
+  public static final byte DONE = 17;
+
+  public static void writeEvent(DataOutput out, TRTestEvent event)
+      throws IOException {
+    out.writeByte(EVENT);
+    writeString(out, event.getKind().name());
+    writeString(out, event.getId());
+    writeString(out, event.getDescription());
+    out.writeBoolean(event.isFailure());
+
+    final Throwable thr = event.getThrowable();
+    out.writeBoolean(thr != null);
+    if (thr != null) {
+      final StringWriter stackTrace = new StringWriter();
+      thr.printStackTrace(new PrintWriter(stackTrace, true));
+      writeString(out, thr.toString());
+      writeString(out, stackTrace.toString());
+    }
+  }
+
+  /**
+   * Read the body of an EVENT message. The throwable of the event, if it had
+   * one, is rebuilt as a TRRemoteException.
+   */
+  public static TRTestEvent readEvent(DataInput in) throws IOException {
+    final String kindName = readString(in);
+    final String id = readString(in);
+    final String description = readString(in);
+    final boolean isFailure = in.readBoolean();
+
+    Throwable thr = null;
+    if (in.readBoolean() == true) {
+      final String message = readString(in);
+      thr = new TRRemoteException(message, readString(in));
+    }
+
+    final TRTestEventKind kind;
+    try {
+      kind = TRTestEventKind.valueOf(kindName);
+    } catch (IllegalArgumentException ex) {
+      throw new IOException(String.format("Unknown test event kind [%s]",
+          kindName));
+    }
+
+    return new TRTestEvent(kind, thr, id, description, isFailure);
+  }
+}
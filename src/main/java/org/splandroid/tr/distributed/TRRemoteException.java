@@ -0,0 +1,60 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.distributed;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+
+/**
+ * A throwable raised in a worker process. Its stack trace is the one printed
+ * by the worker.
+ */
+public class TRRemoteException extends Exception {
+  public static final long serialVersionUID = Long.MAX_VALUE;
+
+  private final String remoteStackTrace;
+
+  public TRRemoteException(String message, String stackTrace) {
+    super(message);
+    remoteStackTrace = stackTrace;
+  }
+
+  @Override
+  public String toString() {
+    return getMessage();
+  }
+
+  @Override
+  public void printStackTrace(PrintWriter writer) {
+    if (remoteStackTrace == null) {
+      super.printStackTrace(writer);
+    } else {
+      writer.print(remoteStackTrace);
+    }
+  }
+
+  @Override
+  public void printStackTrace(PrintStream stream) {
+    if (remoteStackTrace == null) {
+      super.printStackTrace(stream);
+    } else {
+      stream.print(remoteStackTrace);
+    }
+  }
+}
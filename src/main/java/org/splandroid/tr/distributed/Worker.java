@@ -0,0 +1,179 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.distributed;
+
+import static org.splandroid.tr.commons.DataStreams.readString;
+import static org.splandroid.tr.commons.DataStreams.writeString;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.splandroid.tr.TRException;
+import org.splandroid.tr.events.IEventObserver;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.tests.TestCaseDescriptorCodec;
+import org.splandroid.tr.reporting.IReportFacade;
+import org.splandroid.tr.reporting.TRTestReportFactory;
+import org.splandroid.tr.testing.ITRTestInputProvider;
+import org.splandroid.tr.testing.ITRTestOutputManager;
+import org.splandroid.tr.testing.TRTestInputProvider;
+import org.splandroid.tr.testing.TRTestOutputManager;
+import org.splandroid.tr.testing.TRTestSuite;
+
+/**
+ * Runs test cases handed to it by a coordinator until the coordinator has no
+ * more. Test events are logged locally and sent to the coordinator.
+ */
+public class Worker {
+  private static final Logger logger = Logger.getLogger(Worker.class);
+
+  private final InetSocketAddress coordinatorAddress;
+  private final String testInfoDir;
+  private final String testResultsDir;
+  private final Date timeNow;
+
+  /**
+   * @param address
+   *          - The coordinator's address
+   * @param testInfo
+   *          - The test info directory to read test inputs from
+   * @param testResults
+   *          - The test results directory to write test outputs to
+   * @param time
+   *          - Time of the test, used to name the results directory
+   */
+  public Worker(InetSocketAddress address, String testInfo,
+      String testResults, Date time) {
+    coordinatorAddress = address;
+    testInfoDir = testInfo;
+    testResultsDir = testResults;
+    timeNow = time;
+  }
+
+  /**
+   * Run test cases until the coordinator has no more.
+   * 
+   * @return The number of test cases run
+   * @throws IOException
+   *           if the connection to the coordinator fails
+   */
+  public int run() throws IOException {
+    final Socket socket = new Socket(coordinatorAddress.getHostName(),
+        coordinatorAddress.getPort());
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(
+          socket.getInputStream()));
+      final DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream()));
+      final Map<String, TRTestSuite> suites = new HashMap<String, TRTestSuite>();
+      final TestCaseDescriptorCodec.Decoder decoder = new TestCaseDescriptorCodec.Decoder();
+      int noTestCases = 0;
+
+      while (true) {
+        synchronized (out) {
+          out.writeByte(Protocol.REQUEST);
+          out.flush();
+        }
+
+        final byte message = in.readByte();
+        if (message == Protocol.DONE) {
+          break;
+        } else if (message != Protocol.TEST_CASE) {
+          throw new IOException(String.format("Unexpected message [%d]",
+              message));
+        }
+
+        final String component = readString(in);
+        final byte[] encodedTestCase = new byte[in.readInt()];
+        in.readFully(encodedTestCase);
+
+        TRTestSuite suite = suites.get(component);
+        if (suite == null) {
+          suite = createSuite(component, out);
+          suites.put(component, suite);
+        }
+
+        runTestCase(suite, component, decoder, encodedTestCase, out);
+        noTestCases++;
+      }
+
+      logger.info(String.format("Ran %d test cases for coordinator [%s]",
+          noTestCases, coordinatorAddress));
+      return noTestCases;
+    } finally {
+      socket.close();
+    }
+  }
+
+  private void runTestCase(TRTestSuite suite, String component,
+      TestCaseDescriptorCodec.Decoder decoder, byte[] encodedTestCase,
+      DataOutputStream out) throws IOException {
+    String error = null;
+    boolean passed = false;
+    try {
+      final ITestCaseDescriptor testCase = decoder.decode(new DataInputStream(
+          new ByteArrayInputStream(encodedTestCase)));
+      passed = suite.runTestCase(testCase);
+    } catch (IOException ex) {
+      error = String.format("[%s]: Failed to read test case: %s", component,
+          ex.getMessage());
+    } catch (TRException ex) {
+      error = String.format("[%s]: %s", component, ex.getMessage());
+    }
+
+    synchronized (out) {
+      if (error == null) {
+        out.writeByte(Protocol.RESULT);
+        out.writeBoolean(passed);
+      } else {
+        logger.error(error);
+        out.writeByte(Protocol.ERROR);
+        writeString(out, error);
+      }
+      out.flush();
+    }
+  }
+
+  private TRTestSuite createSuite(String component, DataOutputStream out) {
+    final ITRTestInputProvider inputProv = new TRTestInputProvider(testInfoDir);
+    final ITRTestOutputManager outputMgr = new TRTestOutputManager(
+        testResultsDir, timeNow);
+    final IEventObserver logFileReporter = new org.splandroid.tr.reporters.logfile.Reporter();
+    final IReportFacade reporter = TRTestReportFactory.getReporter(
+        logFileReporter, new EventForwarder(out));
+
+    inputProv.setComponent(component);
+    outputMgr.setComponent(component);
+    reporter.setComponent(component);
+
+    return new TRTestSuite(component, new ArrayList<ITestCaseDescriptor>(),
+        inputProv, outputMgr, reporter);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.events;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Times each test case from its started event to its finished event and hands
+ * the finished test case, with its duration, to a subclass to record.
+ */
+public abstract class TRTestCaseTimer implements IEventObserver {
+  private final Map<String, Long> startTimes;
+
+  private String component = null;
+
+  protected TRTestCaseTimer() {
+    startTimes = new HashMap<String, Long>();
+  }
+
+  public synchronized void setComponent(String component) {
+    this.component = component;
+  }
+
+  public synchronized void update(TRTestEvent event) {
+    final TRTestEventKind kind = event.getKind();
+    final String id = event.getId();
+    final long timeStamp = event.getTimeStamp().getTime();
+
+    if (kind == TRTestEventKind.TEST_CASE_STARTED) {
+      startTimes.put(id, timeStamp);
+    } else if (kind == TRTestEventKind.TEST_CASE_FINISHED) {
+      assert component != null : "Component must be set";
+      final Long started = startTimes.remove(id);
+      finishedTestCase(component, event, (started == null) ? null : timeStamp
+          - started);
+    }
+  }
+
+  /**
+   * Record a finished test case. Called with the timer's lock held.
+   * 
+   * @param component
+   *          - Component the test case belongs to
+   * @param event
+   *          - The test case's finished event
+   * @param duration
+   *          - Milliseconds the test case ran for, or null if its start was
+   *          not seen
+   */
+  protected abstract void finishedTestCase(String component, TRTestEvent event,
+      Long duration);
+}
@@ -18,9 +18,7 @@
  */
 package org.splandroid.tr.extensions.execdemo;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +26,7 @@ import org.apache.log4j.Logger;
 import org.splandroid.tr.parsers.ITestArguments;
 import org.splandroid.tr.parsers.ITestDescriptor;
 import org.splandroid.tr.testing.TRExecutableTestCase;
+import org.splandroid.tr.testing.TRProcessOutput;
 import org.splandroid.tr.testing.annotations.Test;
 import org.splandroid.tr.testing.annotations.TestExecuteSetter;
 import org.splandroid.tr.testing.annotations.TestSetter;
@@ -68,14 +67,20 @@ public class Demo extends TRExecutableTestCase {
     logger.debug(String.format("Working directory: [%s]",
         System.getProperty("user.dir")));
     output = null;
-    final OutputStream outStream = new ByteArrayOutputStream();
-    final OutputStream errStream = new ByteArrayOutputStream();
-    final int exitStatus = runProcess(executable, getOutputDirectory(),
-        System.in, outStream, errStream, script, scriptArgument);
+    final TRProcessOutput outStream = captureOutput("stdout.txt");
+    final TRProcessOutput errStream = captureOutput("stderr.txt");
+    int exitStatus;
+    try {
+      exitStatus = runProcess(executable, getOutputDirectory(), System.in,
+          outStream, errStream, script, scriptArgument);
+    } finally {
+      outStream.close();
+      errStream.close();
+    }
     assertTrue(
         String.format("%s failed with exit code %d", executable, exitStatus),
         exitStatus == 0);
-    output = splitLines(outStream.toString())[0];
+    output = splitLines(outStream.getHead())[0];
   }
 
   @TestSetter
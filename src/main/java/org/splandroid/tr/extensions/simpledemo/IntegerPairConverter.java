@@ -0,0 +1,40 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.extensions.simpledemo;
+
+import org.splandroid.tr.parsers.IArgumentConverter;
+
+/**
+ * Converts &lt;a&gt;:&lt;b&gt; argument values to integer pairs.
+ */
+public class IntegerPairConverter implements IArgumentConverter {
+  public String getKind() {
+    return IntegerPair.class.getName();
+  }
+
+  public Object convert(String value) {
+    final int split = value.indexOf(':');
+    if (split < 0) {
+      throw new IllegalArgumentException(String.format(
+          "Expected <a>:<b>, got [%s]", value));
+    }
+    return new IntegerPair(Integer.parseInt(value.substring(0, split)),
+        Integer.parseInt(value.substring(split + 1)));
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+import org.splandroid.tr.TRException;
+
+/**
+ * The registry of argument converters, keyed by the name of the kind they
+ * build. The built-in converters use the java.lang valueOf methods, which
+ * parse the value as the String constructors do but reuse cached objects
+ * where they can, and for the primitive kinds, which they build boxed.
+ * Converters found with java.util.ServiceLoader replace the built-in ones for
+ * the same kind.
+ * 
+ * @see org.splandroid.tr.parsers.IArgumentConverter
+ */
+public final class ArgumentConverters {
+  private static final Logger logger = Logger
+      .getLogger(ArgumentConverters.class);
+
+  private static final ConcurrentMap<String, IArgumentConverter> converters = new ConcurrentHashMap<String, IArgumentConverter>();
+
+  static {
+    register(new IArgumentConverter() {
+      public String getKind() {
+        return String.class.getName();
+      }
+
+      public Object convert(String value) {
+        return value;
+      }
+    });
+    register(new IArgumentConverter() {
+      public String getKind() {
+        return Boolean.class.getName();
+      }
+
+      public Object convert(String value) {
+        return Boolean.valueOf(value);
+      }
+    });
+    register(new IArgumentConverter() {
+      public String getKind() {
+        return Byte.class.getName();
+      }
+
+      public Object convert(String value) {
+        return Byte.valueOf(value);
+      }
+    });
+    register(new IArgumentConverter() {
+      public String getKind() {
+        return Short.class.getName();
+      }
+
+      public Object convert(String value) {
+        return Short.valueOf(value);
+      }
+    });
+    register(new IArgumentConverter() {
+      public String getKind() {
+        return Integer.class.getName();
+      }
+
+      public Object convert(String value) {
+        return Integer.valueOf(value);
+      }
+    });
+    register(new IArgumentConverter() {
+      public String getKind() {
+        return Long.class.getName();
+      }
+
+      public Object convert(String value) {
+        return Long.valueOf(value);
+      }
+    });
+    register(new IArgumentConverter() {
+      public String getKind() {
+        return Float.class.getName();
+      }
+
+      public Object convert(String value) {
+        return Float.valueOf(value);
+      }
+    });
+    register(new IArgumentConverter() {
+      public String getKind() {
+        return Double.class.getName();
+      }
+
+      public Object convert(String value) {
+        return Double.valueOf(value);
+      }
+    });
+
+    for (PrimitiveKind kind : PrimitiveKind.values()) {
+      register(new PrimitiveConverter(kind));
+    }
+
+    for (IArgumentConverter converter : ServiceLoader
+        .load(IArgumentConverter.class)) {
+      logger.debug(String.format("Found argument converter [%s] for kind [%s]",
+          converter.getClass().getName(), converter.getKind()));
+      register(converter);
+    }
+  }
+
+  private ArgumentConverters() {
+  }
+
+  private static void register(IArgumentConverter converter) {
+    converters.put(converter.getKind(), converter);
+  }
+
+  /**
+   * Get the converter for an argument kind. A kind with no registered converter
+   * gets one that calls the kind's String constructor, which is looked up once.
+   * 
+   * @param kindClassName
+   *          - The name of the argument's class
+   * @throws TRException
+   *           if there is no converter and the class cannot be loaded or has
+   *           no String constructor
+   */
+  public static IArgumentConverter getConverter(String kindClassName)
+      throws TRException {
+    IArgumentConverter converter = converters.get(kindClassName);
+    if (converter == null) {
+      converter = new StringConstructorConverter(kindClassName);
+      final IArgumentConverter existing = converters.putIfAbsent(
+          kindClassName, converter);
+      if (existing != null) {
+        converter = existing;
+      }
+    }
+    return converter;
+  }
+
+  /**
+   * Builds the boxed values of a primitive kind.
+   */
+  private static class PrimitiveConverter implements IArgumentConverter {
+    private final PrimitiveKind kind;
+
+    public PrimitiveConverter(PrimitiveKind primitiveKind) {
+      kind = primitiveKind;
+    }
+
+    public String getKind() {
+      return kind.getName();
+    }
+
+    public Object convert(String value) {
+      return kind.box(kind.parse(value));
+    }
+  }
+
+  /**
+   * Builds arguments of a kind with its String constructor.
+   */
+  private static class StringConstructorConverter implements
+      IArgumentConverter {
+    private final String kind;
+    private final Constructor<?> klassConstructor;
+
+    public StringConstructorConverter(String klassName) throws TRException {
+      Class<?> klass;
+      try {
+        klass = Class.forName(klassName);
+      } catch (ClassNotFoundException notFoundEx) {
+        throw new TRException(String.format(
+            "Argument class [%s] not found: %s", klassName,
+            notFoundEx.getMessage()), notFoundEx);
+      }
+
+      try {
+        klassConstructor = klass.getConstructor(String.class);
+      } catch (NoSuchMethodException noSuchMethodEx) {
+        throw new TRException(String.format(
+            "Argument class [%s] has no converter and no String constructor",
+            klassName), noSuchMethodEx);
+      } catch (SecurityException secEx) {
+        throw new TRException(String.format(
+            "Constructor for argument class [%s] does not allow execution",
+            klassName), secEx);
+      }
+      kind = klassName;
+    }
+
+    public String getKind() {
+      return kind;
+    }
+
+    public Object convert(String value) throws Exception {
+      try {
+        return klassConstructor.newInstance(value);
+      } catch (InvocationTargetException ex) {
+        final Throwable cause = ex.getCause();
+        if (cause instanceof Exception) {
+          throw (Exception )cause;
+        }
+        throw ex;
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+/**
+ * Converts an argument's value, as written in tests.xml, to an object of the
+ * argument's kind, as declared in profile.xml.
+ * 
+ * Converters for the java.lang kinds are built in. Converters for other kinds
+ * are found with java.util.ServiceLoader, by listing them in
+ * META-INF/services/org.splandroid.tr.parsers.IArgumentConverter. A kind with
+ * no converter is built with its String constructor.
+ * 
+ * @see org.splandroid.tr.parsers.ArgumentConverters
+ */
+public interface IArgumentConverter {
+  /**
+   * @return The name of the class this converter builds
+   */
+  public String getKind();
+
+  /**
+   * Convert an argument value. Converters are shared, so this must be safe to
+   * call from several threads at once.
+   * 
+   * @param value
+   *          - The argument's value, after any substitution
+   * @return An object of the converter's kind
+   * @throws Exception
+   *           if the value is not valid for the kind
+   */
+  public Object convert(String value) throws Exception;
+}
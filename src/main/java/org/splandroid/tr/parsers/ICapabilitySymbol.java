@@ -20,4 +20,12 @@ package org.splandroid.tr.parsers;
 
 public interface ICapabilitySymbol extends IClassSymbol {
   public String getDescription();
+
+  /**
+   * Get the time, in milliseconds, that a test case of this capability may run
+   * for before it is stopped.
+   * 
+   * @return The timeout, or 0 if the test cases may run indefinitely
+   */
+  public long getTimeout();
 }
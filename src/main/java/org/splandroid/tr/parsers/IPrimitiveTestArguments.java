@@ -0,0 +1,66 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+/**
+ * Test arguments that may hold arguments of primitive kinds. Primitive
+ * arguments can be read without boxing; reading them through the Map methods
+ * gives their boxed values. The arguments can also be read by position, from 0
+ * to size() - 1, in the order the profile defines them.
+ * 
+ * @see org.splandroid.tr.parsers.PrimitiveKind
+ */
+public interface IPrimitiveTestArguments extends ITestArguments {
+  /**
+   * @return The argument's primitive kind, or null if it is not primitive
+   */
+  public PrimitiveKind getPrimitiveKind(String argId);
+
+  public boolean getBoolean(String argId);
+
+  public int getInt(String argId);
+
+  public long getLong(String argId);
+
+  public float getFloat(String argId);
+
+  public double getDouble(String argId);
+
+  /**
+   * @return The ID of the argument at a position
+   */
+  public String getArgumentId(int idx);
+
+  /**
+   * @return The primitive kind of the argument at a position, or null if it is
+   *         not primitive
+   */
+  public PrimitiveKind getPrimitiveKind(int idx);
+
+  /**
+   * @return The value of the argument at a position, boxed if it is primitive
+   */
+  public Object getArgument(int idx);
+
+  /**
+   * @return The bits of the primitive argument at a position
+   * @see org.splandroid.tr.parsers.PrimitiveKind#parse(String)
+   */
+  public long getPrimitiveBits(int idx);
+}
@@ -33,4 +33,12 @@ public interface ITestCaseDescriptor {
   public ITestArguments getSetUpInfo();
 
   public Map<String, String> getEnvironment();
+
+  /**
+   * Get the time, in milliseconds, that the test case may run for before it is
+   * stopped and reported as an error.
+   * 
+   * @return The timeout, or 0 if the test case may run indefinitely
+   */
+  public long getTimeout();
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+/**
+ * Chooses the test cases to read from a tests file. Test cases that are not
+ * selected are skipped by the parser without being built.
+ */
+public interface ITestCaseSelector {
+  /**
+   * @param testCaseId
+   *          - The ID of a test case in the tests file
+   * @return True if the test case should be read
+   */
+  public boolean isSelected(String testCaseId);
+}
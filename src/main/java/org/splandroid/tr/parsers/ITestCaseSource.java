@@ -0,0 +1,39 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+/**
+ * A source of test case descriptors that are read one at a time, so that only
+ * the test case being handed out needs to be held in memory.
+ */
+public interface ITestCaseSource {
+  /**
+   * Get the next test case, reading it if it has not been read yet.
+   * 
+   * @return The next test case, or null if there are no more
+   * @throws ParserException
+   *           if the next test case cannot be read
+   */
+  public ITestCaseDescriptor next() throws ParserException;
+
+  /**
+   * Release the source's input. Any test cases not yet read are skipped.
+   */
+  public void close();
+}
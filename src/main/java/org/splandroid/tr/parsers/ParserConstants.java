@@ -22,6 +22,7 @@ public class ParserConstants {
   public static final String TAG_TESTCASE = "testcase";
   public static final String ATTR_ID = "id";
   public static final String ATTR_CLASS = "class";
+  public static final String ATTR_TIMEOUT = "timeout";
 
   public static final int fatalExitCode = 2;
 }
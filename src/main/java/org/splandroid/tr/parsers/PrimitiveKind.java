@@ -0,0 +1,123 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+/**
+ * The primitive argument kinds that profile.xml may declare, by their Java
+ * names. A primitive argument's value is held as the bits of a long so that it
+ * can be stored and passed to a primitive setter without boxing.
+ * 
+ * @see org.splandroid.tr.parsers.IPrimitiveTestArguments
+ */
+public enum PrimitiveKind {
+  BOOLEAN("boolean", boolean.class) {
+    public long parse(String value) {
+      return Boolean.parseBoolean(value) ? 1 : 0;
+    }
+
+    public Object box(long bits) {
+      return Boolean.valueOf(bits != 0);
+    }
+  },
+  INT("int", int.class) {
+    public long parse(String value) {
+      return Integer.parseInt(value);
+    }
+
+    public Object box(long bits) {
+      return Integer.valueOf((int )bits);
+    }
+  },
+  LONG("long", long.class) {
+    public long parse(String value) {
+      return Long.parseLong(value);
+    }
+
+    public Object box(long bits) {
+      return Long.valueOf(bits);
+    }
+  },
+  FLOAT("float", float.class) {
+    public long parse(String value) {
+      return Float.floatToRawIntBits(Float.parseFloat(value));
+    }
+
+    public Object box(long bits) {
+      return Float.valueOf(Float.intBitsToFloat((int )bits));
+    }
+  },
+  DOUBLE("double", double.class) {
+    public long parse(String value) {
+      return Double.doubleToRawLongBits(Double.parseDouble(value));
+    }
+
+    public Object box(long bits) {
+      return Double.valueOf(Double.longBitsToDouble(bits));
+    }
+  };
+
+  private final String name;
+  private final Class<?> type;
+
+  PrimitiveKind(String kindName, Class<?> kindType) {
+    name = kindName;
+    type = kindType;
+  }
+
+  /**
+   * @return The kind's name as written in profile.xml
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The primitive class, such as int.class
+   */
+  public Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * Parse a value of this kind to its bits.
+   * 
+   * @throws NumberFormatException
+   *           if the value is not valid for the kind
+   */
+  public abstract long parse(String value);
+
+  /**
+   * Box a value of this kind from its bits.
+   */
+  public abstract Object box(long bits);
+
+  /**
+   * Get the primitive kind with a name.
+   * 
+   * @return The kind, or null if the name is not a primitive kind
+   */
+  public static PrimitiveKind forName(String kindName) {
+    for (PrimitiveKind kind : values()) {
+      if (kind.name.equals(kindName)) {
+        return kind;
+      }
+    }
+    return null;
+  }
+}
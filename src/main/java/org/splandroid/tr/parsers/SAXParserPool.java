@@ -0,0 +1,71 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+
+/**
+ * SAX parsers shared by the profile and tests parsers. The factory is looked
+ * up once, and a parser is reset and kept for reuse after each parse, so
+ * components parsed one after another, or at the same time on several
+ * threads, do not each build a new parser.
+ */
+public class SAXParserPool {
+  private static final SAXParserFactory factory = SAXParserFactory
+      .newInstance();
+  private static final Queue<SAXParser> parsers = new ConcurrentLinkedQueue<SAXParser>();
+
+  /**
+   * Take a parser from the pool, building one if the pool is empty.
+   * 
+   * @return A parser for the caller's use only, until it is released
+   * @throws ParserConfigurationException
+   * @throws SAXException
+   */
+  public static SAXParser acquire() throws ParserConfigurationException,
+      SAXException {
+    final SAXParser parser = parsers.poll();
+    if (parser != null) {
+      return parser;
+    }
+    synchronized (factory) {
+      return factory.newSAXParser();
+    }
+  }
+
+  /**
+   * Reset a parser and return it to the pool. A parser that cannot be reset
+   * is dropped.
+   */
+  public static void release(SAXParser parser) {
+    try {
+      parser.reset();
+    } catch (UnsupportedOperationException ex) {
+      return;
+    }
+    parsers.offer(parser);
+  }
+}
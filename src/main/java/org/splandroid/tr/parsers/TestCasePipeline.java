@@ -0,0 +1,143 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reads test cases from a source on a thread of its own, so that reading them
+ * overlaps with running them. Up to a fixed number of test cases are read
+ * ahead of those handed out; once that many are waiting the reader stops
+ * until one is taken, which keeps memory bounded however long the source is.
+ */
+public class TestCasePipeline implements ITestCaseSource {
+  private static final Logger logger = Logger.getLogger(TestCasePipeline.class);
+
+  private final String name;
+  private final ITestCaseSource source;
+  private final BlockingQueue<Item> queue;
+  private final Thread reader;
+  private volatile boolean closed = false;
+  private boolean finished = false;
+
+  /**
+   * A test case read from the source, or the end of the source with the error
+   * that ended it, if any.
+   */
+  private static final class Item {
+    private final ITestCaseDescriptor testCase;
+    private final ParserException error;
+
+    public Item(ITestCaseDescriptor readTestCase, ParserException readError) {
+      testCase = readTestCase;
+      error = readError;
+    }
+  }
+
+  /**
+   * Start reading test cases from a source.
+   * 
+   * @param pipelineName
+   *          - Names the reader thread
+   * @param testCases
+   *          - The source to read, which is closed once it has been read
+   * @param capacity
+   *          - The maximum number of test cases to read ahead
+   */
+  public TestCasePipeline(String pipelineName, ITestCaseSource testCases,
+      int capacity) {
+    assert capacity > 0 : "Capacity must be positive";
+    name = pipelineName;
+    source = testCases;
+    queue = new ArrayBlockingQueue<Item>(capacity);
+    reader = new Thread(new Runnable() {
+      public void run() {
+        readAll();
+      }
+    }, name + "-reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Read test cases into the queue until the source ends, fails, or the
+   * pipeline is closed.
+   */
+  private void readAll() {
+    int noTestCases = 0;
+    Item last = new Item(null, null);
+    try {
+      ITestCaseDescriptor testCase;
+      while (closed == false && (testCase = source.next()) != null) {
+        queue.put(new Item(testCase, null));
+        noTestCases++;
+      }
+    } catch (ParserException ex) {
+      last = new Item(null, ex);
+    } catch (InterruptedException ex) {
+      // Closed while waiting for room in the queue
+      return;
+    } catch (RuntimeException ex) {
+      last = new Item(null, new ParserException(ex));
+    } finally {
+      source.close();
+    }
+
+    logger.debug(String.format("[%s]: Read %d test cases", name, noTestCases));
+    try {
+      queue.put(last);
+    } catch (InterruptedException ex) {
+      // Closed while waiting for room in the queue
+    }
+  }
+
+  public synchronized ITestCaseDescriptor next() throws ParserException {
+    if (finished == true) {
+      return null;
+    }
+
+    Item item;
+    try {
+      item = queue.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ParserException(String.format(
+          "Interrupted waiting for the next test case of [%s]", name), ex);
+    }
+
+    if (item.testCase == null) {
+      finished = true;
+      if (item.error != null) {
+        throw item.error;
+      }
+    }
+    return item.testCase;
+  }
+
+  /**
+   * Stop reading test cases. The source is closed once the reader stops.
+   */
+  public void close() {
+    closed = true;
+    reader.interrupt();
+  }
+}
@@ -22,22 +22,34 @@ import org.splandroid.tr.parsers.ICapabilitySymbol;
 
 class CapabilitySymbol extends ClassSymbol implements ICapabilitySymbol {
   private final String description;
+  private final long timeout;
 
   public CapabilitySymbol(String symbolId, String desc, String className) {
+    this(symbolId, desc, className, 0);
+  }
+
+  public CapabilitySymbol(String symbolId, String desc, String className,
+      long timeoutms) {
     super(symbolId, className);
     description = desc;
+    timeout = timeoutms;
   }
 
   public String getDescription() {
     return description;
   }
 
+  public long getTimeout() {
+    return timeout;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
     int result = super.hashCode();
     result = prime * result
         + ((description == null) ? 0 : description.hashCode());
+    result = prime * result + (int )(timeout ^ (timeout >>> 32));
     return result;
   }
 
@@ -60,6 +72,9 @@ class CapabilitySymbol extends ClassSymbol implements ICapabilitySymbol {
     } else if (!description.equals(other.description)) {
       return false;
     }
+    if (timeout != other.timeout) {
+      return false;
+    }
     return true;
   }
 }
@@ -22,12 +22,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.log4j.Logger;
+import org.splandroid.tr.commons.EnvironmentSnapshot;
 import org.splandroid.tr.parsers.IArgumentSymbol;
 import org.splandroid.tr.parsers.IEnvironmentSymbol;
 import org.splandroid.tr.parsers.IParser;
@@ -35,6 +38,7 @@ import org.splandroid.tr.parsers.ISymbol;
 import org.splandroid.tr.parsers.ISymbolMap;
 import org.splandroid.tr.parsers.ITestSymbol;
 import org.splandroid.tr.parsers.ParserException;
+import org.splandroid.tr.parsers.SAXParserPool;
 import org.xml.sax.Attributes;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
@@ -49,6 +53,7 @@ class ProfileHandler extends DefaultHandler implements IMissingEnvironment {
   private static Logger logger = Logger.getLogger(ProfileHandler.class);
 
   private final ISymbolMap symbols;
+  private final Map<String, String> processEnvironment;
 
   private Locator locator = null;
 
@@ -58,15 +63,18 @@ class ProfileHandler extends DefaultHandler implements IMissingEnvironment {
   private EnvironmentSymbol currentEnvironment;
 
   private HashSet<String> missingEnvironment;
+  private TreeSet<String> expectedEnvironment;
 
   private boolean inCapability;
   private boolean inTest;
   private boolean inArguments;
   private boolean inEnvironment;
 
-  public ProfileHandler(ISymbolMap symbolTable) {
+  public ProfileHandler(ISymbolMap symbolTable,
+      Map<String, String> environment) {
     super();
     symbols = symbolTable;
+    processEnvironment = environment;
   }
 
   private String getLocation() {
@@ -87,13 +95,30 @@ class ProfileHandler extends DefaultHandler implements IMissingEnvironment {
               + "attributes: id = [%s], description = [%s], class = [%s]", id,
           desc, className), locator);
     }
+    final String timeout = attrs
+        .getValue(ProfileParserConstants.ATTR_CAPABILITY_TIMEOUT);
+    long timeoutms = 0;
+    if (timeout != null) {
+      try {
+        timeoutms = Long.parseLong(timeout) * 1000;
+      } catch (NumberFormatException ex) {
+        timeoutms = -1;
+      }
+      if (timeoutms <= 0) {
+        throw new SAXParseException(String.format(
+            "Capability with ID [%s] has an invalid timeout, expected a "
+                + "positive number of seconds: [%s]", id, timeout), locator);
+      }
+    }
     logger.debug(String.format(
         "Building capability symbol with ID [%s] and description [%s]", id,
         desc));
-    currentCapability = new CapabilitySymbol(id, desc, className);
+    currentCapability = new CapabilitySymbol(id, desc, className, timeoutms);
   }
 
   private void handleCapabilityEnd() {
+    // The capability is complete, so it is read-only from here on
+    currentCapability.freeze();
     symbols.put(currentCapability.getId(), currentCapability);
     currentCapability = null;
   }
@@ -208,7 +233,8 @@ class ProfileHandler extends DefaultHandler implements IMissingEnvironment {
           "Missing attribute [%s] in [%s] tag",
           ProfileParserConstants.ATTR_VARIABLE_NAME, tagName), locator);
     }
-    if (System.getenv(envVarName) == null) {
+    expectedEnvironment.add(envVarName);
+    if (processEnvironment.get(envVarName) == null) {
       if (!missingEnvironment.contains(envVarName)) {
         missingEnvironment.add(envVarName);
       }
@@ -227,6 +253,7 @@ class ProfileHandler extends DefaultHandler implements IMissingEnvironment {
     currentCapability = null;
     currentTest = null;
     missingEnvironment = new HashSet<String>();
+    expectedEnvironment = new TreeSet<String>();
     inCapability = false;
     inTest = false;
     inArguments = false;
@@ -312,21 +339,28 @@ class ProfileHandler extends DefaultHandler implements IMissingEnvironment {
   public Collection<String> getMissingEnviroment() {
     return missingEnvironment;
   }
+
+  public Set<String> getExpectedEnvironment() {
+    return expectedEnvironment;
+  }
 }
 
 public class ProfileParser implements IParser {
-  private final SAXParser parser;
-
   private ISymbolMap symbolTable;
+  private Map<String, String> processEnvironment = EnvironmentSnapshot
+      .getProcessEnvironment();
+  private Set<String> expectedEnvironmentNames = null;
 
   public ProfileParser() throws ProfileParserException {
-    try {
-      this.parser = SAXParserFactory.newInstance().newSAXParser();
-    } catch (SAXException saxEx) {
-      throw new ProfileParserException(saxEx);
-    } catch (ParserConfigurationException configEx) {
-      throw new ProfileParserException(configEx);
-    }
+  }
+
+  /**
+   * Check for expected variables in an environment other than the snapshot of
+   * the process's environment.
+   */
+  public ProfileParser setProcessEnvironment(Map<String, String> environment) {
+    processEnvironment = environment;
+    return this;
   }
 
   public IParser setSymbolTable(ISymbolMap symbolTab) {
@@ -335,19 +369,40 @@ public class ProfileParser implements IParser {
   }
 
   public void parse(InputStream stream) throws ProfileParserException {
-    final ProfileHandler handler = new ProfileHandler(symbolTable);
+    final ProfileHandler handler = new ProfileHandler(symbolTable,
+        processEnvironment);
+    final SAXParser parser;
+    try {
+      parser = SAXParserPool.acquire();
+    } catch (SAXException saxEx) {
+      throw new ProfileParserException(saxEx);
+    } catch (ParserConfigurationException configEx) {
+      throw new ProfileParserException(configEx);
+    }
     try {
       parser.parse(stream, handler);
     } catch (SAXException saxEx) {
       throw new ProfileParserException(saxEx);
     } catch (IOException ioEx) {
       throw new ProfileParserException(ioEx);
+    } finally {
+      SAXParserPool.release(parser);
     }
 
+    expectedEnvironmentNames = handler.getExpectedEnvironment();
     final Collection<String> missingEnvironment = handler
         .getMissingEnviroment();
     if (missingEnvironment.size() > 0) {
       throw new ProfileParserException(missingEnvironment);
     }
   }
+
+  /**
+   * Get the names of the process environment variables that the last parse
+   * expected to exist.
+   */
+  public Set<String> getExpectedEnvironmentNames() {
+    assert expectedEnvironmentNames != null : "Parse before asking for names";
+    return expectedEnvironmentNames;
+  }
 }
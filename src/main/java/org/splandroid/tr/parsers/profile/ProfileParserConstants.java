@@ -25,6 +25,7 @@ class ProfileParserConstants {
   public static final String ATTR_CAPABILITY_ID = ParserConstants.ATTR_ID;
   public static final String ATTR_CAPABILITY_DESC = "description";
   public static final String ATTR_CAPABILITY_CLASS = ParserConstants.ATTR_CLASS;
+  public static final String ATTR_CAPABILITY_TIMEOUT = ParserConstants.ATTR_TIMEOUT;
 
   public static final String TAG_TEST = "test";
   public static final String ATTR_TEST_ID = ParserConstants.ATTR_ID;
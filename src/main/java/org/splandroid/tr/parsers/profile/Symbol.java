@@ -19,6 +19,7 @@
 package org.splandroid.tr.parsers.profile;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,62 +27,85 @@ import java.util.Map;
 import org.splandroid.tr.parsers.ISymbol;
 import org.splandroid.tr.parsers.ParserException;
 
+/**
+ * A profile symbol and the symbols defined inside it, grouped by context.
+ * Child symbols are looked up by context and then by ID, so a lookup does not
+ * build a key. Once its capability has been parsed the symbol is frozen: no
+ * more symbols can be added and its context lists are read-only, so the
+ * symbol can be shared by the threads that parse and run a component's tests.
+ */
 class Symbol implements ISymbol {
   private final String id;
 
-  private final Map<String, ISymbol> symbols = new HashMap<String, ISymbol>();
+  private final Map<String, Map<String, ISymbol>> symbols = new HashMap<String, Map<String, ISymbol>>();
   private final Map<String, List<ISymbol>> contextMap = new HashMap<String, List<ISymbol>>();
+  private boolean frozen = false;
 
   public Symbol(String symbolId) {
-    id = symbolId;
+    id = (symbolId == null) ? null : symbolId.intern();
   }
 
   public String getId() {
     return id;
   }
 
-  private String getKey(String id, String context) {
-    return context + "." + id;
-  }
-
-  private void addSymbol(String key, ISymbol symbol) throws ParserException {
-    if (symbols.containsKey(key)) {
+  public void addSymbol(ISymbol symbol, String context) throws ParserException {
+    if (frozen == true) {
       throw new ParserException(String.format(
-          "Symbol with key [%s] already exists", key));
+          "Symbol [%s] cannot be changed once parsed", id));
     }
-    symbols.put(key, symbol);
-  }
 
-  private void addSymbolToContext(String context, ISymbol symbol) {
-    if (contextMap.containsKey(context)) {
-      final List<ISymbol> contextList = contextMap.get(context);
-      contextList.add(symbol);
-    } else {
-      final List<ISymbol> contextList = new ArrayList<ISymbol>();
-      contextList.add(symbol);
-      contextMap.put(context, contextList);
+    Map<String, ISymbol> contextSymbols = symbols.get(context);
+    if (contextSymbols == null) {
+      contextSymbols = new HashMap<String, ISymbol>();
+      symbols.put(context, contextSymbols);
+      contextMap.put(context, new ArrayList<ISymbol>());
     }
-  }
-
-  public void addSymbol(ISymbol symbol, String context) throws ParserException {
-    final String key = getKey(symbol.getId(), context);
-    addSymbol(key, symbol);
-    addSymbolToContext(context, symbol);
+    if (contextSymbols.containsKey(symbol.getId())) {
+      throw new ParserException(String.format(
+          "Symbol with key [%s.%s] already exists", context, symbol.getId()));
+    }
+    contextSymbols.put(symbol.getId(), symbol);
+    contextMap.get(context).add(symbol);
   }
 
   public ISymbol getSymbol(String id, String context) {
-    final String key = getKey(id, context);
-    return symbols.get(key);
+    final Map<String, ISymbol> contextSymbols = symbols.get(context);
+    if (contextSymbols == null) {
+      return null;
+    }
+    return contextSymbols.get(id);
   }
 
   public List<ISymbol> getSymbolsInContext(String context) {
     final List<ISymbol> contextSymbols = contextMap.get(context);
     if (contextSymbols == null) {
-      return new ArrayList<ISymbol>();
+      return Collections.emptyList();
     }
     return contextSymbols;
   }
 
+  /**
+   * Stop this symbol, and the symbols inside it, from being changed.
+   */
+  void freeze() {
+    if (frozen == true) {
+      return;
+    }
+    frozen = true;
+    for (Map.Entry<String, List<ISymbol>> context : contextMap.entrySet()) {
+      final ArrayList<ISymbol> contextSymbols = (ArrayList<ISymbol> )context
+          .getValue();
+      contextSymbols.trimToSize();
+      context.setValue(Collections.unmodifiableList(contextSymbols));
+      for (ISymbol symbol : contextSymbols) {
+        if (symbol instanceof Symbol) {
+          ((Symbol )symbol).freeze();
+        }
+      }
+    }
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
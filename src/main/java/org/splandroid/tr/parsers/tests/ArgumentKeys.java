@@ -0,0 +1,126 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.util.Arrays;
+
+import org.splandroid.tr.parsers.PrimitiveKind;
+
+/**
+ * The IDs and kinds of a symbol's arguments, in the order the profile defines
+ * them. One instance is shared by all the arguments built for a symbol, which
+ * then only hold their values. Keys with the same IDs and kinds are equal, so
+ * that decoded arguments can share them too.
+ */
+final class ArgumentKeys {
+  private final String[] ids;
+  private final PrimitiveKind[] kinds;
+  private final String[] kindNames;
+  private final boolean hasPrimitives;
+
+  /**
+   * @param ids
+   *          - The argument IDs
+   * @param kinds
+   *          - Each argument's primitive kind, or null where it is an object
+   */
+  public ArgumentKeys(String[] ids, PrimitiveKind[] kinds) {
+    this(ids, kinds, new String[ids.length]);
+    for (int idx = 0; idx < kinds.length; idx++) {
+      if (kinds[idx] != null) {
+        kindNames[idx] = kinds[idx].getName();
+      }
+    }
+  }
+
+  /**
+   * @param ids
+   *          - The argument IDs
+   * @param kinds
+   *          - Each argument's primitive kind, or null where it is an object
+   * @param kindNames
+   *          - Each argument's kind as declared in the profile, or null where
+   *          it is not known
+   */
+  public ArgumentKeys(String[] ids, PrimitiveKind[] kinds, String[] kindNames) {
+    assert ids.length == kinds.length && ids.length == kindNames.length;
+    this.ids = ids.clone();
+    this.kinds = kinds.clone();
+    this.kindNames = kindNames.clone();
+
+    boolean primitives = false;
+    for (PrimitiveKind kind : kinds) {
+      if (kind != null) {
+        primitives = true;
+      }
+    }
+    this.hasPrimitives = primitives;
+  }
+
+  public int size() {
+    return ids.length;
+  }
+
+  public String getId(int idx) {
+    return ids[idx];
+  }
+
+  public PrimitiveKind getKind(int idx) {
+    return kinds[idx];
+  }
+
+  /**
+   * @return The argument's kind as declared in the profile, or null if it is
+   *         not known
+   */
+  public String getKindName(int idx) {
+    return kindNames[idx];
+  }
+
+  public boolean hasPrimitives() {
+    return hasPrimitives;
+  }
+
+  /**
+   * @return The argument's position, or -1 if there is no such argument
+   */
+  public int indexOf(Object argId) {
+    for (int idx = 0; idx < ids.length; idx++) {
+      if (ids[idx].equals(argId)) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof ArgumentKeys == false) {
+      return false;
+    }
+    final ArgumentKeys other = (ArgumentKeys )obj;
+    return Arrays.equals(ids, other.ids) && Arrays.equals(kinds, other.kinds)
+        && Arrays.equals(kindNames, other.kindNames);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(ids) * 31 + Arrays.hashCode(kindNames);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.splandroid.tr.commons.EnvironmentSnapshot;
+import org.splandroid.tr.commons.IEnvironmentBlock;
+
+/**
+ * A test case's environment: the variables the test case sets, over those its
+ * capability's profile sets. The profile's variables are a read-only map
+ * shared by all of the capability's test cases, and the test case's own
+ * variables are only given a map once it sets one. Until then the test case
+ * shares the profile's environment block, if the profile keeps one.
+ */
+class LayeredEnvironment extends AbstractMap<String, String> implements
+    IEnvironmentBlock {
+  private final Map<String, String> profileEnvironment;
+  private Map<String, String> testCaseEnvironment = null;
+  private volatile Set<Map.Entry<String, String>> entries = null;
+  private volatile String[] environmentBlock = null;
+
+  /**
+   * @param profileVariables
+   *          - The capability's variables, which are not changed
+   */
+  public LayeredEnvironment(Map<String, String> profileVariables) {
+    profileEnvironment = profileVariables;
+  }
+
+  /**
+   * @return The capability's variables
+   */
+  public Map<String, String> getProfileVariables() {
+    return profileEnvironment;
+  }
+
+  /**
+   * @return The variables the test case sets, or null if it sets none
+   */
+  public Map<String, String> getTestCaseVariables() {
+    return (testCaseEnvironment == null) ? null : Collections
+        .unmodifiableMap(testCaseEnvironment);
+  }
+
+  @Override
+  public String get(Object name) {
+    if (testCaseEnvironment != null) {
+      final String value = testCaseEnvironment.get(name);
+      if (value != null) {
+        return value;
+      }
+    }
+    return profileEnvironment.get(name);
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    return (testCaseEnvironment != null && testCaseEnvironment
+        .containsKey(name)) || profileEnvironment.containsKey(name);
+  }
+
+  @Override
+  public String put(String name, String value) {
+    if (testCaseEnvironment == null) {
+      testCaseEnvironment = new HashMap<String, String>();
+    }
+    final String oldValue = get(name);
+    testCaseEnvironment.put(name, value);
+    entries = null;
+    environmentBlock = null;
+    return oldValue;
+  }
+
+  @Override
+  public int size() {
+    return (testCaseEnvironment == null) ? profileEnvironment.size()
+        : entrySet().size();
+  }
+
+  @Override
+  public Set<Map.Entry<String, String>> entrySet() {
+    if (testCaseEnvironment == null) {
+      return Collections.unmodifiableMap(profileEnvironment).entrySet();
+    }
+    Set<Map.Entry<String, String>> merged = entries;
+    if (merged == null) {
+      final Map<String, String> variables = new HashMap<String, String>(
+          profileEnvironment);
+      variables.putAll(testCaseEnvironment);
+      merged = Collections.unmodifiableMap(variables).entrySet();
+      entries = merged;
+    }
+    return merged;
+  }
+
+  public String[] getEnvironmentBlock() {
+    if (testCaseEnvironment == null
+        && profileEnvironment instanceof IEnvironmentBlock) {
+      return ((IEnvironmentBlock )profileEnvironment).getEnvironmentBlock();
+    }
+    String[] block = environmentBlock;
+    if (block == null) {
+      block = EnvironmentSnapshot.createEnvironmentBlock(this);
+      environmentBlock = block;
+    }
+    return block;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.splandroid.tr.commons.EnvironmentSnapshot;
+import org.splandroid.tr.commons.IEnvironmentBlock;
+
+/**
+ * The variables a capability's profile sets. They cannot be changed, as they
+ * are shared by all of the capability's test cases, and so neither can their
+ * environment block, which is built the first time it is asked for.
+ */
+class ProfileEnvironment extends AbstractMap<String, String> implements
+    IEnvironmentBlock {
+  private final Map<String, String> variables;
+  private volatile String[] environmentBlock = null;
+
+  public ProfileEnvironment(Map<String, String> profileVariables) {
+    variables = Collections.unmodifiableMap(new HashMap<String, String>(
+        profileVariables));
+  }
+
+  @Override
+  public String get(Object name) {
+    return variables.get(name);
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    return variables.containsKey(name);
+  }
+
+  @Override
+  public int size() {
+    return variables.size();
+  }
+
+  @Override
+  public Set<Map.Entry<String, String>> entrySet() {
+    return variables.entrySet();
+  }
+
+  public String[] getEnvironmentBlock() {
+    String[] block = environmentBlock;
+    if (block == null) {
+      block = EnvironmentSnapshot.createEnvironmentBlock(variables);
+      environmentBlock = block;
+    }
+    return block;
+  }
+}
@@ -18,38 +18,246 @@
  */
 package org.splandroid.tr.parsers.tests;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.parsers.IPrimitiveTestArguments;
+import org.splandroid.tr.parsers.PrimitiveKind;
 
-class TestArguments extends HashMap<String, Object> implements ITestArguments {
-  private static final long serialVersionUID = Long.MAX_VALUE;
+/**
+ * Test arguments held positionally against keys shared by every set of
+ * arguments for the same symbol. Primitive arguments are held as bits and only
+ * boxed when read through the Map methods. The arguments can be changed while
+ * a test case is being parsed, and are frozen once it is complete.
+ */
+class TestArguments extends AbstractMap<String, Object> implements
+    IPrimitiveTestArguments {
+  private final String id;
+  private final ArgumentKeys keys;
+  private final Object[] values;
+  private final long[] bits;
+  private String[] sources = null;
+  private boolean frozen = false;
 
-  private String id;
+  public TestArguments(String id, ArgumentKeys keys) {
+    this.id = id;
+    this.keys = keys;
+    this.values = new Object[keys.size()];
+    this.bits = keys.hasPrimitives() ? new long[keys.size()] : null;
+  }
 
-  public TestArguments(String id) {
-    super();
-    initialise(id);
+  public String getId() {
+    return id;
   }
 
-  public TestArguments(String id, int initialCapacity, float loadFactor) {
-    super(initialCapacity, loadFactor);
-    initialise(id);
+  /**
+   * Prevent any further changes to the arguments.
+   */
+  public void freeze() {
+    frozen = true;
   }
 
-  public TestArguments(String id, int initialCapacity) {
-    super(initialCapacity);
-    initialise(id);
+  /**
+   * Put an argument along with the text it was built from.
+   */
+  public void putArgument(String argId, Object value, String source) {
+    final int idx = indexForChange(argId, false);
+    values[idx] = value;
+    if (value instanceof String == false) {
+      if (sources == null) {
+        sources = new String[keys.size()];
+      }
+      sources[idx] = source;
+    }
   }
 
-  public TestArguments(String id, Map<? extends String, ? extends Object> m) {
-    super(m);
-    initialise(id);
+  /**
+   * Put a primitive argument, given as the bits of its kind, along with the
+   * text it was built from.
+   * 
+   * @see org.splandroid.tr.parsers.PrimitiveKind#parse(String)
+   */
+  public void putPrimitive(String argId, long argBits, String source) {
+    final int idx = indexForChange(argId, true);
+    bits[idx] = argBits;
+    if (sources == null) {
+      sources = new String[keys.size()];
+    }
+    sources[idx] = source;
   }
 
-  private void initialise(String id) {
-    this.id = id;
+  /**
+   * Replace an object argument's value, such as a string whose environment
+   * variables have been substituted.
+   */
+  @Override
+  public Object put(String argId, Object value) {
+    final int idx = indexForChange(argId, false);
+    final Object oldValue = values[idx];
+    values[idx] = value;
+    return oldValue;
+  }
+
+  @Override
+  public Object get(Object argId) {
+    final int idx = keys.indexOf(argId);
+    return (idx < 0) ? null : getArgument(idx);
+  }
+
+  @Override
+  public boolean containsKey(Object argId) {
+    return keys.indexOf(argId) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return keys.size();
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Object>>() {
+      public int size() {
+        return keys.size();
+      }
+
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        return new Iterator<Map.Entry<String, Object>>() {
+          private int idx = 0;
+
+          public boolean hasNext() {
+            return idx < keys.size();
+          }
+
+          public Map.Entry<String, Object> next() {
+            if (hasNext() == false) {
+              throw new NoSuchElementException();
+            }
+            final Map.Entry<String, Object> entry = new AbstractMap.SimpleImmutableEntry<String, Object>(
+                keys.getId(idx), getArgument(idx));
+            idx++;
+            return entry;
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  public String getArgumentId(int idx) {
+    return keys.getId(idx);
+  }
+
+  public PrimitiveKind getPrimitiveKind(int idx) {
+    return keys.getKind(idx);
+  }
+
+  /**
+   * @return The argument's kind as declared in the profile, or null if it is
+   *         not known
+   */
+  public String getArgumentKind(int idx) {
+    return keys.getKindName(idx);
+  }
+
+  public Object getArgument(int idx) {
+    final PrimitiveKind kind = keys.getKind(idx);
+    if (kind == null) {
+      return values[idx];
+    }
+    // A primitive argument has not been put until its source has
+    return (sources == null || sources[idx] == null) ? null : kind
+        .box(bits[idx]);
+  }
+
+  public long getPrimitiveBits(int idx) {
+    if (keys.getKind(idx) == null) {
+      throw new IllegalArgumentException(String.format(
+          "Argument [%s] in [%s] is not primitive", keys.getId(idx), id));
+    }
+    return bits[idx];
+  }
+
+  public PrimitiveKind getPrimitiveKind(String argId) {
+    final int idx = keys.indexOf(argId);
+    return (idx < 0) ? null : keys.getKind(idx);
+  }
+
+  public boolean getBoolean(String argId) {
+    return getBits(argId, PrimitiveKind.BOOLEAN) != 0;
+  }
+
+  public int getInt(String argId) {
+    return (int )getBits(argId, PrimitiveKind.INT);
+  }
+
+  public long getLong(String argId) {
+    return getBits(argId, PrimitiveKind.LONG);
+  }
+
+  public float getFloat(String argId) {
+    return Float.intBitsToFloat((int )getBits(argId, PrimitiveKind.FLOAT));
+  }
+
+  public double getDouble(String argId) {
+    return Double.longBitsToDouble(getBits(argId, PrimitiveKind.DOUBLE));
+  }
+
+  private long getBits(String argId, PrimitiveKind kind) {
+    final int idx = keys.indexOf(argId);
+    if (idx < 0 || keys.getKind(idx) != kind) {
+      throw new IllegalArgumentException(String.format(
+          "Argument [%s] in [%s] is not of kind [%s]", argId, id,
+          kind.getName()));
+    }
+    return bits[idx];
+  }
+
+  /**
+   * Find an argument to change, checking that it is primitive or not as
+   * expected.
+   */
+  private int indexForChange(String argId, boolean primitive) {
+    if (frozen == true) {
+      throw new UnsupportedOperationException(String.format(
+          "Arguments [%s] cannot be changed", id));
+    }
+    final int idx = keys.indexOf(argId);
+    if (idx < 0) {
+      throw new IllegalArgumentException(String.format(
+          "Argument [%s] is not defined for [%s]", argId, id));
+    }
+    if ((keys.getKind(idx) != null) != primitive) {
+      throw new IllegalArgumentException(String.format(
+          "Argument [%s] in [%s] is %s", argId, id,
+          primitive ? "not primitive" : "primitive"));
+    }
+    return idx;
+  }
+
+  /**
+   * Get the text an argument was built from. A string argument is its own
+   * source, so environment substitution on it is not lost.
+   * 
+   * @return The argument's source text, or null if it is not known
+   */
+  public String getSource(String argId) {
+    final int idx = keys.indexOf(argId);
+    if (idx < 0) {
+      return null;
+    }
+    final Object value = values[idx];
+    if (value instanceof String) {
+      return (String )value;
+    }
+    return (sources == null) ? null : sources[idx];
   }
 
   @Override
@@ -58,15 +266,13 @@ class TestArguments extends HashMap<String, Object> implements ITestArguments {
 
     repr.append("[").append(id).append("]");
     repr.append(" {");
-    final int noEntries = this.size() - 1;
-    int count = 0;
-    for (String key : this.keySet()) {
-      repr.append("'").append(key).append("'").append(": ");
-      repr.append(this.get(key).toString());
-      if (count < noEntries) {
+    final int noEntries = keys.size() - 1;
+    for (int idx = 0; idx <= noEntries; idx++) {
+      repr.append("'").append(keys.getId(idx)).append("'").append(": ");
+      repr.append(getArgument(idx));
+      if (idx < noEntries) {
         repr.append(", ");
       }
-      count++;
     }
     repr.append("}");
 
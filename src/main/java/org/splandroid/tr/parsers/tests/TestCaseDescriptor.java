@@ -32,10 +32,17 @@ class TestCaseDescriptor implements ITestCaseDescriptor {
   private List<ITestDescriptor> tests;
   private final ITestArguments setUpInfo;
   private final Map<String, String> environment;
+  private final long timeout;
 
   public TestCaseDescriptor(String id, String description, String className,
       List<ITestDescriptor> tests, ITestArguments setUpInfo,
       Map<String, String> env) {
+    this(id, description, className, tests, setUpInfo, env, 0);
+  }
+
+  public TestCaseDescriptor(String id, String description, String className,
+      List<ITestDescriptor> tests, ITestArguments setUpInfo,
+      Map<String, String> env, long timeoutms) {
     super();
     this.id = id;
     this.description = description;
@@ -43,6 +50,7 @@ class TestCaseDescriptor implements ITestCaseDescriptor {
     this.tests = tests;
     this.setUpInfo = setUpInfo;
     this.environment = env;
+    this.timeout = timeoutms;
   }
 
   public String getId() {
@@ -68,4 +76,8 @@ class TestCaseDescriptor implements ITestCaseDescriptor {
   public Map<String, String> getEnvironment() {
     return environment;
   }
+
+  public long getTimeout() {
+    return timeout;
+  }
 }
@@ -0,0 +1,315 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import static org.splandroid.tr.commons.DataStreams.readString;
+import static org.splandroid.tr.commons.DataStreams.writeString;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.splandroid.tr.parsers.ArgumentConverters;
+import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.parsers.PrimitiveKind;
+
+/**
+ * Writes test case descriptors to, and reads them from, a data stream so that
+ * parsed test cases can be handed to another harness process. Each argument is
+ * written as its kind and the text it was built from, and is rebuilt with the
+ * kind's argument converter, as the tests parser builds it. A test case's
+ * environment is written as its profile's variables and its own, so that it
+ * can be layered again when it is read.
+ */
+public class TestCaseDescriptorCodec {
+  private static final byte objectTag = -1;
+  private static final PrimitiveKind[] primitiveKinds = PrimitiveKind.values();
+
+  /**
+   * Reads test case descriptors. The argument keys and profile environments of
+   * the test cases a decoder reads are shared between them, as they are when
+   * the test cases are parsed. A decoder is not thread safe.
+   */
+  public static class Decoder {
+    private final Map<ArgumentKeys, ArgumentKeys> argumentKeys = new HashMap<ArgumentKeys, ArgumentKeys>();
+    private final Map<Map<String, String>, ProfileEnvironment> profileEnvironments = new HashMap<Map<String, String>, ProfileEnvironment>();
+
+    public ITestCaseDescriptor decode(DataInput in) throws IOException {
+      final String id = readString(in);
+      final String description = readString(in);
+      final String className = readString(in);
+      final long timeout = in.readLong();
+
+      final Map<String, String> environment = decodeEnvironment(in);
+
+      final ITestArguments setUpInfo = decodeArguments(in);
+
+      final int noTests = in.readInt();
+      final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>(
+          noTests);
+      for (int idx = 0; idx < noTests; idx++) {
+        final String testId = readString(in);
+        tests.add(new TestDescriptor(testId, decodeArguments(in)));
+      }
+
+      return new TestCaseDescriptor(id, description, className, tests,
+          setUpInfo, environment, timeout);
+    }
+
+    private Map<String, String> decodeEnvironment(DataInput in)
+        throws IOException {
+      final Map<String, String> profileVariables = decodeVariables(in);
+      if (profileVariables == null) {
+        return null;
+      }
+      ProfileEnvironment profileEnvironment = profileEnvironments
+          .get(profileVariables);
+      if (profileEnvironment == null) {
+        profileEnvironment = new ProfileEnvironment(profileVariables);
+        profileEnvironments.put(profileVariables, profileEnvironment);
+      }
+
+      final LayeredEnvironment environment = new LayeredEnvironment(
+          profileEnvironment);
+      final int noVariables = in.readInt();
+      for (int idx = 0; idx < noVariables; idx++) {
+        final String name = readString(in);
+        environment.put(name, readString(in));
+      }
+      return environment;
+    }
+
+    private ITestArguments decodeArguments(DataInput in) throws IOException {
+      if (in.readBoolean() == false) {
+        return null;
+      }
+
+      final String argsId = readString(in);
+      final int noArgs = in.readInt();
+      final String[] argIds = new String[noArgs];
+      final PrimitiveKind[] kinds = new PrimitiveKind[noArgs];
+      final String[] kindNames = new String[noArgs];
+      final String[] sources = new String[noArgs];
+      for (int idx = 0; idx < noArgs; idx++) {
+        argIds[idx] = readString(in);
+        final byte tag = in.readByte();
+        if (tag == objectTag) {
+          kindNames[idx] = readString(in);
+        } else if (tag >= 0 && tag < primitiveKinds.length) {
+          kinds[idx] = primitiveKinds[tag];
+          kindNames[idx] = kinds[idx].getName();
+        } else {
+          throw new IOException(String.format(
+              "Invalid kind [%d] for argument [%s]", tag, argIds[idx]));
+        }
+        sources[idx] = readString(in);
+      }
+
+      final TestArguments args = new TestArguments(argsId, getArgumentKeys(
+          argIds, kinds, kindNames));
+      for (int idx = 0; idx < noArgs; idx++) {
+        final String argId = argIds[idx];
+        final PrimitiveKind primitiveKind = kinds[idx];
+        if (primitiveKind != null) {
+          args.putPrimitive(argId, createPrimitive(argId, primitiveKind,
+              sources[idx]), sources[idx]);
+        } else {
+          args.putArgument(argId, createArgument(argId, kindNames[idx],
+              sources[idx]), sources[idx]);
+        }
+      }
+      args.freeze();
+
+      return args;
+    }
+
+    /**
+     * Get the argument keys for a symbol's arguments, which are shared by all
+     * the arguments decoded for it.
+     */
+    private ArgumentKeys getArgumentKeys(String[] argIds,
+        PrimitiveKind[] kinds, String[] kindNames) {
+      final ArgumentKeys keys = new ArgumentKeys(argIds, kinds, kindNames);
+      final ArgumentKeys existing = argumentKeys.get(keys);
+      if (existing != null) {
+        return existing;
+      }
+      argumentKeys.put(keys, keys);
+      return keys;
+    }
+  }
+
+  public static void encode(ITestCaseDescriptor testCase, DataOutput out)
+      throws IOException {
+    writeString(out, testCase.getId());
+    writeString(out, testCase.getDescription());
+    writeString(out, testCase.getClassName());
+    out.writeLong(testCase.getTimeout());
+
+    encodeEnvironment(testCase.getEnvironment(), out);
+
+    encodeArguments(testCase.getId(), testCase.getSetUpInfo(), out);
+
+    final List<ITestDescriptor> tests = testCase.getTests();
+    out.writeInt(tests.size());
+    for (ITestDescriptor test : tests) {
+      writeString(out, test.getId());
+      encodeArguments(test.getId(), test.getArguments(), out);
+    }
+  }
+
+  /**
+   * Read a single test case descriptor. Use a decoder to read several.
+   */
+  public static ITestCaseDescriptor decode(DataInput in) throws IOException {
+    return new Decoder().decode(in);
+  }
+
+  /**
+   * Write an environment as its profile's variables followed by the variables
+   * the test case sets over them. An environment that is not layered is
+   * written as profile variables.
+   */
+  private static void encodeEnvironment(Map<String, String> environment,
+      DataOutput out) throws IOException {
+    if (environment == null) {
+      out.writeInt(-1);
+      return;
+    }
+
+    Map<String, String> profileVariables = environment;
+    Map<String, String> testCaseVariables = null;
+    if (environment instanceof LayeredEnvironment) {
+      final LayeredEnvironment layered = (LayeredEnvironment )environment;
+      profileVariables = layered.getProfileVariables();
+      testCaseVariables = layered.getTestCaseVariables();
+    }
+    encodeVariables(profileVariables, out);
+    if (testCaseVariables == null) {
+      out.writeInt(0);
+    } else {
+      encodeVariables(testCaseVariables, out);
+    }
+  }
+
+  private static void encodeVariables(Map<String, String> variables,
+      DataOutput out) throws IOException {
+    out.writeInt(variables.size());
+    for (Map.Entry<String, String> variable : variables.entrySet()) {
+      writeString(out, variable.getKey());
+      writeString(out, variable.getValue());
+    }
+  }
+
+  private static Map<String, String> decodeVariables(DataInput in)
+      throws IOException {
+    final int noVariables = in.readInt();
+    if (noVariables < 0) {
+      return null;
+    }
+    final Map<String, String> variables = new HashMap<String, String>();
+    for (int idx = 0; idx < noVariables; idx++) {
+      final String name = readString(in);
+      variables.put(name, readString(in));
+    }
+    return variables;
+  }
+
+  private static void encodeArguments(String ownerId, ITestArguments args,
+      DataOutput out) throws IOException {
+    if (args == null) {
+      out.writeBoolean(false);
+      return;
+    }
+    out.writeBoolean(true);
+
+    if (args instanceof TestArguments == false) {
+      writeString(out, ownerId);
+      out.writeInt(args.size());
+      for (Map.Entry<String, Object> arg : args.entrySet()) {
+        final Object value = arg.getValue();
+        encodeArgument(arg.getKey(), null, value.getClass().getName(),
+            value.toString(), out);
+      }
+      return;
+    }
+
+    final TestArguments testArgs = (TestArguments )args;
+    writeString(out, testArgs.getId());
+    out.writeInt(testArgs.size());
+    for (int idx = 0; idx < testArgs.size(); idx++) {
+      final String argId = testArgs.getArgumentId(idx);
+      final Object value = testArgs.getArgument(idx);
+      String kindName = testArgs.getArgumentKind(idx);
+      if (kindName == null) {
+        kindName = value.getClass().getName();
+      }
+      String source = testArgs.getSource(argId);
+      if (source == null) {
+        source = value.toString();
+      }
+      encodeArgument(argId, testArgs.getPrimitiveKind(idx), kindName, source,
+          out);
+    }
+  }
+
+  /**
+   * Write an argument's ID, its kind as a primitive kind's tag or as the name
+   * of the object kind, and its source.
+   */
+  private static void encodeArgument(String argId, PrimitiveKind primitiveKind,
+      String kindName, String source, DataOutput out) throws IOException {
+    writeString(out, argId);
+    if (primitiveKind == null) {
+      out.writeByte(objectTag);
+      writeString(out, kindName);
+    } else {
+      out.writeByte(primitiveKind.ordinal());
+    }
+    writeString(out, source);
+  }
+
+  private static long createPrimitive(String argId, PrimitiveKind kind,
+      String value) throws IOException {
+    try {
+      return kind.parse(value);
+    } catch (NumberFormatException ex) {
+      throw new IOException(String.format(
+          "Could not parse [%s] value for argument [%s] with value [%s]",
+          kind.getName(), argId, value), ex);
+    }
+  }
+
+  private static Object createArgument(String argId, String klassName,
+      String value) throws IOException {
+    try {
+      return ArgumentConverters.getConverter(klassName).convert(value);
+    } catch (Exception ex) {
+      throw new IOException(String.format(
+          "Could not construct [%s] object for argument [%s] with value [%s]",
+          klassName, argId, value), ex);
+    }
+  }
+}
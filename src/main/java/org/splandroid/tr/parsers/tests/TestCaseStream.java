@@ -0,0 +1,160 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+import org.splandroid.tr.parsers.ISymbolMap;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestCaseSelector;
+import org.splandroid.tr.parsers.ITestCaseSource;
+import org.splandroid.tr.parsers.ParserException;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads test cases from a tests file on demand. The file is pulled through a
+ * StAX reader only until the next test case is complete, and its events are
+ * handed to the same handler the SAX parser uses, so both modes accept the
+ * same files.
+ */
+class TestCaseStream implements ITestCaseSource {
+  private static final Logger logger = Logger.getLogger(TestCaseStream.class);
+
+  private static final XMLInputFactory inputFactory;
+
+  static {
+    inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+  }
+
+  private final InputStream stream;
+  private final XMLStreamReader reader;
+  private final TestsHandler handler;
+  private final LinkedList<ITestCaseDescriptor> testCases;
+  private final AttributesImpl attrs;
+  private boolean finished = false;
+
+  public TestCaseStream(ISymbolMap symbols, ITestCaseSelector selector,
+      Map<String, String> processEnvironment, InputStream inStream)
+      throws ParserException {
+    try {
+      reader = inputFactory.createXMLStreamReader(inStream);
+    } catch (XMLStreamException streamEx) {
+      throw new ParserException(streamEx);
+    }
+    stream = inStream;
+    testCases = new LinkedList<ITestCaseDescriptor>();
+    handler = new TestsHandler(symbols, testCases, selector,
+        processEnvironment);
+    handler.setDocumentLocator(new StreamLocator());
+    attrs = new AttributesImpl();
+  }
+
+  public synchronized ITestCaseDescriptor next() throws ParserException {
+    try {
+      while (testCases.isEmpty() && finished == false) {
+        pullEvent();
+      }
+    } catch (SAXException saxEx) {
+      close();
+      throw new ParserException(saxEx);
+    } catch (XMLStreamException streamEx) {
+      close();
+      throw new ParserException(streamEx);
+    }
+
+    return testCases.poll();
+  }
+
+  public synchronized void close() {
+    finished = true;
+    try {
+      reader.close();
+    } catch (XMLStreamException streamEx) {
+      logger.warn("Failed to close tests reader", streamEx);
+    }
+    try {
+      stream.close();
+    } catch (IOException ioEx) {
+      logger.warn("Failed to close tests stream", ioEx);
+    }
+  }
+
+  private void pullEvent() throws XMLStreamException, SAXException {
+    if (reader.hasNext() == false) {
+      close();
+      return;
+    }
+
+    switch (reader.next()) {
+    case XMLStreamConstants.START_ELEMENT:
+      attrs.clear();
+      final int noAttrs = reader.getAttributeCount();
+      for (int idx = 0; idx < noAttrs; idx++) {
+        final String qName = reader.getAttributeLocalName(idx);
+        attrs.addAttribute("", qName, qName, reader.getAttributeType(idx),
+            reader.getAttributeValue(idx));
+      }
+      handler.startElement("", reader.getLocalName(), reader.getLocalName(),
+          attrs);
+      break;
+    case XMLStreamConstants.END_ELEMENT:
+      handler.endElement("", reader.getLocalName(), reader.getLocalName());
+      break;
+    case XMLStreamConstants.END_DOCUMENT:
+      close();
+      break;
+    default:
+      break;
+    }
+  }
+
+  /**
+   * Reports the reader's position, so that the handler's errors give the same
+   * locations as they do when the file is parsed with SAX.
+   */
+  private class StreamLocator implements Locator {
+    public String getPublicId() {
+      return reader.getLocation().getPublicId();
+    }
+
+    public String getSystemId() {
+      return reader.getLocation().getSystemId();
+    }
+
+    public int getLineNumber() {
+      return reader.getLocation().getLineNumber();
+    }
+
+    public int getColumnNumber() {
+      return reader.getLocation().getColumnNumber();
+    }
+  }
+}
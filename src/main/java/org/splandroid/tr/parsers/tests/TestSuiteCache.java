@@ -0,0 +1,250 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import static org.splandroid.tr.commons.DataStreams.readString;
+import static org.splandroid.tr.commons.DataStreams.writeString;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.splandroid.tr.commons.EnvironmentSnapshot;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+
+/**
+ * A compiled copy of a component's parsed test cases, kept in a file next to
+ * its profile.xml and tests.xml. The copy is used only while both XML files
+ * have the content they had when it was stored, and the process environment
+ * variables that were substituted into its arguments, or that the profile
+ * expects to exist, have the same values.
+ * Test cases are written with the test case descriptor codec.
+ */
+public class TestSuiteCache {
+  private static final int MAGIC = 0x54524331;
+  private static final int VERSION = 3;
+  private static final String digestAlgorithm = "SHA-1";
+  private static final Charset utf8 = Charset.forName("UTF-8");
+
+  private final File cacheFile;
+  private final byte[] sourceDigest;
+
+  /**
+   * Reads a mapped file's bytes.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer byteBuffer) {
+      buffer = byteBuffer;
+    }
+
+    @Override
+    public int read() {
+      return (buffer.hasRemaining() == true) ? (buffer.get() & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (buffer.hasRemaining() == false) {
+        return -1;
+      }
+      final int noBytes = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, noBytes);
+      return noBytes;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  /**
+   * @param file
+   *          - The file holding the compiled test cases
+   * @param profileXML
+   *          - The content of the component's profile.xml
+   * @param testsXML
+   *          - The content of the component's tests.xml
+   * @throws IOException
+   */
+  public TestSuiteCache(File file, byte[] profileXML, byte[] testsXML)
+      throws IOException {
+    final MessageDigest digest = newDigest();
+    digest.update(profileXML);
+    digest.update(testsXML);
+    cacheFile = file;
+    sourceDigest = digest.digest();
+  }
+
+  private static MessageDigest newDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance(digestAlgorithm);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  /**
+   * Digest the current values of process environment variables, so that the
+   * values themselves are not written to the cache.
+   */
+  private static byte[] digestEnvironment(Collection<String> names)
+      throws IOException {
+    final Map<String, String> environment = EnvironmentSnapshot
+        .getProcessEnvironment();
+    final MessageDigest digest = newDigest();
+    for (String name : names) {
+      final String value = environment.get(name);
+      digest.update(name.getBytes(utf8));
+      digest.update((byte )0);
+      if (value != null) {
+        digest.update((byte )1);
+        digest.update(value.getBytes(utf8));
+      }
+      digest.update((byte )0);
+    }
+    return digest.digest();
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid digest length");
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * Load the compiled test cases if they are up to date.
+   * 
+   * @return The test cases, or null if there are none or they are out of date
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  public List<ITestCaseDescriptor> load() throws IOException {
+    if (cacheFile.isFile() == false) {
+      return null;
+    }
+
+    final RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+    try {
+      final FileChannel channel = file.getChannel();
+      final DataInputStream in = new DataInputStream(new ByteBufferInputStream(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      if (Arrays.equals(sourceDigest, readBytes(in)) == false) {
+        return null;
+      }
+
+      final int noNames = in.readInt();
+      final List<String> names = new ArrayList<String>(noNames);
+      for (int idx = 0; idx < noNames; idx++) {
+        names.add(readString(in));
+      }
+      if (Arrays.equals(digestEnvironment(names), readBytes(in)) == false) {
+        return null;
+      }
+
+      final int noTestCases = in.readInt();
+      final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>(
+          noTestCases);
+      final TestCaseDescriptorCodec.Decoder decoder = new TestCaseDescriptorCodec.Decoder();
+      for (int idx = 0; idx < noTestCases; idx++) {
+        testCases.add(decoder.decode(in));
+      }
+      return testCases;
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Store compiled test cases. The file is written under a temporary name and
+   * then renamed, so that a run never reads a partly written file.
+   * 
+   * @param testCases
+   *          - The test cases parsed from the XML files
+   * @param environmentNames
+   *          - The process environment variables substituted or expected while
+   *          parsing
+   * @throws IOException
+   */
+  public void store(List<ITestCaseDescriptor> testCases,
+      Collection<String> environmentNames) throws IOException {
+    final File tempFile = File.createTempFile(cacheFile.getName(), ".tmp",
+        cacheFile.getAbsoluteFile().getParentFile());
+    try {
+      final DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tempFile)));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sourceDigest.length);
+        out.write(sourceDigest);
+
+        out.writeInt(environmentNames.size());
+        for (String name : environmentNames) {
+          writeString(out, name);
+        }
+        final byte[] environmentDigest = digestEnvironment(environmentNames);
+        out.writeInt(environmentDigest.length);
+        out.write(environmentDigest);
+
+        out.writeInt(testCases.size());
+        for (ITestCaseDescriptor testCase : testCases) {
+          TestCaseDescriptorCodec.encode(testCase, out);
+        }
+      } finally {
+        out.close();
+      }
+      if (tempFile.renameTo(cacheFile) == false) {
+        cacheFile.delete();
+        if (tempFile.renameTo(cacheFile) == false) {
+          throw new IOException(String.format("Could not rename [%s] to [%s]",
+              tempFile, cacheFile));
+        }
+      }
+    } finally {
+      tempFile.delete();
+    }
+  }
+}
@@ -0,0 +1,720 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+import org.splandroid.tr.TRException;
+import org.splandroid.tr.parsers.ArgumentConverters;
+import org.splandroid.tr.parsers.IArgumentConverter;
+import org.splandroid.tr.parsers.IArgumentSymbol;
+import org.splandroid.tr.parsers.ICapabilitySymbol;
+import org.splandroid.tr.parsers.IEnvironmentSymbol;
+import org.splandroid.tr.parsers.ISymbol;
+import org.splandroid.tr.parsers.ISymbolMap;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestCaseSelector;
+import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.parsers.ITestSymbol;
+import org.splandroid.tr.parsers.PrimitiveKind;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+class TestsHandler extends DefaultHandler {
+  private static Logger logger = Logger.getLogger(TestsHandler.class);
+
+  private static final String substitutionPattern = "\\w+";
+  private static final String argumentAnchor = "%";
+  private static final String argumentKind = "Argument";
+  private static final String environmentAnchor = "\\$";
+  private static final String environmentKind = "Environment variable";
+
+  /**
+   * The process's environment, recording the names of the variables looked up
+   * in it.
+   */
+  private static class ProcessEnvironment extends AbstractMap<String, String> {
+    private final Map<String, String> environment;
+    private final Set<String> names = new TreeSet<String>();
+
+    public ProcessEnvironment(Map<String, String> processEnvironment) {
+      environment = processEnvironment;
+    }
+
+    @Override
+    public String get(Object name) {
+      names.add((String )name);
+      return environment.get(name);
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+      return environment.entrySet();
+    }
+  }
+
+  private final ISymbolMap symbols;
+  private final List<ITestCaseDescriptor> testCases;
+  private final ITestCaseSelector selector;
+  private final TokenSubstitution<Map<String, Object>> argumentsSubstitution;
+  private final TokenSubstitution<Map<String, String>> environmentSubstitution;
+  private final Map<IArgumentSymbol, IArgumentConverter> converters;
+  private final Map<ISymbol, ArgumentKeys> argumentKeys;
+  private final Map<ISymbol, Map<String, String>> profileEnvironments;
+  private final ProcessEnvironment processEnvironment;
+  private final Map<String, String> testEnvironment;
+
+  private Locator locator = null;
+
+  // Parser state
+  private String currentTestCaseId = null;
+  private String currentTestCaseDesc = null;
+  private long currentTestCaseTimeout = 0;
+  private String currentTestId = null;
+  private List<ITestDescriptor> currentTests = null;
+  private TestArguments currentSetupInfo = null;
+  private TestArguments currentTestArguments = null;
+  private Map<String, String> currentTestEnvironment = null;
+  private ISymbol currentCapability = null;
+  private ISymbol currentTestSymbol = null;
+  private boolean skippingTestCase = false;
+
+  /**
+   * @param symbolTable
+   *          - The symbols defined by the component's profile
+   * @param testCases
+   *          - The list the test cases read are added to
+   * @param testCaseSelector
+   *          - Chooses the test cases to read, or null to read them all
+   * @param environment
+   *          - The process's environment
+   */
+  public TestsHandler(ISymbolMap symbolTable,
+      List<ITestCaseDescriptor> testCases, ITestCaseSelector testCaseSelector,
+      Map<String, String> environment) {
+    super();
+    this.symbols = symbolTable;
+    this.testCases = testCases;
+    this.selector = testCaseSelector;
+    this.argumentsSubstitution = new TokenSubstitution<Map<String, Object>>(
+        substitutionPattern, argumentAnchor, argumentKind);
+    this.environmentSubstitution = new TokenSubstitution<Map<String, String>>(
+        substitutionPattern, environmentAnchor, environmentKind);
+    this.converters = new IdentityHashMap<IArgumentSymbol, IArgumentConverter>();
+    this.argumentKeys = new IdentityHashMap<ISymbol, ArgumentKeys>();
+    this.profileEnvironments = new IdentityHashMap<ISymbol, Map<String, String>>();
+    this.processEnvironment = new ProcessEnvironment(environment);
+
+    // Environment variables are looked up in the current test case's
+    // environment first, and then in the process's environment
+    this.testEnvironment = new AbstractMap<String, String>() {
+      @Override
+      public String get(Object name) {
+        return (currentTestEnvironment == null) ? null
+            : currentTestEnvironment.get(name);
+      }
+
+      @Override
+      public Set<Map.Entry<String, String>> entrySet() {
+        return (currentTestEnvironment == null) ? Collections
+            .<String, String> emptyMap().entrySet() : currentTestEnvironment
+            .entrySet();
+      }
+    };
+    this.environmentSubstitution.addMap(testEnvironment).addMap(
+        processEnvironment);
+  }
+
+  /**
+   * Get the names of the process environment variables that substitution has
+   * looked up, whether or not they were set.
+   */
+  public Set<String> getProcessEnvironmentNames() {
+    return processEnvironment.names;
+  }
+
+  /**
+   * Get the converter for an argument symbol. Each symbol's converter is only
+   * looked up once per file.
+   */
+  private IArgumentConverter getConverter(IArgumentSymbol argSymbol,
+      String tagName) throws SAXException {
+    IArgumentConverter converter = converters.get(argSymbol);
+    if (converter == null) {
+      final String klassName = argSymbol.getKindClass();
+      try {
+        converter = ArgumentConverters.getConverter(klassName);
+      } catch (TRException ex) {
+        throw new SAXParseException(String.format(
+            "Error loading class [%s] for attribute " + "[%s] in tag [%s]",
+            klassName, argSymbol.getId(), tagName), locator, ex);
+      }
+      converters.put(argSymbol, converter);
+    }
+    return converter;
+  }
+
+  /**
+   * Get the argument keys for a symbol, which are shared by all the arguments
+   * built for it.
+   */
+  private ArgumentKeys getArgumentKeys(ISymbol aSymbol,
+      List<ISymbol> symbolArguments, String tagName) throws SAXException {
+    ArgumentKeys keys = argumentKeys.get(aSymbol);
+    if (keys == null) {
+      final int noArgs = symbolArguments.size();
+      final String[] ids = new String[noArgs];
+      final PrimitiveKind[] kinds = new PrimitiveKind[noArgs];
+      final String[] kindNames = new String[noArgs];
+      for (int idx = 0; idx < noArgs; idx++) {
+        final IArgumentSymbol argSymbol = (IArgumentSymbol )symbolArguments
+            .get(idx);
+        ids[idx] = argSymbol.getId();
+        kindNames[idx] = getConverter(argSymbol, tagName).getKind();
+        kinds[idx] = PrimitiveKind.forName(kindNames[idx]);
+      }
+      keys = new ArgumentKeys(ids, kinds, kindNames);
+      argumentKeys.put(aSymbol, keys);
+    }
+    return keys;
+  }
+
+  private String getLocation() {
+    return String.format("at line %d and column %d", locator.getLineNumber(),
+        locator.getColumnNumber());
+  }
+
+  /**
+   * Load the arguments for a given symbol.
+   * 
+   * @param aSymbol
+   *          - The symbol to load arguments for
+   * @param argumentsId
+   *          - The ID of the arguments
+   * @param tagName
+   *          - Current tag name
+   * @param attrs
+   *          - Attributes for the current tag
+   * @param locator
+   *          - SAX parser location
+   * @return The arguments, in the order the symbol defines them
+   * @throws SAXException
+   */
+  private TestArguments loadArguments(ISymbol aSymbol, String argumentsId,
+      String tagName, Attributes attrs, Locator locator) throws SAXException {
+    final List<ISymbol> symbolArguments = aSymbol
+        .getSymbolsInContext(IArgumentSymbol.CONTEXT);
+
+    final int expectedArgCount = symbolArguments.size();
+    final int tagArgCount = attrs.getLength();
+    if (tagArgCount != expectedArgCount) {
+      throw new SAXParseException(String.format(
+          "Argument count mismatch in tag [%s], "
+              + "expected %d and got %d arguments, "
+              + "at line %d and column %d", tagName, expectedArgCount,
+          tagArgCount, locator.getLineNumber(), locator.getColumnNumber()),
+          locator);
+    }
+
+    final ArgumentKeys keys = getArgumentKeys(aSymbol, symbolArguments,
+        tagName);
+    final TestArguments arguments = new TestArguments(argumentsId, keys);
+    argumentsSubstitution.clearMaps();
+    argumentsSubstitution.addMap(arguments);
+
+    for (int idx = 0; idx < expectedArgCount; idx++) {
+      final IArgumentSymbol argSymbol = (IArgumentSymbol )symbolArguments
+          .get(idx);
+      final String argId = keys.getId(idx);
+      final IArgumentConverter converter = getConverter(argSymbol, tagName);
+
+      if (logger.isDebugEnabled()) {
+        logger.debug(String.format("Reading argument [%s] of kind [%s]",
+            argId, converter.getKind()));
+      }
+
+      // Get argument's value and do value substitution
+      String argValue = attrs.getValue(argId);
+      if (argValue == null) {
+        throw new SAXParseException(String.format(
+            "Argument [%s] not set at line %d and column %d", argId,
+            locator.getLineNumber(), locator.getColumnNumber()), locator);
+      }
+      try {
+        argValue = argumentsSubstitution.substitute(argValue);
+      } catch (TRException ex) {
+        throw new SAXParseException(String.format(
+            "Failed to substitute argument value at "
+                + "attribute [%s] in tag [%s]", argId, tagName), locator, ex);
+      }
+      if (argValue == null) {
+        throw new SAXParseException(String.format(
+            "Attribute [%s] in tag [%s] not found", argId, tagName), locator);
+      }
+
+      // Build argument from its value, keeping primitive kinds unboxed
+      final PrimitiveKind primitiveKind = keys.getKind(idx);
+      Object argValueObj = null;
+      long argValueBits = 0;
+      try {
+        if (primitiveKind != null) {
+          argValueBits = primitiveKind.parse(argValue);
+        } else {
+          argValueObj = converter.convert(argValue);
+        }
+      } catch (Exception ex) {
+        throw new SAXParseException(String.format(
+            "Could not construct [%s] object "
+                + "for attribute [%s] in tag [%s] with value [%s]",
+            converter.getKind(), argId, tagName, argValue), locator, ex);
+      }
+
+      if (logger.isDebugEnabled()) {
+        logger.debug(String.format(
+            "Constructed argument [%s] of kind [%s]: %s", argId,
+            converter.getKind(), argValue));
+      }
+
+      if (primitiveKind != null) {
+        arguments.putPrimitive(argId, argValueBits, argValue);
+      } else {
+        arguments.putArgument(argId, argValueObj, argValue);
+      }
+    }
+
+    return arguments;
+  }
+
+  private void handleTestsStart() {
+    logger.debug("Processing tests...");
+  }
+
+  /**
+   * Testcases are containers for a testcase identifier and description. The
+   * test capability, embedded in the tag, shall inherit the identifier and
+   * description from this tag.
+   * 
+   * @param attrs
+   *          - &lt;testcase&gt; XML tag attributes
+   */
+  private void handleTestCaseStart(String tagName, Attributes attrs)
+      throws SAXException {
+    if (currentTestCaseId != null || currentTestCaseDesc != null) {
+      throw new SAXParseException(String.format("Unexpected opening [%s] tag",
+          tagName), locator);
+    }
+
+    final String testCaseId = attrs
+        .getValue(TestsParserConstants.ATTR_TESTSUITE_ID);
+    if (selector != null && testCaseId != null
+        && selector.isSelected(testCaseId) == false) {
+      logger.info(String.format("Skipping test case with ID [%s]", testCaseId));
+      skippingTestCase = true;
+      return;
+    }
+
+    currentTestCaseId = testCaseId;
+    currentTestCaseDesc = attrs
+        .getValue(TestsParserConstants.ATTR_TESTSUITE_DESC);
+
+    if (currentTestCaseId == null || currentTestCaseDesc == null
+        || currentTestCaseId.length() < 1 || currentTestCaseDesc.length() < 1) {
+      throw new SAXParseException(String.format(
+          "Attributes for tag [%s] not fully specified", tagName), locator);
+    }
+
+    currentTestCaseTimeout = 0;
+    final String timeout = attrs
+        .getValue(TestsParserConstants.ATTR_TESTSUITE_TIMEOUT);
+    if (timeout != null) {
+      try {
+        currentTestCaseTimeout = Long.parseLong(timeout) * 1000;
+      } catch (NumberFormatException ex) {
+        currentTestCaseTimeout = -1;
+      }
+      if (currentTestCaseTimeout <= 0) {
+        throw new SAXParseException(String.format(
+            "Test case [%s] has an invalid timeout, expected a positive "
+                + "number of seconds: [%s]", currentTestCaseId, timeout),
+            locator);
+      }
+    }
+
+    logger.debug(String.format("Processing test case [%s]...",
+        currentTestCaseId));
+
+    currentTests = new ArrayList<ITestDescriptor>();
+    currentCapability = null;
+    currentTestSymbol = null;
+  }
+
+  /**
+   * Reset after a test case end
+   */
+  private void handleTestCaseEnd(String tagName) throws SAXException {
+    if (currentTestCaseId == null || currentTestCaseDesc == null) {
+      throw new SAXParseException(String.format("Unexpected closing [%s] tag",
+          tagName), locator);
+    }
+    currentTestCaseId = null;
+    currentTestCaseDesc = null;
+  }
+
+  /**
+   * Reads a capability tag and validates attributes, defined from the
+   * profile.xml. Then, constructs the appropriate object for the attribute and
+   * adds it to the test informational map.
+   * 
+   * Also, does argument value substitution; any argument containing %<argument
+   * id>% will have the arguments value replaced. If the argument does not exist
+   * at substitution time the operation will fail.
+   * 
+   * @param tagName
+   * @param attrs
+   * @throws SAXException
+   */
+  private void handleCapabilityStart(String tagName, Attributes attrs)
+      throws SAXException {
+    if (currentTestCaseId == null || currentTestCaseDesc == null
+        || currentSetupInfo != null) {
+      throw new SAXParseException(String.format("Unexpected opening [%s] tag",
+          tagName), locator);
+    }
+
+    logger.debug(String.format("Processing capability [%s]...", tagName));
+
+    if (currentCapability != null) {
+      throw new SAXParseException(String.format(
+          "Mulitple capabilities found in testcase [%s]. "
+              + "Only one capability is supported.", currentTestCaseId),
+          locator);
+    }
+
+    assert (symbols.containsKey(tagName));
+    currentCapability = symbols.get(tagName);
+    currentSetupInfo = loadArguments(currentCapability, tagName, tagName,
+        attrs, locator);
+
+    // Inherit the environment set in the profile
+    currentTestEnvironment = new LayeredEnvironment(
+        getProfileEnvironment(currentCapability));
+  }
+
+  /**
+   * Get the environment a capability's profile sets, which is shared by all
+   * the test cases that use the capability.
+   */
+  private Map<String, String> getProfileEnvironment(ISymbol capability) {
+    Map<String, String> environment = profileEnvironments.get(capability);
+    if (environment == null) {
+      final List<ISymbol> environmentSymbols = capability
+          .getSymbolsInContext(IEnvironmentSymbol.CONTEXT);
+      environment = new HashMap<String, String>();
+      for (ISymbol symbol : environmentSymbols) {
+        final IEnvironmentSymbol envSymbol = (IEnvironmentSymbol )symbol;
+        environment.put(envSymbol.getId(), envSymbol.getValue());
+      }
+      environment = new ProfileEnvironment(environment);
+      profileEnvironments.put(capability, environment);
+    }
+    return environment;
+  }
+
+  /**
+   * Substitute any environment variables in a string argument from the set of
+   * arguments, then freeze the arguments. Variables are looked up in the
+   * current test case's environment and then the process's environment.
+   * 
+   * @param args
+   *          - Test arguments
+   */
+  private void environmentSubstitution(TestArguments args) throws TRException {
+    final int noArgs = args.size();
+    for (int idx = 0; idx < noArgs; idx++) {
+      final Object argValue = args.getArgument(idx);
+      if (argValue instanceof String) {
+        String newValue = environmentSubstitution.substitute((String )argValue);
+        args.put(args.getArgumentId(idx), newValue);
+      }
+    }
+    args.freeze();
+  }
+
+  /**
+   * Reset the capability settings; the set-up information and the current
+   * capability.
+   */
+  private void handleCapabilityEnd(String tagName) throws SAXException {
+    if (currentCapability == null || currentSetupInfo == null
+        || currentTestCaseId == null || currentTestCaseDesc == null
+        || currentTests == null || currentTestEnvironment == null) {
+      throw new SAXParseException(String.format("Unexpected closing [%s] tag",
+          tagName), locator);
+    }
+
+    if (currentTests.size() > 0) {
+      // Do environment variable substitution
+      try {
+        environmentSubstitution(currentSetupInfo);
+        for (ITestDescriptor testDesc : currentTests) {
+          environmentSubstitution((TestArguments )testDesc.getArguments());
+        }
+      } catch (TRException ex) {
+        throw new SAXParseException(
+            "Failed to substitute environment varaibles", locator, ex);
+      }
+
+      final ICapabilitySymbol capSymbol = (ICapabilitySymbol )currentCapability;
+      final String className = capSymbol.getKindClass();
+      assert className != null;
+      // A test case's own timeout overrides its capability's
+      final long timeout = (currentTestCaseTimeout > 0) ? currentTestCaseTimeout
+          : capSymbol.getTimeout();
+      final ITestCaseDescriptor testCase = new TestCaseDescriptor(
+          currentTestCaseId, currentTestCaseDesc, className, currentTests,
+          currentSetupInfo, currentTestEnvironment, timeout);
+      testCases.add(testCase);
+    } else {
+      logger.warn(String.format("Test case [%s] contains no tests",
+          currentTestCaseId));
+    }
+
+    currentCapability = null;
+    currentSetupInfo = null;
+    currentTests = null;
+  }
+
+  /**
+   * Processes the test tag
+   * 
+   * @param tagName
+   * @param attrs
+   * @throws SAXException
+   */
+  private void handleTestStart(String tagName, Attributes attrs)
+      throws SAXException {
+    if (currentTestId != null || currentTestArguments != null
+        || currentCapability == null) {
+      throw new SAXParseException(String.format("Unexpected opening [%s] tag",
+          tagName), locator);
+    }
+
+    final String capId = currentCapability.getId();
+    logger.debug(String.format("Starting test [%s] in capability [%s]",
+        tagName, capId));
+
+    currentTestSymbol = currentCapability.getSymbol(tagName,
+        ITestSymbol.CONTEXT);
+    if (currentTestSymbol == null) {
+      throw new SAXParseException(String.format("Tag [%s] is not defined",
+          tagName), locator);
+    }
+
+    currentTestId = currentTestSymbol.getId();
+
+    // Build test argument and environment maps
+    currentTestArguments = loadArguments(currentTestSymbol, currentTestId,
+        tagName, attrs, locator);
+  }
+
+  /**
+   * Adds the current test to the list of current test descriptors.
+   */
+  private void handleTestEnd(String tagName) throws SAXException {
+    if (currentTestId == null || currentTestArguments == null) {
+      throw new SAXParseException(String.format("Unexpected closing [%s] tag",
+          tagName), locator);
+    }
+
+    logger.debug(String.format("Ending test [%s]", currentTestId));
+
+    final TestDescriptor testDescriptor = new TestDescriptor(currentTestId,
+        currentTestArguments);
+
+    currentTests.add(testDescriptor);
+
+    currentTestId = null;
+    currentTestArguments = null;
+  }
+
+  /**
+   * Handle <environment> tag
+   * 
+   * @throws SAXException
+   */
+  private void handleEnvironmentStart(String tagName) throws SAXException {
+    logger.debug("Starting environment");
+    if (currentTestEnvironment == null || currentCapability == null
+        || currentTestId != null) {
+      throw new SAXParseException(
+          String.format("Unexpected [%s] tag", tagName), locator);
+    }
+  }
+
+  /**
+   * Add an environment variable to the environment map.
+   * 
+   * @param attrs
+   *          - Currrent tag's attributes
+   * @throws SAXException
+   */
+  private void handleVariableStart(String tagName, Attributes attrs)
+      throws SAXException {
+    logger.debug("Starting variable");
+    if (currentTestEnvironment == null) {
+      throw new SAXParseException(
+          String.format("Unexpected [%s] tag", tagName), locator);
+    }
+
+    final String varName = attrs
+        .getValue(TestsParserConstants.ATTR_VARIABLE_NAME);
+    final String varValue = attrs
+        .getValue(TestsParserConstants.ATTR_VARIABLE_VALUE);
+    if (varName == null || varValue == null) {
+      throw new SAXParseException(String.format("Badly formed %s tag",
+          TestsParserConstants.TAG_VARIABLE), locator);
+    }
+
+    // Do any substitution
+    String newVarValue = null;
+    try {
+      newVarValue = environmentSubstitution.substitute(varValue);
+    } catch (TRException ex) {
+      throw new SAXParseException("Environment variable substitution failed",
+          locator, ex);
+    }
+    currentTestEnvironment.put(varName, newVarValue);
+
+    logger.debug(String.format("Read variable: name = [%s], value = [%s]",
+        varName, varValue));
+  }
+
+  /**
+   * Handle opening tags that are defined in the runtime profile.
+   * 
+   * @param tagName
+   *          - Current tag name
+   * @param attrs
+   *          - Attributes of current tag
+   * @throws SAXException
+   */
+  private void handleSymbolStart(String tagName, Attributes attrs)
+      throws SAXException {
+    if (symbols.containsKey(tagName)) {
+      /*
+       * The current tag is a capability Get the capability symbol from the
+       * symbol table.
+       */
+      handleCapabilityStart(tagName, attrs);
+    } else {
+      handleTestStart(tagName, attrs);
+    }
+  }
+
+  /**
+   * Handle closing tags that are defined in the runtime profile.
+   * 
+   * @param tagName
+   *          - Current tag name
+   */
+  private void handleSymbolEnd(String tagName) throws SAXException {
+    if (symbols.containsKey(tagName)) {
+      handleCapabilityEnd(tagName);
+    } else {
+      handleTestEnd(tagName);
+    }
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName,
+      Attributes attrs) throws SAXException {
+    if (skippingTestCase == true) {
+      return;
+    }
+    if (TestsParserConstants.TAG_TESTS.equals(qName)) {
+      handleTestsStart();
+    } else if (TestsParserConstants.TAG_TESTCASE.equals(qName)) {
+      handleTestCaseStart(qName, attrs);
+    } else if (TestsParserConstants.TAG_ENVIRONMENT.equals(qName)) {
+      handleEnvironmentStart(qName);
+    } else if (TestsParserConstants.TAG_VARIABLE.equals(qName)) {
+      handleVariableStart(qName, attrs);
+    } else {
+      handleSymbolStart(qName, attrs);
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName)
+      throws SAXException {
+    if (skippingTestCase == true) {
+      skippingTestCase = TestsParserConstants.TAG_TESTCASE.equals(qName) == false;
+      return;
+    }
+    if (TestsParserConstants.TAG_TESTS.equals(qName)) {
+      logger.debug(String.format("Ending %s", qName));
+    } else if (TestsParserConstants.TAG_TESTCASE.equals(qName)) {
+      handleTestCaseEnd(qName);
+    } else if (TestsParserConstants.TAG_ENVIRONMENT.equals(qName)) {
+      logger.debug(String.format("Ending %s", qName));
+    } else if (TestsParserConstants.TAG_VARIABLE.equals(qName)) {
+      logger.debug(String.format("Ending %s", qName));
+    } else {
+      handleSymbolEnd(qName);
+    }
+  }
+
+  @Override
+  public void warning(SAXParseException saxEx) {
+    logger.warn(
+        String.format("Parse warning %s: %s", this.getLocation(),
+            saxEx.getMessage()), saxEx);
+  }
+
+  @Override
+  public void error(SAXParseException saxEx) {
+    logger.error(
+        String.format("Parse error %s: %s", this.getLocation(),
+            saxEx.getMessage()), saxEx);
+  }
+
+  @Override
+  public void fatalError(SAXParseException saxEx) {
+    logger.fatal(
+        String.format("Parse error %s: %s", this.getLocation(),
+            saxEx.getMessage()), saxEx);
+  }
+
+  @Override
+  public void setDocumentLocator(Locator loc) {
+    locator = loc;
+  }
+}
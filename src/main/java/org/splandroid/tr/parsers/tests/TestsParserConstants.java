@@ -18,12 +18,15 @@
  */
 package org.splandroid.tr.parsers.tests;
 
+import org.splandroid.tr.parsers.ParserConstants;
+
 class TestsParserConstants {
   public static final String TAG_TESTS = "tests";
 
   public static final String TAG_TESTCASE = "testcase";
   public static final String ATTR_TESTSUITE_ID = "id";
   public static final String ATTR_TESTSUITE_DESC = "description";
+  public static final String ATTR_TESTSUITE_TIMEOUT = ParserConstants.ATTR_TIMEOUT;
 
   public static final String TAG_ENVIRONMENT = "environment";
 
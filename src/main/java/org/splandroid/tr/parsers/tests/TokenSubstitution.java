@@ -19,6 +19,8 @@
 package org.splandroid.tr.parsers.tests;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -28,7 +30,11 @@ import org.splandroid.tr.TRException;
 
 /**
  * A string substitution service class. To construct you'll need a pattern to
- * match a token prefixed and suffixed by an anchor string. <br>
+ * match a token prefixed and suffixed by an anchor string. Each string is
+ * split into its literal text and tokens once, and only the tokens are looked
+ * up when the same string is substituted again. Strings without the anchor are
+ * returned as they are, and only the most recently used strings that have the
+ * anchor are remembered, including those that turn out to have no tokens. <br>
  * <br>
  * The warning is suppressed since Map is a generic but we do not know ahead of
  * time what the Map will "look" like.
@@ -36,10 +42,31 @@ import org.splandroid.tr.TRException;
  * @param <T>
  */
 class TokenSubstitution<T extends Map<?, ?>> {
-  private final String substitutionAnchor;
+  private static final int maxTemplates = 1024;
+
   private final Pattern substitutionPattern;
+  private final String anchorText;
   private final List<T> maps;
   private final String kind;
+  private final Map<String, Template> templates;
+
+  /**
+   * A string split into the literal text between its tokens and the tokens'
+   * names. There is one more literal than there are tokens.
+   */
+  private static class Template {
+    private final String[] literals;
+    private final String[] tokens;
+
+    public Template(List<String> literalList, List<String> tokenList) {
+      literals = literalList.toArray(new String[literalList.size()]);
+      tokens = tokenList.toArray(new String[tokenList.size()]);
+    }
+  }
+
+  // The template of every string with the anchor but no tokens
+  private static final Template noTokens = new Template(
+      Collections.<String> emptyList(), Collections.<String> emptyList());
 
   /**
    * @param pattern
@@ -50,52 +77,88 @@ class TokenSubstitution<T extends Map<?, ?>> {
    *          - A message prefix that will appear in error messages
    */
   public TokenSubstitution(String pattern, String anchor, String kindStr) {
-    substitutionAnchor = anchor;
-    substitutionPattern = Pattern.compile(String.format("%s%s%s", anchor,
+    substitutionPattern = Pattern.compile(String.format("%s(%s)%s", anchor,
         pattern, anchor));
+    anchorText = anchor.replace("\\", "");
     kind = kindStr;
     maps = new ArrayList<T>();
-  }
+    templates = new LinkedHashMap<String, Template>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
 
-  public synchronized String substitute(String value) throws TRException {
-    final Matcher m = substitutionPattern.matcher(value);
-    final StringBuffer result = new StringBuffer();
-    int startIdx = 0;
-    int oldStartIdx = 0;
-    int endIdx = 0;
-    while (m.find()) {
-      final String token = m.group().replaceAll(substitutionAnchor, "");
-      String replacement = null;
-      for (T map : maps) {
-        if (map != null) {
-          final Object thing = map.get(token);
-          if (thing != null) {
-            replacement = thing.toString();
-            break;
-          }
-        }
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+        return size() > maxTemplates;
       }
-      if (replacement == null) {
-        throw new TRException(String.format("%s [%s] not found", kind, token));
+    };
+  }
+
+  /**
+   * Get the template for a string, compiling it the first time the string is
+   * seen. A string with no tokens has the shared no-tokens template.
+   */
+  private Template getTemplate(String value) {
+    Template template = templates.get(value);
+    if (template == null) {
+      final Matcher m = substitutionPattern.matcher(value);
+      final List<String> literals = new ArrayList<String>();
+      final List<String> tokens = new ArrayList<String>();
+      int literalIdx = 0;
+      while (m.find()) {
+        literals.add(value.substring(literalIdx, m.start()));
+        tokens.add(m.group(1));
+        literalIdx = m.end();
       }
-      startIdx = m.start();
-      endIdx = m.end();
-      if (startIdx > 0) {
-        result.append(value.substring(oldStartIdx, startIdx));
-        oldStartIdx = m.end();
+      if (tokens.isEmpty() == true) {
+        template = noTokens;
       } else {
-        oldStartIdx = endIdx;
+        literals.add(value.substring(literalIdx));
+        template = new Template(literals, tokens);
       }
+      templates.put(value, template);
+    }
+    return template;
+  }
+
+  private String lookUp(String token) throws TRException {
+    for (T map : maps) {
+      if (map != null) {
+        final Object thing = map.get(token);
+        if (thing != null) {
+          return thing.toString();
+        }
+      }
+    }
+    throw new TRException(String.format("%s [%s] not found", kind, token));
+  }
 
-      result.append(replacement);
+  public synchronized String substitute(String value) throws TRException {
+    if (value.indexOf(anchorText) < 0) {
+      return value;
     }
-    if (endIdx < value.length()) {
-      result.append(value.substring(endIdx));
+    final Template template = getTemplate(value);
+    if (template == noTokens) {
+      return value;
     }
 
+    final String[] tokens = template.tokens;
+
+    final String[] literals = template.literals;
+    final StringBuilder result = new StringBuilder(value.length());
+    for (int idx = 0; idx < tokens.length; idx++) {
+      result.append(literals[idx]).append(lookUp(tokens[idx]));
+    }
+    result.append(literals[tokens.length]);
+
     return result.toString();
   }
 
+  /**
+   * Has a string's template been compiled and remembered?
+   */
+  synchronized boolean isRemembered(String value) {
+    return templates.containsKey(value);
+  }
+
   public synchronized TokenSubstitution<T> addMap(T map) {
     maps.add(map);
     return this;
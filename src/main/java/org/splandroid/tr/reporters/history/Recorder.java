@@ -0,0 +1,43 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.reporters.history;
+
+import org.splandroid.tr.events.TRTestCaseTimer;
+import org.splandroid.tr.events.TRTestEvent;
+import org.splandroid.tr.testing.DurationHistory;
+
+/**
+ * Records how long each test case takes in a duration history, timed from its
+ * started event to its finished event.
+ */
+public class Recorder extends TRTestCaseTimer {
+  private final DurationHistory history;
+
+  public Recorder(DurationHistory durations) {
+    history = durations;
+  }
+
+  @Override
+  protected void finishedTestCase(String component, TRTestEvent event,
+      Long duration) {
+    if (duration != null) {
+      history.setDuration(component, event.getId(), duration);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.reporters.results;
+
+import org.splandroid.tr.events.TRTestCaseTimer;
+import org.splandroid.tr.events.TRTestEvent;
+import org.splandroid.tr.reporting.TRTestResults;
+
+/**
+ * Records the outcome and duration of each test case in a set of test results.
+ */
+public class Recorder extends TRTestCaseTimer {
+  private final TRTestResults results;
+
+  public Recorder(TRTestResults testResults) {
+    results = testResults;
+  }
+
+  @Override
+  protected void finishedTestCase(String component, TRTestEvent event,
+      Long duration) {
+    TRTestResults.Status status = TRTestResults.Status.PASSED;
+    if (event.isFailure() == true) {
+      status = (event.getThrowable() == null) ? TRTestResults.Status.FAILED
+          : TRTestResults.Status.ERROR;
+    }
+    results.add(new TRTestResults.Result(component, event.getId(), status,
+        (duration == null) ? 0 : duration));
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.reporting;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of each test case in a run of the harness, keyed by component
+ * and test case ID. Results are saved as a tab separated results file in the
+ * suite results directory. The results files from several runs, such as the
+ * shards of a suite, can be loaded into one set of results and saved as a
+ * single report.
+ */
+public class TRTestResults {
+  public static final String resultsFileName = "results.txt";
+
+  private static final String FIELD_SEPARATOR = "\t";
+  private static final String COMMENT_PREFIX = "#";
+  private static final String encoding = "UTF-8";
+
+  public enum Status {
+    PASSED, FAILED, ERROR
+  }
+
+  /**
+   * The outcome of one test case.
+   */
+  public static class Result {
+    private final String component;
+    private final String testCaseId;
+    private final Status status;
+    private final long duration;
+
+    public Result(String componentName, String id, Status testCaseStatus,
+        long testCaseDuration) {
+      component = componentName;
+      testCaseId = id;
+      status = testCaseStatus;
+      duration = testCaseDuration;
+    }
+
+    public String getComponent() {
+      return component;
+    }
+
+    public String getTestCaseId() {
+      return testCaseId;
+    }
+
+    public Status getStatus() {
+      return status;
+    }
+
+    /**
+     * @return The test case's duration in milliseconds
+     */
+    public long getDuration() {
+      return duration;
+    }
+  }
+
+  private final Map<String, Result> results;
+
+  public TRTestResults() {
+    results = new TreeMap<String, Result>();
+  }
+
+  /**
+   * Add a test case's result, replacing any earlier result for it.
+   * 
+   * @return The replaced result, or null if there was none
+   */
+  public synchronized Result add(Result result) {
+    return results.put(getKey(result), result);
+  }
+
+  /**
+   * @return The results, ordered by component and test case ID
+   */
+  public synchronized Collection<Result> getResults() {
+    return new ArrayList<Result>(results.values());
+  }
+
+  /**
+   * Load the results in a results file. Results already held for the same test
+   * cases are replaced.
+   * 
+   * @param resultsFile
+   *          - A results file, or a suite results directory holding one
+   * @return The results read from the file
+   * @throws IOException
+   */
+  public synchronized Collection<Result> load(File resultsFile)
+      throws IOException {
+    final File file = resultsFile.isDirectory() ? new File(resultsFile,
+        resultsFileName) : resultsFile;
+    final Collection<Result> loaded = new ArrayList<Result>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(file), encoding));
+    try {
+      String line;
+      int lineNo = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNo++;
+        if (line.length() == 0 || line.startsWith(COMMENT_PREFIX)) {
+          continue;
+        }
+        final String[] fields = line.split(FIELD_SEPARATOR);
+        if (fields.length != 4) {
+          throw new IOException(String.format(
+              "Malformed result at line %d of [%s]", lineNo, file.getPath()));
+        }
+        final Result result;
+        try {
+          result = new Result(fields[0], fields[1], Status.valueOf(fields[2]),
+              Long.parseLong(fields[3]));
+        } catch (IllegalArgumentException ex) {
+          throw new IOException(String.format(
+              "Malformed result at line %d of [%s]: %s", lineNo,
+              file.getPath(), ex.getMessage()));
+        }
+        add(result);
+        loaded.add(result);
+      }
+    } finally {
+      reader.close();
+    }
+
+    return loaded;
+  }
+
+  /**
+   * Save the results to a results file.
+   * 
+   * @param resultsDir
+   *          - The suite results directory to save the results file in
+   * @param comment
+   *          - A comment for the head of the file, or null
+   * @throws IOException
+   */
+  public synchronized void save(File resultsDir, String comment)
+      throws IOException {
+    final PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+        new FileOutputStream(new File(resultsDir, resultsFileName)), encoding));
+    try {
+      if (comment != null) {
+        writer.println(COMMENT_PREFIX + " " + comment);
+      }
+      for (Result result : results.values()) {
+        writer.println(result.getComponent() + FIELD_SEPARATOR
+            + result.getTestCaseId() + FIELD_SEPARATOR + result.getStatus()
+            + FIELD_SEPARATOR + result.getDuration());
+      }
+    } finally {
+      writer.close();
+    }
+    if (writer.checkError()) {
+      throw new IOException(String.format("Failed to write results to [%s]",
+          resultsDir.getPath()));
+    }
+  }
+
+  private static String getKey(Result result) {
+    return result.getComponent() + FIELD_SEPARATOR + result.getTestCaseId();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * The durations, in milliseconds, that test cases took when last run. Test
+ * cases are keyed by their component and test case ID. The history is kept in
+ * a properties file so that it survives between runs of the harness.
+ */
+public class DurationHistory {
+  private static final String KEY_FMT = "%s/%s";
+
+  private final File historyFile;
+  private final Properties durations;
+
+  /**
+   * Build an empty history that is not backed by a file.
+   */
+  public DurationHistory() {
+    this(null);
+  }
+
+  public DurationHistory(File file) {
+    historyFile = file;
+    durations = new Properties();
+  }
+
+  /**
+   * Load the history from its file. A missing file gives an empty history.
+   * 
+   * @throws IOException
+   */
+  public synchronized void load() throws IOException {
+    if (historyFile == null || historyFile.exists() == false) {
+      return;
+    }
+
+    final InputStream historyStream = new FileInputStream(historyFile);
+    try {
+      durations.load(historyStream);
+    } finally {
+      historyStream.close();
+    }
+  }
+
+  /**
+   * Save the history to its file.
+   * 
+   * @throws IOException
+   */
+  public synchronized void save() throws IOException {
+    if (historyFile == null) {
+      return;
+    }
+
+    final OutputStream historyStream = new FileOutputStream(historyFile);
+    try {
+      durations.store(historyStream, "Test case durations in milliseconds");
+    } finally {
+      historyStream.close();
+    }
+  }
+
+  /**
+   * @return The test case's last duration, or null if it is not known
+   */
+  public synchronized Long getDuration(String component, String testCaseId) {
+    final String duration = durations.getProperty(getKey(component,
+        testCaseId));
+    if (duration == null) {
+      return null;
+    }
+    try {
+      return Long.valueOf(duration);
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  public synchronized void setDuration(String component, String testCaseId,
+      long duration) {
+    durations.setProperty(getKey(component, testCaseId),
+        Long.toString(duration));
+  }
+
+  private String getKey(String component, String testCaseId) {
+    return String.format(KEY_FMT, component, testCaseId);
+  }
+}
@@ -19,21 +19,32 @@
 package org.splandroid.tr.testing;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
-import org.apache.tools.ant.taskdefs.PumpStreamHandler;
+import org.splandroid.tr.commons.EnvironmentSnapshot;
+import org.splandroid.tr.commons.IEnvironmentBlock;
 import org.splandroid.tr.commons.KillableProcess;
+import org.splandroid.tr.commons.PooledPumpStreamHandler;
 import org.splandroid.tr.commons.ProcessStatus;
 import org.splandroid.tr.parsers.ITestArguments;
 import org.splandroid.tr.parsers.ITestDescriptor;
 
 public abstract class TRExecutableTestCase extends TRTestCase {
   private static Logger logger = Logger.getLogger(TRExecutableTestCase.class);
-  private static int defaultPollDelayms = 500;
+  private static final int defaultCaptureHeadBytes = 64 * 1024;
+  private static final int defaultCaptureTailBytes = 64 * 1024;
+
+  // Processes that are running, so that they can be killed on a timeout
+  private final Set<KillableProcess> processes = new HashSet<KillableProcess>();
+  // Built the first time a process is run, if the environment keeps no block
+  private volatile String[] environmentBlock = null;
 
   public TRExecutableTestCase(String testId, String description,
       List<ITestDescriptor> tests, ITestArguments setUpInfo,
@@ -46,6 +57,49 @@ public abstract class TRExecutableTestCase extends TRTestCase {
     return splitLines;
   }
 
+  /**
+   * Capture a process's output to a file in the test case's output directory,
+   * keeping the default amount of its head and tail in memory.
+   * 
+   * @param fileName
+   *          - The name of the file in the output directory
+   * @see org.splandroid.tr.testing.TRExecutableTestCase#captureOutput(String,
+   *      int, int)
+   */
+  protected TRProcessOutput captureOutput(String fileName) throws IOException {
+    return captureOutput(fileName, defaultCaptureHeadBytes,
+        defaultCaptureTailBytes);
+  }
+
+  /**
+   * Capture a process's output to a file in the test case's output directory,
+   * keeping up to headBytes from its start and tailBytes from its end in
+   * memory. The capture can be passed to runProcess as its output or error
+   * stream. If the test case has no output directory the output is written to
+   * a temporary file.
+   * 
+   * @param fileName
+   *          - The name of the file in the output directory
+   * @param headBytes
+   *          - The number of bytes from the start of the output to keep
+   * @param tailBytes
+   *          - The number of bytes from the end of the output to keep
+   */
+  protected TRProcessOutput captureOutput(String fileName, int headBytes,
+      int tailBytes) throws IOException {
+    final File outputDir = getOutputDirectory();
+    File outputFile;
+    if (outputDir != null) {
+      outputFile = new File(outputDir, fileName);
+    } else {
+      outputFile = File.createTempFile(fileName, null);
+      outputFile.deleteOnExit();
+    }
+    logger.debug(String.format("Capturing output to [%s]",
+        outputFile.getPath()));
+    return new TRProcessOutput(outputFile, headBytes, tailBytes);
+  }
+
   protected int runProcess(
       final String cmd,
       final File workingDir,
@@ -56,8 +110,8 @@ public abstract class TRExecutableTestCase extends TRTestCase {
   throws Exception {
     logger.debug(String.format("Running command = [%s]...", cmd));
 
-    final PumpStreamHandler streamHandler = new PumpStreamHandler(outStream,
-        errStream, inStream);
+    final PooledPumpStreamHandler streamHandler = new PooledPumpStreamHandler(
+        outStream, errStream, inStream);
 
     if (!workingDir.exists()) {
       fail(String.format("Working directory [%s] does not exist", workingDir));
@@ -75,33 +129,42 @@ public abstract class TRExecutableTestCase extends TRTestCase {
 
     final Map<String, String> environment = getEnvironment();
     if (environment != null) {
-      for (String envVarName : environment.keySet()) {
-        final String value = environment.get(envVarName);
-        logger.debug(String.format("Setting environment [%s] = [%s]",
-            envVarName, value));
-        proc.addEnvironmentVariable(envVarName, value);
+      if (logger.isDebugEnabled()) {
+        for (Map.Entry<String, String> envVar : environment.entrySet()) {
+          logger.debug(String.format("Setting environment [%s] = [%s]",
+              envVar.getKey(), envVar.getValue()));
+        }
       }
+      proc.setEnvironmentBlock(getEnvironmentBlock(environment));
     } else {
       logger.debug("No environment to set");
     }
 
     logger.debug(String.format("Executing command = [%s]",
         proc.getCommandLine()));
-    proc.start();
-    while (proc.isRunning()) {
-      synchronized (this) {
-        try {
-          wait(defaultPollDelayms);
-        } catch (InterruptedException ex) {
-          throw new InternalTestException(ex);
-        }
+    synchronized (processes) {
+      processes.add(proc);
+    }
+    try {
+      proc.start();
+      try {
+        proc.waitFor();
+      } catch (InterruptedException ex) {
+        proc.kill();
+        throw new InternalTestException(ex);
+      }
+    } finally {
+      synchronized (processes) {
+        processes.remove(proc);
       }
     }
 
-    logger.debug(String.format("Execution standard output: [%s]",
-        outStream.toString()));
-    logger.debug(String.format("Execution standard error: [%s]",
-        errStream.toString()));
+    if (logger.isDebugEnabled()) {
+      logger.debug(String.format("Execution standard output: [%s]",
+          outStream.toString()));
+      logger.debug(String.format("Execution standard error: [%s]",
+          errStream.toString()));
+    }
 
     final ProcessStatus status = proc.getProcessStatus();
     final int exitStatus = status.getReturnValue();
@@ -114,4 +177,35 @@ public abstract class TRExecutableTestCase extends TRTestCase {
 
     return exitStatus;
   }
+
+  /**
+   * Get the environment block the test case's processes are started with. It
+   * is the block the environment keeps, shared with the other test cases that
+   * have the same environment, or else one built once for the test case.
+   */
+  private String[] getEnvironmentBlock(Map<String, String> environment) {
+    if (environment instanceof IEnvironmentBlock) {
+      return ((IEnvironmentBlock )environment).getEnvironmentBlock();
+    }
+    String[] block = environmentBlock;
+    if (block == null) {
+      block = EnvironmentSnapshot.createEnvironmentBlock(environment);
+      environmentBlock = block;
+    }
+    return block;
+  }
+
+  /**
+   * Kill any processes the test case is waiting on.
+   */
+  @Override
+  protected void onTimeout() {
+    synchronized (processes) {
+      for (KillableProcess proc : processes) {
+        logger.debug(String.format("Killing command = [%s]",
+            proc.getCommandLine()));
+        proc.kill();
+      }
+    }
+  }
 }
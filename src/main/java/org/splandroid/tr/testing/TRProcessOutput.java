@@ -0,0 +1,184 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Captures a process's output stream to a file, keeping only the head and the
+ * tail of the output in memory. The head and tail are enough for most tests and
+ * for logging; the full output can be read back from the file when it is
+ * needed.
+ * 
+ * @see org.splandroid.tr.testing.TRExecutableTestCase#captureOutput(String)
+ */
+public class TRProcessOutput extends OutputStream {
+  private final File file;
+  private final OutputStream fileStream;
+  private final byte[] head;
+  private final byte[] tail;
+
+  private int headLength = 0;
+  private int tailEnd = 0;
+  private int tailLength = 0;
+  private long size = 0;
+
+  /**
+   * Build a capture that writes to the given file, replacing any existing
+   * content.
+   * 
+   * @param outputFile
+   *          - The file to write the full output to
+   * @param headBytes
+   *          - The number of bytes from the start of the output to keep
+   * @param tailBytes
+   *          - The number of bytes from the end of the output to keep
+   * @throws IOException
+   *           if the file cannot be created
+   */
+  public TRProcessOutput(File outputFile, int headBytes, int tailBytes)
+      throws IOException {
+    assert headBytes >= 0 && tailBytes >= 0;
+    file = outputFile;
+    fileStream = new BufferedOutputStream(new FileOutputStream(outputFile));
+    head = new byte[headBytes];
+    tail = new byte[tailBytes];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] { (byte )b }, 0, 1);
+  }
+
+  @Override
+  public synchronized void write(byte[] bytes, int offset, int length)
+      throws IOException {
+    fileStream.write(bytes, offset, length);
+    size += length;
+
+    // Fill the head first, then the tail's ring buffer with what is left
+    final int headCopy = Math.min(length, head.length - headLength);
+    System.arraycopy(bytes, offset, head, headLength, headCopy);
+    headLength += headCopy;
+
+    int start = offset + headCopy;
+    int remaining = length - headCopy;
+    if (remaining > tail.length) {
+      start += remaining - tail.length;
+      remaining = tail.length;
+    }
+    while (remaining > 0) {
+      final int copy = Math.min(remaining, tail.length - tailEnd);
+      System.arraycopy(bytes, start, tail, tailEnd, copy);
+      tailEnd = (tailEnd + copy) % tail.length;
+      tailLength = Math.min(tail.length, tailLength + copy);
+      start += copy;
+      remaining -= copy;
+    }
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    fileStream.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    fileStream.close();
+  }
+
+  public final File getFile() {
+    return file;
+  }
+
+  /**
+   * Get the total number of bytes written, including those not kept in memory.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Is any of the output only available from the file?
+   */
+  public synchronized boolean isTruncated() {
+    return size > headLength + tailLength;
+  }
+
+  /**
+   * Get the start of the output, up to the head size.
+   */
+  public synchronized String getHead() {
+    return new String(head, 0, headLength);
+  }
+
+  /**
+   * Get the end of the output that followed the head, up to the tail size.
+   */
+  public synchronized String getTail() {
+    final byte[] bytes = new byte[tailLength];
+    final int start = (tailEnd - tailLength + tail.length) % Math.max(1,
+        tail.length);
+    final int firstCopy = Math.min(tailLength, tail.length - start);
+    System.arraycopy(tail, start, bytes, 0, firstCopy);
+    System.arraycopy(tail, 0, bytes, firstCopy, tailLength - firstCopy);
+    return new String(bytes);
+  }
+
+  /**
+   * Open the full output for reading from the file.
+   * 
+   * @throws IOException
+   */
+  public InputStream openStream() throws IOException {
+    flush();
+    return new FileInputStream(file);
+  }
+
+  /**
+   * Read the full output from the file.
+   * 
+   * @throws IOException
+   */
+  public String readAll() throws IOException {
+    flush();
+    return FileUtils.readFileToString(file);
+  }
+
+  /**
+   * The head and tail of the output, with a marker in place of any output that
+   * was only written to the file.
+   */
+  @Override
+  public synchronized String toString() {
+    if (isTruncated() == false) {
+      return getHead() + getTail();
+    }
+    return String.format("%s\n... [%d bytes omitted, see %s] ...\n%s",
+        getHead(), size - headLength - tailLength, file.getPath(), getTail());
+  }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.splandroid.tr.parsers.IPrimitiveTestArguments;
+import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.parsers.PrimitiveKind;
+import org.splandroid.tr.testing.annotations.Test;
+import org.splandroid.tr.testing.annotations.TestExecuteSetter;
+import org.splandroid.tr.testing.annotations.TestSetter;
+
+/**
+ * The setters and test methods of a test case class, each looked up, checked
+ * for its annotation and bound to a method handle the first time it is used.
+ * Later test cases of the same class reuse the bindings, so running a test
+ * needs no reflective lookup, annotation check or method name building.
+ */
+final class TRTestBindings {
+  private static final String setterPrefix = "set";
+  private static final String testMethodPrefix = "test";
+
+  private static final ConcurrentMap<Class<?>, TRTestBindings> classBindings = new ConcurrentHashMap<Class<?>, TRTestBindings>();
+  private static final ConcurrentMap<String, TRTestBindings> classNameBindings = new ConcurrentHashMap<String, TRTestBindings>();
+
+  private final Class<?> klass;
+  private volatile Constructor<?> constructor = null;
+  private final ConcurrentMap<SetterKey, Binding> executeSetters = new ConcurrentHashMap<SetterKey, Binding>();
+  private final ConcurrentMap<SetterKey, Binding> testSetters = new ConcurrentHashMap<SetterKey, Binding>();
+  private final ConcurrentMap<String, Binding> testMethods = new ConcurrentHashMap<String, Binding>();
+
+  private TRTestBindings(Class<?> testCaseClass) {
+    klass = testCaseClass;
+  }
+
+  /**
+   * Get the bindings for a test case class.
+   */
+  static TRTestBindings forClass(Class<?> testCaseClass) {
+    TRTestBindings bindings = classBindings.get(testCaseClass);
+    if (bindings == null) {
+      bindings = new TRTestBindings(testCaseClass);
+      final TRTestBindings existing = classBindings.putIfAbsent(testCaseClass,
+          bindings);
+      if (existing != null) {
+        bindings = existing;
+      }
+    }
+    return bindings;
+  }
+
+  /**
+   * Get the bindings for a test case class by name, loading the class the
+   * first time it is named.
+   * 
+   * @throws InternalTestException
+   *           if the class cannot be loaded or is not a test case class
+   */
+  static TRTestBindings forClassName(String klassName)
+      throws InternalTestException {
+    TRTestBindings bindings = classNameBindings.get(klassName);
+    if (bindings == null) {
+      Class<? extends TRTestCase> klass;
+      try {
+        klass = Class.forName(klassName).asSubclass(TRTestCase.class);
+      } catch (ClassNotFoundException notFoundEx) {
+        throw new InternalTestException(String.format(
+            "Test class [%s] not found: %s", klassName,
+            notFoundEx.getMessage()));
+      } catch (ClassCastException castEx) {
+        throw new InternalTestException(String.format(
+            "Test class [%s] does not extend %s: %s", klassName,
+            TRTestCase.class.getName(), castEx.getMessage()));
+      }
+      bindings = forClass(klass);
+      classNameBindings.putIfAbsent(klassName, bindings);
+    }
+    return bindings;
+  }
+
+  /**
+   * Get the test case class's constructor, which takes the test case's ID,
+   * description, tests, set up information and environment.
+   * 
+   * @throws InternalTestException
+   *           if the class has no such constructor
+   */
+  Constructor<?> getConstructor() throws InternalTestException {
+    Constructor<?> klassConstructor = constructor;
+    if (klassConstructor == null) {
+      final String klassName = klass.getName();
+      try {
+        klassConstructor = klass.getConstructor(String.class, String.class,
+            List.class, ITestArguments.class, Map.class);
+      } catch (NoSuchMethodException noSuchMethodEx) {
+        throw new InternalTestException(String.format(
+            "Expected constructor for class [%s] does " + "not exist",
+            klassName), noSuchMethodEx);
+      } catch (SecurityException secEx) {
+        throw new InternalTestException(String.format(
+            "Constructor for class [%s] does " + "not allow execution",
+            klassName), secEx);
+      }
+      constructor = klassConstructor;
+    }
+    return klassConstructor;
+  }
+
+  static String getSetterMethodName(String argName) {
+    return setterPrefix + argName.substring(0, 1).toUpperCase()
+        + argName.substring(1);
+  }
+
+  static String getTestMethodName(String testId) {
+    return testMethodPrefix + testId.substring(0, 1).toUpperCase()
+        + testId.substring(1);
+  }
+
+  /**
+   * Get the primitive kind of an argument.
+   * 
+   * @return The kind, or null if the argument is held as an object
+   */
+  static PrimitiveKind getPrimitiveKind(Map<String, Object> args,
+      String argName) {
+    if (args instanceof IPrimitiveTestArguments) {
+      return ((IPrimitiveTestArguments )args).getPrimitiveKind(argName);
+    }
+    return null;
+  }
+
+  /**
+   * Get the test execute setter for an argument of the given kind.
+   * 
+   * @throws InternalTestException
+   *           if there is no such setter or it is not annotated
+   */
+  Binding getExecuteSetter(String argName, Class<?> kind, String testCaseId)
+      throws InternalTestException {
+    final SetterKey key = new SetterKey(argName, kind);
+    Binding setter = executeSetters.get(key);
+    if (setter == null) {
+      final String setterMethod = getSetterMethodName(argName);
+      Method method = null;
+      try {
+        method = klass.getMethod(setterMethod, kind);
+      } catch (NoSuchMethodException ex) {
+        throw new InternalTestException(String.format(
+            "Failed to find setup setter method [%s] in " + "test case [%s]",
+            setterMethod, testCaseId), ex);
+      }
+
+      if (method.getAnnotation(TestExecuteSetter.class) == null) {
+        throw new InternalTestException(new IllegalAccessException(
+            String.format("Attempt made, in test case [%s], to access "
+                + "a non-annotated test execute setter "
+                + "method [%s]. Aborting test.", testCaseId, setterMethod)));
+      }
+
+      try {
+        setter = new Binding(method);
+      } catch (IllegalAccessException accessEx) {
+        throw new InternalTestException(String.format(
+            "Failed to invoke setup method [%s] in " + "test case [%s]",
+            setterMethod, testCaseId), accessEx);
+      }
+      executeSetters.putIfAbsent(key, setter);
+    }
+    return setter;
+  }
+
+  /**
+   * Get the test setter for an argument of the given kind.
+   * 
+   * @throws InternalTestException
+   *           if there is no such setter or it is not annotated
+   */
+  Binding getTestSetter(String argName, Class<?> kind, String testId,
+      String testCaseId) throws InternalTestException {
+    final SetterKey key = new SetterKey(argName, kind);
+    Binding setter = testSetters.get(key);
+    if (setter == null) {
+      final String setterMethod = getSetterMethodName(argName);
+      Method method = null;
+      try {
+        method = klass.getMethod(setterMethod, kind);
+      } catch (NoSuchMethodException ex) {
+        throw new InternalTestException(String.format(
+            "Failed to find test setter method [%s] in " + "test case [%s]",
+            setterMethod, testCaseId), ex);
+      }
+
+      if (method.getAnnotation(TestSetter.class) == null) {
+        throw new InternalTestException(new IllegalAccessException(
+            String.format("Attempt made, in test [%s], to access a "
+                + "non-annotated test setter method [%s]. " + "Aborting test.",
+                testId, setterMethod)));
+      }
+
+      try {
+        setter = new Binding(method);
+      } catch (IllegalAccessException accessEx) {
+        throw new InternalTestException(String.format(
+            "Failed to invoke test setter method [%s] in " + "test case [%s]",
+            setterMethod, testCaseId), accessEx);
+      }
+      testSetters.putIfAbsent(key, setter);
+    }
+    return setter;
+  }
+
+  /**
+   * Get the test method for a test.
+   * 
+   * @throws InternalTestException
+   *           if there is no such method or it is not annotated
+   */
+  Binding getTestMethod(String testId, String testCaseId)
+      throws InternalTestException {
+    Binding test = testMethods.get(testId);
+    if (test == null) {
+      final String testMethodName = getTestMethodName(testId);
+      Method method = null;
+      try {
+        method = klass.getMethod(testMethodName);
+      } catch (NoSuchMethodException ex) {
+        throw new InternalTestException(String.format(
+            "Failed to find test method [%s] in test case [%s]",
+            testMethodName, testCaseId), ex);
+      }
+
+      if (method.getAnnotation(Test.class) == null) {
+        throw new InternalTestException(new IllegalAccessException(
+            String.format("Attempt made, in test [%s], to access a "
+                + "non-annotated test method [%s]. " + "Aborting test.",
+                testId, testMethodName)));
+      }
+
+      try {
+        test = new Binding(method);
+      } catch (IllegalAccessException accessEx) {
+        throw new InternalTestException(String.format(
+            "Failed to invoke test method [%s] in test case [%s]",
+            testMethodName, testCaseId), accessEx);
+      }
+      testMethods.putIfAbsent(testId, test);
+    }
+    return test;
+  }
+
+  /**
+   * A setter or test method bound to a method handle. A setter taking a
+   * primitive is bound to its primitive type, so it is invoked without boxing.
+   */
+  static final class Binding {
+    private final String name;
+    private final MethodHandle handle;
+    private final Method method;
+
+    private Binding(Method boundMethod) throws IllegalAccessException {
+      MethodType type = MethodType.methodType(void.class, Object.class);
+      final Class<?>[] paramTypes = boundMethod.getParameterTypes();
+      if (paramTypes.length == 1) {
+        final Class<?> paramType = paramTypes[0];
+        type = type.appendParameterTypes(paramType.isPrimitive() ? paramType
+            : Object.class);
+      }
+
+      name = boundMethod.getName();
+      handle = MethodHandles.lookup().unreflect(boundMethod).asType(type);
+      method = boundMethod;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    <A extends Annotation> A getAnnotation(Class<A> annotationClass) {
+      return method.getAnnotation(annotationClass);
+    }
+
+    /**
+     * Invoke a setter. Exceptions thrown by the setter are thrown as they are.
+     */
+    void invoke(Object target, Object argValue) throws Throwable {
+      handle.invokeExact(target, argValue);
+    }
+
+    /**
+     * Invoke a setter bound to a primitive kind with an argument of that kind,
+     * given as its bits. Exceptions thrown by the setter are thrown as they
+     * are.
+     * 
+     * @see org.splandroid.tr.parsers.PrimitiveKind#parse(String)
+     */
+    void invoke(Object target, PrimitiveKind kind, long bits) throws Throwable {
+      switch (kind) {
+      case BOOLEAN:
+        handle.invokeExact(target, bits != 0);
+        break;
+      case INT:
+        handle.invokeExact(target, (int )bits);
+        break;
+      case LONG:
+        handle.invokeExact(target, bits);
+        break;
+      case FLOAT:
+        handle.invokeExact(target, Float.intBitsToFloat((int )bits));
+        break;
+      case DOUBLE:
+        handle.invokeExact(target, Double.longBitsToDouble(bits));
+        break;
+      }
+    }
+
+    /**
+     * Invoke a test method. Exceptions thrown by the test are thrown as they
+     * are.
+     */
+    void invoke(Object target) throws Throwable {
+      handle.invokeExact(target);
+    }
+  }
+
+  /**
+   * Identifies a setter by its argument's name and kind.
+   */
+  private static final class SetterKey {
+    private final String argName;
+    private final Class<?> kind;
+
+    public SetterKey(String argName, Class<?> kind) {
+      this.argName = argName;
+      this.kind = kind;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * argName.hashCode() + kind.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      final SetterKey other = (SetterKey )obj;
+      return argName.equals(other.argName) && kind == other.kind;
+    }
+  }
+}
@@ -25,7 +25,7 @@ import java.util.Map;
 import org.splandroid.tr.parsers.ITestArguments;
 import org.splandroid.tr.parsers.ITestDescriptor;
 
-public abstract class TRTestCase extends TRAssert {
+public abstract class TRTestCase extends TRAssert implements Cloneable {
   private final String id;
   private final String description;
   private final List<ITestDescriptor> tests;
@@ -35,6 +35,7 @@ public abstract class TRTestCase extends TRAssert {
   private File inputRootDir;
   private ITRTestOutputManager outputMgr;
   private File outputDir;
+  private long timeout = 0;
 
   public TRTestCase(String testId, String description,
       List<ITestDescriptor> tests, ITestArguments setUpInfo,
@@ -92,6 +93,29 @@ public abstract class TRTestCase extends TRAssert {
     return outputDir;
   }
 
+  /**
+   * Set the time, in milliseconds, the test case may run for before the
+   * watchdog stops it. A timeout of 0 lets the test case run indefinitely.
+   */
+  public final void setTimeout(long timeoutms) {
+    timeout = timeoutms;
+  }
+
+  public final long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Copy this test case so that a thread-safe test can be run on the copy. The
+   * copy is shallow: it shares the results of the execute phase with this test
+   * case but has its own test setter fields.
+   * 
+   * @throws CloneNotSupportedException
+   */
+  final TRTestCase copyForTest() throws CloneNotSupportedException {
+    return (TRTestCase) super.clone();
+  }
+
   /**
    * Optional set up phase that can be used to allocate static resources needed
    * by the test. The state of the base class shall be set and correct before
@@ -112,5 +136,16 @@ public abstract class TRTestCase extends TRAssert {
   public void tearDown() {
   }
 
+  /**
+   * Called by the watchdog, on its own thread, when the test case runs for
+   * longer than its timeout. The thread running the test case has already been
+   * interrupted; test cases that wait on anything that ignores interrupts, such
+   * as a child process, should release it here. By default does nothing.
+   * 
+   * @see org.splandroid.tr.testing.TRTestCase#setTimeout(long)
+   */
+  protected void onTimeout() {
+  }
+
   public abstract void execute() throws Exception;
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+
+/**
+ * Hands a suite's test cases to a fixed number of workers so that the suite
+ * finishes as early as possible. Test cases are ordered longest expected
+ * duration first and dealt to the workers' queues, each test case going to
+ * the worker with the least expected work. A worker takes test cases from the
+ * front of its own queue; once that is empty it steals from the back of
+ * another worker's queue.
+ * <p>
+ * A test case with no recorded duration is expected to take the mean of the
+ * recorded durations. If no durations are known the test cases are dealt out
+ * in turn in their original order.
+ */
+class TRTestCaseScheduler {
+  private final List<Deque<ITestCaseDescriptor>> queues;
+
+  public TRTestCaseScheduler(String component,
+      List<ITestCaseDescriptor> testCases, int noWorkers,
+      DurationHistory history) {
+    assert noWorkers > 0 : "Number of workers must be positive";
+
+    final Map<ITestCaseDescriptor, Long> expected = getExpectedDurations(
+        component, testCases, history);
+
+    // Longest first; the sort is stable so ties keep their original order
+    final List<ITestCaseDescriptor> ordered = new ArrayList<ITestCaseDescriptor>(
+        testCases);
+    Collections.sort(ordered, new Comparator<ITestCaseDescriptor>() {
+      public int compare(ITestCaseDescriptor lhs, ITestCaseDescriptor rhs) {
+        return expected.get(rhs).compareTo(expected.get(lhs));
+      }
+    });
+
+    queues = new ArrayList<Deque<ITestCaseDescriptor>>(noWorkers);
+    final long[] loads = new long[noWorkers];
+    for (int idx = 0; idx < noWorkers; idx++) {
+      queues.add(new ConcurrentLinkedDeque<ITestCaseDescriptor>());
+    }
+    for (ITestCaseDescriptor testCase : ordered) {
+      int leastLoaded = 0;
+      for (int idx = 1; idx < noWorkers; idx++) {
+        if (loads[idx] < loads[leastLoaded]) {
+          leastLoaded = idx;
+        }
+      }
+      queues.get(leastLoaded).addLast(testCase);
+      loads[leastLoaded] += expected.get(testCase);
+    }
+  }
+
+  /**
+   * Get the next test case for a worker.
+   * 
+   * @param worker
+   *          - The worker's index, from 0
+   * @return The next test case, or null if there are none left
+   */
+  public ITestCaseDescriptor next(int worker) {
+    final ITestCaseDescriptor own = queues.get(worker).pollFirst();
+    if (own != null) {
+      return own;
+    }
+
+    // Steal the shortest test case left from another worker
+    final int noWorkers = queues.size();
+    for (int offset = 1; offset < noWorkers; offset++) {
+      final ITestCaseDescriptor stolen = queues.get((worker + offset)
+          % noWorkers).pollLast();
+      if (stolen != null) {
+        return stolen;
+      }
+    }
+
+    return null;
+  }
+
+  private static Map<ITestCaseDescriptor, Long> getExpectedDurations(
+      String component, List<ITestCaseDescriptor> testCases,
+      DurationHistory history) {
+    final Map<ITestCaseDescriptor, Long> expected = new HashMap<ITestCaseDescriptor, Long>();
+    long total = 0;
+    int noKnown = 0;
+    for (ITestCaseDescriptor testCase : testCases) {
+      final Long duration = (history == null) ? null : history.getDuration(
+          component, testCase.getId());
+      if (duration != null) {
+        expected.put(testCase, duration);
+        total += duration;
+        noKnown++;
+      }
+    }
+
+    final long unknown = (noKnown == 0) ? 1 : Math.max(1, total / noKnown);
+    for (ITestCaseDescriptor testCase : testCases) {
+      if (expected.containsKey(testCase) == false) {
+        expected.put(testCase, unknown);
+      }
+    }
+
+    return expected;
+  }
+}
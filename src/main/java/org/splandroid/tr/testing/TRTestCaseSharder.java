@@ -0,0 +1,165 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+
+/**
+ * Splits a suite's test cases into a number of balanced shards, so that the
+ * suite can be spread over several machines with no coordination between
+ * them. Every machine computes the same split from the same test cases.
+ * <p>
+ * By default the test cases are ordered by a stable hash of their IDs and
+ * dealt to the shards in turn. If the sharder is given a duration history that
+ * knows any of the test cases then the test cases are instead packed into the
+ * shards longest first, each going to the shard with the least expected work.
+ * Every machine must then be given the same history, so a machine's own
+ * history of the durations it has seen must not be used.
+ */
+public class TRTestCaseSharder {
+  private final String component;
+  private final DurationHistory history;
+
+  /**
+   * @param componentName
+   *          - The component whose test cases are split
+   * @param durationHistory
+   *          - A test case duration history shared by every shard, or null
+   *          to split by test case ID
+   */
+  public TRTestCaseSharder(String componentName,
+      DurationHistory durationHistory) {
+    component = componentName;
+    history = durationHistory;
+  }
+
+  /**
+   * Get the test cases in one shard, in their original order.
+   * 
+   * @param testCases
+   *          - The suite's test cases
+   * @param index
+   *          - The shard's index, from 1 to count
+   * @param count
+   *          - The number of shards
+   * @return The shard's test cases
+   */
+  public List<ITestCaseDescriptor> getShard(
+      List<ITestCaseDescriptor> testCases, int index, int count) {
+    assert count > 0 : "Shard count must be positive";
+    assert index > 0 && index <= count : "Shard index out of range";
+
+    final Map<ITestCaseDescriptor, Integer> shards = assignShards(testCases,
+        count);
+    final List<ITestCaseDescriptor> shard = new ArrayList<ITestCaseDescriptor>();
+    for (ITestCaseDescriptor testCase : testCases) {
+      if (shards.get(testCase) == index - 1) {
+        shard.add(testCase);
+      }
+    }
+
+    return shard;
+  }
+
+  private Map<ITestCaseDescriptor, Integer> assignShards(
+      List<ITestCaseDescriptor> testCases, int count) {
+    final Map<ITestCaseDescriptor, Long> durations = getDurations(testCases);
+    final List<ITestCaseDescriptor> ordered = new ArrayList<ITestCaseDescriptor>(
+        testCases);
+    // Order by ID first so that the split does not depend on the order of
+    // test cases in the tests file
+    Collections.sort(ordered, new Comparator<ITestCaseDescriptor>() {
+      public int compare(ITestCaseDescriptor lhs, ITestCaseDescriptor rhs) {
+        final int lhsHash = lhs.getId().hashCode();
+        final int rhsHash = rhs.getId().hashCode();
+        if (lhsHash != rhsHash) {
+          return (lhsHash < rhsHash) ? -1 : 1;
+        }
+        return lhs.getId().compareTo(rhs.getId());
+      }
+    });
+
+    final Map<ITestCaseDescriptor, Integer> shards = new HashMap<ITestCaseDescriptor, Integer>();
+    if (durations.isEmpty()) {
+      for (int idx = 0; idx < ordered.size(); idx++) {
+        shards.put(ordered.get(idx), idx % count);
+      }
+      return shards;
+    }
+
+    // Longest first, into the least loaded shard
+    final long unknown = getMean(durations.values());
+    Collections.sort(ordered, new Comparator<ITestCaseDescriptor>() {
+      public int compare(ITestCaseDescriptor lhs, ITestCaseDescriptor rhs) {
+        final long lhsDuration = durations.containsKey(lhs) ? durations
+            .get(lhs) : unknown;
+        final long rhsDuration = durations.containsKey(rhs) ? durations
+            .get(rhs) : unknown;
+        return (lhsDuration == rhsDuration) ? 0
+            : (lhsDuration > rhsDuration) ? -1 : 1;
+      }
+    });
+    final long[] loads = new long[count];
+    for (ITestCaseDescriptor testCase : ordered) {
+      int leastLoaded = 0;
+      for (int idx = 1; idx < count; idx++) {
+        if (loads[idx] < loads[leastLoaded]) {
+          leastLoaded = idx;
+        }
+      }
+      shards.put(testCase, leastLoaded);
+      loads[leastLoaded] += durations.containsKey(testCase) ? durations
+          .get(testCase) : unknown;
+    }
+
+    return shards;
+  }
+
+  private Map<ITestCaseDescriptor, Long> getDurations(
+      List<ITestCaseDescriptor> testCases) {
+    final Map<ITestCaseDescriptor, Long> durations = new HashMap<ITestCaseDescriptor, Long>();
+    if (history == null) {
+      return durations;
+    }
+    for (ITestCaseDescriptor testCase : testCases) {
+      final Long duration = history.getDuration(component, testCase.getId());
+      if (duration != null) {
+        durations.put(testCase, duration);
+      }
+    }
+    return durations;
+  }
+
+  private static long getMean(Iterable<Long> durations) {
+    long total = 0;
+    int noDurations = 0;
+    for (Long duration : durations) {
+      total += duration;
+      noDurations++;
+    }
+    return Math.max(1, total / noDurations);
+  }
+}
@@ -19,28 +19,50 @@
 package org.splandroid.tr.testing;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
+import org.splandroid.tr.parsers.IPrimitiveTestArguments;
 import org.splandroid.tr.parsers.ITestArguments;
 import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.parsers.PrimitiveKind;
 import org.splandroid.tr.reporting.IReportFacade;
 import org.splandroid.tr.testing.annotations.Test;
-import org.splandroid.tr.testing.annotations.TestExecuteSetter;
-import org.splandroid.tr.testing.annotations.TestSetter;
 
 class TRTestRunner {
   private static Logger logger = Logger.getLogger(TRTestRunner.class);
-  private static final String setterPrefix = "set";
-  private static final String testMethodPrefix = "test";
+  private static final long abandonDelayms = 1000;
 
   private final IReportFacade reporter;
+  private final ExecutorService testPool;
 
   private TRTestCase testCase;
+  private TRTestWatchdog.Watch watch = null;
 
   public TRTestRunner(IReportFacade reporter) {
+    this(reporter, null);
+  }
+
+  /**
+   * Build a test runner that runs thread-safe tests on the given pool.
+   * 
+   * @param testPool
+   *          - Pool for thread-safe tests, or null to run all tests serially
+   * @see org.splandroid.tr.testing.annotations.Test#threadSafe()
+   */
+  public TRTestRunner(IReportFacade reporter, ExecutorService testPool) {
     this.reporter = reporter;
+    this.testPool = testPool;
   }
 
   public final void setTestCase(TRTestCase testCase) {
@@ -49,13 +71,124 @@ class TRTestRunner {
 
   /**
    * Run a test case through its set up, execute and test phases. If all tests
-   * in the test case pass then the test case is deemed to have passed
+   * in the test case pass then the test case is deemed to have passed. A test
+   * case that runs for longer than its timeout is stopped by the watchdog and
+   * reported as an error.
    * 
    * @returns Test case's passed flag
    */
   public final boolean run() {
     assert testCase != null : "Test case not set in test runner";
 
+    Throwable error = null;
+    boolean passed = false;
+    if (testCase.getTimeout() <= 0) {
+      try {
+        passed = runTestCase();
+      } catch (InternalTestException ex) {
+        error = ex.getCause();
+      }
+    } else {
+      final TRTestRunner execution = new TRTestRunner(reporter, testPool);
+      execution.testCase = testCase;
+      try {
+        passed = execution.runWatchedTestCase();
+      } catch (InternalTestException ex) {
+        error = ex.getCause();
+      }
+      if (execution.watch.hasExpired() == true) {
+        error = new TRTestTimeoutException(testCase.getId(),
+            testCase.getTimeout(), error);
+      }
+    }
+
+    final String testCaseId = testCase.getId();
+    if (error != null) {
+      reporter.errorTestCase(testCaseId, error);
+      return false;
+    }
+
+    String msg = String.format("Test case [%s]: ", testCaseId);
+    if (passed == false) {
+      // TODO: Notify that the test case failed
+      msg += "Failed";
+      reporter.failedTestCase(testCaseId);
+    } else {
+      // TODO: Notify listeners on test case passed
+      msg += "Passed";
+      reporter.passedTestCase(testCaseId);
+    }
+    logger.debug(msg);
+
+    return passed;
+  }
+
+  /**
+   * Run the test case on a thread of its own, watched by the watchdog. If the
+   * thread has not finished a while after the timeout has expired it is
+   * abandoned, so that a test case that ignores its interrupt cannot hold up
+   * the suite. This runner is only used for the one test case, so an abandoned
+   * thread never shares its state with the test cases that follow.
+   * 
+   * @throws InternalTestException
+   *           wrapping the cause of a set up or execute phase error
+   */
+  private boolean runWatchedTestCase() throws InternalTestException {
+    final FutureTask<Boolean> task = new FutureTask<Boolean>(
+        new Callable<Boolean>() {
+          public Boolean call() throws InternalTestException {
+            return runTestCase();
+          }
+        });
+    final Thread thread = new Thread(task, String.format("%s-%s", Thread
+        .currentThread().getName(), testCase.getId()));
+    thread.setDaemon(true);
+    watch = TRTestWatchdog.watch(testCase, thread);
+    thread.start();
+
+    try {
+      return task.get(testCase.getTimeout() + abandonDelayms,
+          TimeUnit.MILLISECONDS);
+    } catch (ExecutionException ex) {
+      final Throwable cause = ex.getCause();
+      if (cause instanceof InternalTestException) {
+        throw (InternalTestException )cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException )cause;
+      }
+      throw (Error )cause;
+    } catch (TimeoutException ex) {
+      logger.error(String.format(
+          "Test case [%s] did not stop after timing out, abandoning it",
+          testCase.getId()));
+      watch.expire();
+      return false;
+    } catch (InterruptedException ex) {
+      logger.error(String.format("Interrupted running test case [%s]",
+          testCase.getId()));
+      thread.interrupt();
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Run the test case's phases, leaving the test case's outcome to the caller.
+   * The test case's watch, if it has one, is cancelled before the test case is
+   * torn down, so that tearing down is not interrupted.
+   * 
+   * @throws InternalTestException
+   *           wrapping the cause of a set up or execute phase error
+   */
+  private boolean runTestCase() throws InternalTestException {
+    try {
+      return runTestCasePhases();
+    } finally {
+      cancelWatch();
+    }
+  }
+
+  private boolean runTestCasePhases() throws InternalTestException {
     final String testCaseId = testCase.getId();
 
     // Notify test case starting
@@ -67,9 +200,9 @@ class TRTestRunner {
       testCase.setUp();
     } catch (Exception ex) {
       logError(TRTestPhase.SETUP, ex.getMessage());
-      // Notify of test case set up phase error
-      reporter.errorTestCase(testCaseId, ex);
-      return false;
+      final InternalTestException intEx = new InternalTestException(ex);
+      intEx.setPhase(TRTestPhase.SETUP);
+      throw intEx;
     }
     logDebugFinished(TRTestPhase.SETUP);
     logger.debug(String.format("Test case [%s] set up phase: Finshed",
@@ -77,44 +210,21 @@ class TRTestRunner {
 
     boolean allTestsPassed = false;
     try {
-      try {
-        runExecutePhase();
-      } catch (InternalTestException ex) {
-        // Notify of test case execute phase error
-        reporter.errorTestCase(testCaseId, ex.getCause());
-        return false;
-      }
+      runExecutePhase();
 
       logDebugStarting(TRTestPhase.TESTING);
       allTestsPassed = runTestPhase();
       logDebugFinished(TRTestPhase.TESTING);
     } finally {
+      cancelWatch();
       logDebugStarting(TRTestPhase.TEAR_DOWN);
       testCase.tearDown();
       logDebugFinished(TRTestPhase.TEAR_DOWN);
     }
 
-    String msg = String.format("Test case [%s]: ", testCaseId);
-    if (allTestsPassed == false) {
-      // TODO: Notify that the test case failed
-      msg += "Failed";
-      reporter.failedTestCase(testCaseId);
-    } else {
-      // TODO: Notify listeners on test case passed
-      msg += "Passed";
-      reporter.passedTestCase(testCaseId);
-    }
-    logger.debug(msg);
-
     return allTestsPassed;
   }
 
-  private String getSetterMethodName(String argName) {
-    final String setterMethod = setterPrefix
-        + argName.substring(0, 1).toUpperCase() + argName.substring(1);
-    return setterMethod;
-  }
-
   private void runExecutePhase() throws InternalTestException {
     // Run the test execute setter methods
     logDebugStarting(TRTestPhase.PRE_EXEC_SETUP);
@@ -145,189 +255,317 @@ class TRTestRunner {
     logDebugFinished(TRTestPhase.EXECUTION);
   }
 
+  /**
+   * Run the test case's tests. Thread-safe tests are handed to the test pool,
+   * each with its own copy of the test case, and once they have all finished
+   * the remaining tests run in order on this thread, so a copy never shares
+   * the test case with a test running on the original. Once the test case's
+   * timeout expires no more tests are started; those left are reported as
+   * timed out.
+   */
   private boolean runTestPhase() {
     boolean allTestsPassed = true;
+    final List<ConcurrentTest> concurrentTests = new ArrayList<ConcurrentTest>();
+    final List<ITestDescriptor> serialTests = new ArrayList<ITestDescriptor>();
 
-    // Run tests over the results
+    // Start the thread-safe tests
     for (ITestDescriptor test : testCase.getTests()) {
-      final String testId = test.getId();
-      logger.debug(String.format("Starting [%s] test...", testId));
-      // Notify of test start
-      reporter.startingTest(testId);
+      if (testPool != null && isThreadSafe(test)) {
+        final TRTestCase testCaseCopy;
+        try {
+          testCaseCopy = testCase.copyForTest();
+        } catch (CloneNotSupportedException ex) {
+          throw new AssertionError(ex);
+        }
+        final ConcurrentTest concurrentTest = new ConcurrentTest(testCaseCopy,
+            test);
+        concurrentTest.future = testPool.submit(concurrentTest);
+        concurrentTests.add(concurrentTest);
+      } else {
+        serialTests.add(test);
+      }
+    }
 
+    // Wait for the thread-safe tests
+    final int noConcurrentTests = concurrentTests.size();
+    for (int idx = 0; idx < noConcurrentTests; idx++) {
       try {
-        runTest(test);
-      } catch (InternalTestException testEx) {
-        testEx.setPhase(TRTestPhase.TESTING);
-        reporter.errorTest(testId, testEx);
-
-        final String msg = String.format(
-            "%s phase failed for test case [%s]: %s", TRTestPhase.TESTING,
-            testCase.getId(), testEx.getMessage());
-        logger.error(msg);
-
+        if (concurrentTests.get(idx).future.get() == false) {
+          allTestsPassed = false;
+        }
+      } catch (ExecutionException ex) {
+        logger.error(String.format("Test in test case [%s] failed to run: %s",
+            testCase.getId(), ex.getCause().getMessage()));
         allTestsPassed = false;
-        continue;
-      } catch (Throwable ex) {
-        String infoMsg = null;
-        final String message = ex.getMessage();
-        if (message == null) {
-          infoMsg = String.format("Test [%s] in test case [%s] failed", testId,
-              testCase.getId());
-        } else {
-          infoMsg = String.format("Test [%s] in test case [%s] failed: %s",
-              testId, testCase.getId(), message);
+      } catch (InterruptedException ex) {
+        logger.error(String.format(
+            "Interrupted waiting for tests in test case [%s]", testCase.getId()));
+        for (ConcurrentTest unfinishedTest : concurrentTests.subList(idx,
+            noConcurrentTests)) {
+          unfinishedTest.future.cancel(true);
+          if (unfinishedTest.claim() == true && hasExpired() == true) {
+            reportTimedOutTest(unfinishedTest.test);
+          }
+        }
+        Thread.currentThread().interrupt();
+        if (hasExpired() == true) {
+          for (ITestDescriptor test : serialTests) {
+            reportTimedOutTest(test);
+          }
         }
-        reporter.failedTest(testId, message);
-        logger.debug(infoMsg);
+        return false;
+      }
+    }
 
+    // Run the remaining tests over the original test case
+    for (ITestDescriptor test : serialTests) {
+      if (hasExpired() == true) {
+        reportTimedOutTest(test);
+        allTestsPassed = false;
+      } else if (runAndReportTest(testCase, test) == false) {
         allTestsPassed = false;
-        continue;
       }
-      reporter.passedTest(testId);
-
-      logger.debug(String.format("Test [%s] in test case [%s] passed", testId,
-          testCase.getId()));
     }
 
     return allTestsPassed;
   }
 
-  private void invokeTestExecuteSetters() throws InternalTestException {
-    final ITestArguments setUpInfo = testCase.getTestSetUpArguments();
-    if (setUpInfo == null) {
-      return;
-    }
+  /**
+   * A thread-safe test run on the test pool. The test is claimed by whoever
+   * gets to it first: the pool, which runs it, or the test phase, which reports
+   * it as timed out if it is stopped before the pool starts the test.
+   */
+  private class ConcurrentTest implements Callable<Boolean> {
+    private final TRTestCase target;
+    private final ITestDescriptor test;
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
 
-    for (String argName : setUpInfo.keySet()) {
-      final String setterMethod = getSetterMethodName(argName);
-      final Object argValue = setUpInfo.get(argName);
+    private Future<Boolean> future = null;
 
-      logger.debug(String.format("Setting argument [%s] with [%s] to [%s]",
-          argName, setterMethod, argValue.toString()));
+    public ConcurrentTest(TRTestCase testCaseCopy, ITestDescriptor testDesc) {
+      target = testCaseCopy;
+      test = testDesc;
+    }
 
-      Method method = null;
-      try {
-        method = testCase.getClass().getMethod(setterMethod,
-            argValue.getClass());
-      } catch (NoSuchMethodException ex) {
-        throw new InternalTestException(String.format(
-            "Failed to find setup setter method [%s] in " + "test case [%s]",
-            setterMethod, testCase.getId()), ex);
+    public Boolean call() {
+      if (claim() == false) {
+        return false;
       }
-
-      final TestExecuteSetter annotation = method
-          .getAnnotation(TestExecuteSetter.class);
-      if (annotation == null) {
-        throw new InternalTestException(
-            new IllegalAccessException(String.format(
-                "Attempt made, in test case [%s], to access "
-                    + "a non-annotated test execute setter "
-                    + "method [%s]. Aborting test.", testCase.getId(),
-                setterMethod)));
+      if (hasExpired() == true) {
+        reportTimedOutTest(test);
+        return false;
       }
+      return runAndReportTest(target, test);
+    }
 
-      try {
-        method.invoke(testCase, argValue);
-      } catch (IllegalAccessException accessEx) {
-        throw new InternalTestException(String.format(
-            "Failed to invoke setup method [%s] in " + "test case [%s]",
-            setterMethod, testCase.getId()), accessEx);
-      } catch (IllegalArgumentException argEx) {
-        throw new InternalTestException(String.format(
-            "Failed to invoke setup method [%s] in " + "test case [%s]",
-            setterMethod, testCase.getId()), argEx);
-      } catch (InvocationTargetException invocEx) {
-        throw new InternalTestException(String.format(
-            "Failed to invoke setup method [%s] in " + "test case [%s]",
-            setterMethod, testCase.getId()), invocEx);
-      }
+    public boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+  }
+
+  private void cancelWatch() {
+    if (watch != null) {
+      watch.cancel();
     }
   }
 
-  private void runTest(ITestDescriptor test) throws Throwable {
+  private boolean hasExpired() {
+    return watch != null && watch.hasExpired();
+  }
+
+  private void reportTimedOutTest(ITestDescriptor test) {
     final String testId = test.getId();
-    final Map<String, Object> args = test.getArguments();
+    logger.debug(String.format(
+        "Test [%s] in test case [%s] not run, the test case timed out", testId,
+        testCase.getId()));
+    reporter.startingTest(testId);
+    reporter.errorTest(testId, new TRTestTimeoutException(testCase.getId(),
+        testCase.getTimeout()));
+  }
 
-    for (String argName : args.keySet()) {
-      final String setterMethod = getSetterMethodName(argName);
-      final Object argValue = args.get(argName);
-      Method setMethod = null;
-      try {
-        setMethod = testCase.getClass().getMethod(setterMethod,
-            argValue.getClass());
-      } catch (NoSuchMethodException ex) {
-        throw new InternalTestException(String.format(
-            "Failed to find test setter method [%s] in " + "test case [%s]",
-            setterMethod, testCase.getId()), ex);
-      }
+  private boolean runAndReportTest(TRTestCase target, ITestDescriptor test) {
+    final String testId = test.getId();
+    logger.debug(String.format("Starting [%s] test...", testId));
+    // Notify of test start
+    reporter.startingTest(testId);
 
-      final TestSetter annotation = setMethod.getAnnotation(TestSetter.class);
-      if (annotation == null) {
-        throw new InternalTestException(new IllegalAccessException(
-            String.format("Attempt made, in test [%s], to access a "
-                + "non-annotated test setter method [%s]. " + "Aborting test.",
-                testId, setterMethod)));
-      }
+    try {
+      runTest(target, test);
+    } catch (InternalTestException testEx) {
+      testEx.setPhase(TRTestPhase.TESTING);
+      reporter.errorTest(testId, testEx);
 
-      logger.debug(String.format(
-          "Setting test argument [%s] with [%s] to [%s]", argName,
-          setterMethod, argValue));
+      final String msg = String.format(
+          "%s phase failed for test case [%s]: %s", TRTestPhase.TESTING,
+          target.getId(), testEx.getMessage());
+      logger.error(msg);
 
-      try {
-        setMethod.invoke(testCase, argValue);
-      } catch (IllegalAccessException accessEx) {
-        throw new InternalTestException(String.format(
-            "Failed to invoke test setter method [%s] in " + "test case [%s]",
-            setterMethod, testCase.getId()), accessEx);
-      } catch (IllegalArgumentException argEx) {
-        throw new InternalTestException(String.format(
-            "Failed to invoke test setter method [%s] in " + "test case [%s]",
-            setterMethod, testCase.getId()), argEx);
-      } catch (InvocationTargetException invocEx) {
-        throw new InternalTestException(String.format(
-            "Failed to invoke test setter method [%s] in " + "test case [%s]",
-            setterMethod, testCase.getId()), invocEx);
+      return false;
+    } catch (Throwable ex) {
+      String infoMsg = null;
+      final String message = ex.getMessage();
+      if (message == null) {
+        infoMsg = String.format("Test [%s] in test case [%s] failed", testId,
+            target.getId());
+      } else {
+        infoMsg = String.format("Test [%s] in test case [%s] failed: %s",
+            testId, target.getId(), message);
       }
+      reporter.failedTest(testId, message);
+      logger.debug(infoMsg);
+
+      return false;
     }
+    reporter.passedTest(testId);
+
+    logger.debug(String.format("Test [%s] in test case [%s] passed", testId,
+        target.getId()));
+
+    return true;
+  }
 
-    final String testMethodName = testMethodPrefix
-        + testId.substring(0, 1).toUpperCase() + testId.substring(1);
-    Method testMethod = null;
+  private boolean isThreadSafe(ITestDescriptor test) {
     try {
-      testMethod = testCase.getClass().getMethod(testMethodName);
-    } catch (NoSuchMethodException ex) {
-      throw new InternalTestException(String.format(
-          "Failed to find test method [%s] in test case [%s]", testMethodName,
-          testCase.getId()), ex);
+      final TRTestBindings.Binding testMethod = TRTestBindings.forClass(
+          testCase.getClass()).getTestMethod(test.getId(), testCase.getId());
+      return testMethod.getAnnotation(Test.class).threadSafe();
+    } catch (InternalTestException ex) {
+      // Reported when the test is run
+      return false;
+    }
+  }
+
+  private void invokeTestExecuteSetters() throws InternalTestException {
+    final ITestArguments setUpInfo = testCase.getTestSetUpArguments();
+    if (setUpInfo == null) {
+      return;
     }
 
-    final Test testAnnotation = testMethod.getAnnotation(Test.class);
-    if (testAnnotation == null) {
-      throw new InternalTestException(new IllegalAccessException(String.format(
-          "Attempt made, in test [%s], to access a "
-              + "non-annotated test method [%s]. " + "Aborting test.", testId,
-          testMethodName)));
+    final TRTestBindings bindings = TRTestBindings.forClass(testCase
+        .getClass());
+    if (setUpInfo instanceof IPrimitiveTestArguments) {
+      // Set the arguments by position, leaving primitives unboxed
+      final IPrimitiveTestArguments args = (IPrimitiveTestArguments )setUpInfo;
+      final int noArgs = args.size();
+      for (int idx = 0; idx < noArgs; idx++) {
+        final String argName = args.getArgumentId(idx);
+        final PrimitiveKind primitiveKind = args.getPrimitiveKind(idx);
+        if (primitiveKind == null) {
+          invokeExecuteSetter(bindings, argName, args.getArgument(idx));
+        } else {
+          final TRTestBindings.Binding setter = bindings.getExecuteSetter(
+              argName, primitiveKind.getType(), testCase.getId());
+          if (logger.isDebugEnabled()) {
+            logDebugSetting("argument", argName, setter, args.getArgument(idx));
+          }
+          try {
+            setter.invoke(testCase, primitiveKind, args.getPrimitiveBits(idx));
+          } catch (Throwable thr) {
+            throw executeSetterFailure(setter, thr);
+          }
+        }
+      }
+    } else {
+      for (String argName : setUpInfo.keySet()) {
+        invokeExecuteSetter(bindings, argName, setUpInfo.get(argName));
+      }
     }
+  }
 
+  private void invokeExecuteSetter(TRTestBindings bindings, String argName,
+      Object argValue) throws InternalTestException {
+    final TRTestBindings.Binding setter = bindings.getExecuteSetter(argName,
+        argValue.getClass(), testCase.getId());
+    logDebugSetting("argument", argName, setter, argValue);
     try {
-      testMethod.invoke(testCase);
-    } catch (IllegalAccessException accessEx) {
-      throw new InternalTestException(String.format(
-          "Failed to invoke test method [%s] in test case [%s]",
-          testMethodName, testCase.getId()), accessEx);
-    } catch (IllegalArgumentException argEx) {
-      throw new InternalTestException(String.format(
-          "Failed to invoke test method [%s] in test case [%s]",
-          testMethodName, testCase.getId()), argEx);
-    } catch (InvocationTargetException invocEx) {
-      final Throwable target = invocEx.getTargetException();
-      if (target != null && target instanceof TRTestFailed) {
-        throw invocEx.getTargetException();
+      setter.invoke(testCase, argValue);
+    } catch (Throwable thr) {
+      throw executeSetterFailure(setter, thr);
+    }
+  }
+
+  private InternalTestException executeSetterFailure(
+      TRTestBindings.Binding setter, Throwable thr) {
+    return new InternalTestException(String.format(
+        "Failed to invoke setup method [%s] in " + "test case [%s]",
+        setter.getName(), testCase.getId()), new InvocationTargetException(thr));
+  }
+
+  private void runTest(TRTestCase target, ITestDescriptor test) throws Throwable {
+    final String testId = test.getId();
+    final Map<String, Object> args = test.getArguments();
+    final TRTestBindings bindings = TRTestBindings.forClass(target.getClass());
+
+    if (args instanceof IPrimitiveTestArguments) {
+      // Set the arguments by position, leaving primitives unboxed
+      final IPrimitiveTestArguments primitiveArgs = (IPrimitiveTestArguments )args;
+      final int noArgs = primitiveArgs.size();
+      for (int idx = 0; idx < noArgs; idx++) {
+        final String argName = primitiveArgs.getArgumentId(idx);
+        final PrimitiveKind primitiveKind = primitiveArgs.getPrimitiveKind(idx);
+        if (primitiveKind == null) {
+          invokeTestSetter(target, bindings, testId, argName, primitiveArgs
+              .getArgument(idx));
+        } else {
+          final TRTestBindings.Binding setter = bindings.getTestSetter(
+              argName, primitiveKind.getType(), testId, target.getId());
+          if (logger.isDebugEnabled()) {
+            logDebugSetting("test argument", argName, setter, primitiveArgs
+                .getArgument(idx));
+          }
+          try {
+            setter.invoke(target, primitiveKind, primitiveArgs
+                .getPrimitiveBits(idx));
+          } catch (Throwable thr) {
+            throw testSetterFailure(target, setter, thr);
+          }
+        }
       }
+    } else {
+      for (String argName : args.keySet()) {
+        invokeTestSetter(target, bindings, testId, argName, args.get(argName));
+      }
+    }
+
+    final TRTestBindings.Binding testMethod = bindings.getTestMethod(testId,
+        target.getId());
+    try {
+      testMethod.invoke(target);
+    } catch (TRTestFailed failed) {
+      throw failed;
+    } catch (Throwable thr) {
       throw new InternalTestException(String.format(
           "Failed to invoke test method [%s] in test case [%s]",
-          testMethodName, testCase.getId()), invocEx);
+          testMethod.getName(), target.getId()), new InvocationTargetException(
+          thr));
+    }
+  }
+
+  private void invokeTestSetter(TRTestCase target, TRTestBindings bindings,
+      String testId, String argName, Object argValue)
+      throws InternalTestException {
+    final TRTestBindings.Binding setter = bindings.getTestSetter(argName,
+        argValue.getClass(), testId, target.getId());
+    logDebugSetting("test argument", argName, setter, argValue);
+    try {
+      setter.invoke(target, argValue);
+    } catch (Throwable thr) {
+      throw testSetterFailure(target, setter, thr);
+    }
+  }
+
+  private static InternalTestException testSetterFailure(TRTestCase target,
+      TRTestBindings.Binding setter, Throwable thr) {
+    return new InternalTestException(String.format(
+        "Failed to invoke test setter method [%s] in " + "test case [%s]",
+        setter.getName(), target.getId()), new InvocationTargetException(thr));
+  }
+
+  private static void logDebugSetting(String argKind, String argName,
+      TRTestBindings.Binding setter, Object argValue) {
+    if (logger.isDebugEnabled()) {
+      logger.debug(String.format("Setting %s [%s] with [%s] to [%s]", argKind,
+          argName, setter.getName(), argValue));
     }
   }
 
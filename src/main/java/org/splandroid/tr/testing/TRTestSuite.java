@@ -19,12 +19,21 @@
 package org.splandroid.tr.testing;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
-import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.TRException;
+import org.splandroid.tr.commons.NamedThreadFactory;
 import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestCaseSource;
+import org.splandroid.tr.parsers.ParserException;
 import org.splandroid.tr.reporting.IReportFacade;
 
 public class TRTestSuite {
@@ -32,18 +41,98 @@ public class TRTestSuite {
 
   private final String id;
   private final List<ITestCaseDescriptor> testCases;
+  private final ITestCaseSource testCaseSource;
   private final ITRTestInputProvider inputProvider;
   private final ITRTestOutputManager outputMgr;
   private final IReportFacade reporter;
+  private final int jobs;
+  private final int testJobs;
+
+  private DurationHistory durationHistory = null;
 
   public TRTestSuite(String suiteId, List<ITestCaseDescriptor> testCasesList,
       ITRTestInputProvider inputProv, ITRTestOutputManager suiteOutputMgr,
       IReportFacade testReporter) {
+    this(suiteId, testCasesList, inputProv, suiteOutputMgr, testReporter, 1);
+  }
+
+  /**
+   * Build a test suite that runs up to noJobs test cases concurrently. Each
+   * concurrent worker owns its own test runner; test cases are handed to the
+   * workers from a shared queue.
+   * 
+   * @param noJobs
+   *          - The maximum number of test cases to run at once
+   */
+  public TRTestSuite(String suiteId, List<ITestCaseDescriptor> testCasesList,
+      ITRTestInputProvider inputProv, ITRTestOutputManager suiteOutputMgr,
+      IReportFacade testReporter, int noJobs) {
+    this(suiteId, testCasesList, inputProv, suiteOutputMgr, testReporter,
+        noJobs, 1);
+  }
+
+  /**
+   * Build a test suite that runs up to noJobs test cases concurrently, and
+   * that runs up to noTestJobs thread-safe tests at once across those test
+   * cases.
+   * 
+   * @param noJobs
+   *          - The maximum number of test cases to run at once
+   * @param noTestJobs
+   *          - The maximum number of thread-safe tests to run at once
+   * @see org.splandroid.tr.testing.annotations.Test#threadSafe()
+   */
+  public TRTestSuite(String suiteId, List<ITestCaseDescriptor> testCasesList,
+      ITRTestInputProvider inputProv, ITRTestOutputManager suiteOutputMgr,
+      IReportFacade testReporter, int noJobs, int noTestJobs) {
+    this(suiteId, testCasesList, null, inputProv, suiteOutputMgr,
+        testReporter, noJobs, noTestJobs);
+  }
+
+  /**
+   * Build a test suite that runs test cases as they are read from a source,
+   * rather than from a list that holds them all. The test cases are run in
+   * the order they are read, and the source is closed once the suite has run.
+   * 
+   * @param source
+   *          - The source of the suite's test cases
+   * @param noJobs
+   *          - The maximum number of test cases to run at once
+   * @param noTestJobs
+   *          - The maximum number of thread-safe tests to run at once
+   */
+  public TRTestSuite(String suiteId, ITestCaseSource source,
+      ITRTestInputProvider inputProv, ITRTestOutputManager suiteOutputMgr,
+      IReportFacade testReporter, int noJobs, int noTestJobs) {
+    this(suiteId, null, source, inputProv, suiteOutputMgr, testReporter,
+        noJobs, noTestJobs);
+  }
+
+  private TRTestSuite(String suiteId, List<ITestCaseDescriptor> testCasesList,
+      ITestCaseSource source, ITRTestInputProvider inputProv,
+      ITRTestOutputManager suiteOutputMgr, IReportFacade testReporter,
+      int noJobs, int noTestJobs) {
+    assert noJobs > 0 : "Number of jobs must be positive";
+    assert noTestJobs > 0 : "Number of test jobs must be positive";
     id = suiteId;
     testCases = testCasesList;
+    testCaseSource = source;
     inputProvider = inputProv;
     outputMgr = suiteOutputMgr;
     reporter = testReporter;
+    jobs = noJobs;
+    testJobs = noTestJobs;
+  }
+
+  /**
+   * Set the history used to run the longest test cases first when test cases
+   * are run concurrently.
+   * 
+   * @param history
+   *          - The test case duration history, or null if there is none
+   */
+  public void setDurationHistory(DurationHistory history) {
+    durationHistory = history;
   }
 
   public boolean run() {
@@ -65,72 +154,253 @@ public class TRTestSuite {
     return suitePassed;
   }
 
+  /**
+   * Run one test case on its own, outside of a run of the whole suite. This is
+   * used to run test cases that are handed out one at a time, such as by a
+   * distributed coordinator; the caller reports the suite itself.
+   * 
+   * @param testCaseDesc
+   *          - The test case to run
+   * @return true if the test case passed
+   * @throws TRException
+   *           if the test case could not be built
+   */
+  public boolean runTestCase(ITestCaseDescriptor testCaseDesc)
+      throws TRException {
+    final TRTestCase testCase;
+    try {
+      testCase = createTestCase(testCaseDesc);
+    } catch (InternalTestException ex) {
+      throw new TRException(ex.getMessage(), ex);
+    }
+
+    final TRTestRunner testRunner = new TRTestRunner(reporter);
+    testRunner.setTestCase(testCase);
+    return testRunner.run();
+  }
+
   /**
    * Run all the test cases in the suite. If all test cases pass then the suite
    * is deemed to have passed.
    */
   private boolean runSuite() throws InternalTestException {
-    final TRTestRunner testRunner = new TRTestRunner(reporter);
-    boolean allTestCasesPassed = true;
-
-    for (ITestCaseDescriptor testCaseDesc : testCases) {
-      final String klassName = testCaseDesc.getClassName();
-
-      logger.debug(String.format("[%s]: Loading class [%s]...", id, klassName));
-      Class<? extends TRTestCase> klass;
-      try {
-        klass = Class.forName(klassName).asSubclass(TRTestCase.class);
-      } catch (ClassNotFoundException notFoundEx) {
-        throw new InternalTestException(
-            String.format("Test class [%s] not found: %s", klassName,
-                notFoundEx.getMessage()));
-      } catch (ClassCastException castEx) {
-        throw new InternalTestException(String.format(
-            "Test class [%s] does not extend %s: %s", klassName,
-            TRTestCase.class.getName(), castEx.getMessage()));
+    // Thread-safe tests from all the suite's test cases share one pool
+    ExecutorService testPool = null;
+    if (testJobs > 1) {
+      testPool = Executors.newFixedThreadPool(testJobs,
+          new NamedThreadFactory(id + "-test"));
+    }
+
+    try {
+      if (testCaseSource != null) {
+        return runSuiteFromSource(testPool);
+      }
+      if (jobs > 1 && testCases.size() > 1) {
+        return runSuiteConcurrently(testPool);
+      }
+
+      final TRTestRunner testRunner = new TRTestRunner(reporter, testPool);
+      boolean allTestCasesPassed = true;
+
+      for (ITestCaseDescriptor testCaseDesc : testCases) {
+        // The test runner shall run this test case
+        testRunner.setTestCase(createTestCase(testCaseDesc));
+        final boolean passed = testRunner.run();
+        if (passed == false) {
+          allTestCasesPassed = false;
+        }
+      }
+
+      return allTestCasesPassed;
+    } finally {
+      if (testPool != null) {
+        testPool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Run the test cases in the suite as they are read from its source. Each
+   * worker reads the next test case once it has finished its current one, so
+   * only the test cases being run are held in memory.
+   */
+  private boolean runSuiteFromSource(ExecutorService testPool)
+      throws InternalTestException {
+    final TestCaseQueue queue = new TestCaseQueue() {
+      public ITestCaseDescriptor next(int worker) throws InternalTestException {
+        try {
+          return testCaseSource.next();
+        } catch (ParserException ex) {
+          throw new InternalTestException(String.format(
+              "Failed to read the next test case of test suite [%s]", id), ex);
+        }
       }
+    };
+
+    logger.debug(String.format("[%s]: Running test cases as they are read "
+        + "with %d workers", id, jobs));
 
-      // Build the test case object
-      logger.debug(String.format("[%s]: Retrieving constructor for class [%s]",
-          id, klassName));
-      Constructor<?> klassConstructor;
-      try {
-        klassConstructor = klass.getConstructor(String.class, String.class,
-            List.class, ITestArguments.class, Map.class);
-      } catch (NoSuchMethodException noSuchMethodEx) {
-        throw new InternalTestException(String.format(
-            "Expected constructor for class [%s] does " + "not exist",
-            klassName), noSuchMethodEx);
-      } catch (SecurityException secEx) {
-        throw new InternalTestException(String.format(
-            "Constructor for class [%s] does " + "not allow execution",
-            klassName), secEx);
+    try {
+      if (jobs == 1) {
+        return new Worker(0, queue, new AtomicBoolean(false), testPool).call();
       }
-      logger.debug(String.format("[%s]: Instantiating class [%s]", id,
-          klassName));
-      Object testCaseObj;
-      try {
-        testCaseObj = klassConstructor.newInstance(testCaseDesc.getId(),
-            testCaseDesc.getDescription(), testCaseDesc.getTests(),
-            testCaseDesc.getSetUpInfo(), testCaseDesc.getEnvironment());
-      } catch (Exception ex) {
-        throw new InternalTestException(String.format(
-            "Could not construct [%s] object ", klassName), ex);
+      return runWorkers(queue, jobs, testPool);
+    } finally {
+      testCaseSource.close();
+    }
+  }
+
+  /**
+   * Run the test cases in the suite on a bounded pool of workers, each taking
+   * its next test case from the scheduler.
+   */
+  private boolean runSuiteConcurrently(ExecutorService testPool)
+      throws InternalTestException {
+    final int noWorkers = Math.min(jobs, testCases.size());
+    final TRTestCaseScheduler scheduler = new TRTestCaseScheduler(id,
+        testCases, noWorkers, durationHistory);
+
+    logger.debug(String.format("[%s]: Running %d test cases with %d workers",
+        id, testCases.size(), noWorkers));
+
+    return runWorkers(new TestCaseQueue() {
+      public ITestCaseDescriptor next(int worker) {
+        return scheduler.next(worker);
       }
+    }, noWorkers, testPool);
+  }
 
-      // Set provider's data on test case object
-      final TRTestCase testCase = (TRTestCase )testCaseObj;
-      testCase.setInputDirectory(inputProvider.getComponentInputDirectory());
-      testCase.setOutputManager(outputMgr);
+  /**
+   * Run test cases on a bounded pool of workers. A worker takes its next test
+   * case from the queue once it has finished its current one. If a test case
+   * cannot be read or built the remaining workers stop taking test cases and
+   * the first such error is rethrown, as it would be when running serially.
+   */
+  private boolean runWorkers(TestCaseQueue queue, int noWorkers,
+      ExecutorService testPool) throws InternalTestException {
+    final AtomicBoolean aborted = new AtomicBoolean(false);
+    final ExecutorService pool = Executors.newFixedThreadPool(noWorkers,
+        new NamedThreadFactory(id));
+    final List<Future<Boolean>> workers = new ArrayList<Future<Boolean>>();
+    try {
+      for (int idx = 0; idx < noWorkers; idx++) {
+        workers.add(pool.submit(new Worker(idx, queue, aborted, testPool)));
+      }
 
-      // The test runner shall run this test case
-      testRunner.setTestCase(testCase);
-      final boolean passed = testRunner.run();
-      if (passed == false) {
-        allTestCasesPassed = false;
+      boolean allTestCasesPassed = true;
+      InternalTestException firstError = null;
+      for (Future<Boolean> worker : workers) {
+        try {
+          if (worker.get() == false) {
+            allTestCasesPassed = false;
+          }
+        } catch (ExecutionException ex) {
+          final Throwable cause = ex.getCause();
+          if (firstError == null) {
+            firstError = (cause instanceof InternalTestException)
+                ? (InternalTestException )cause
+                : new InternalTestException(cause);
+          }
+        } catch (InterruptedException ex) {
+          aborted.set(true);
+          Thread.currentThread().interrupt();
+          throw new InternalTestException(String.format(
+              "Interrupted waiting for test suite [%s]", id), ex);
+        }
+      }
+      if (firstError != null) {
+        throw firstError;
       }
+
+      return allTestCasesPassed;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Build the test case object described by a test case descriptor, and set
+   * the provider's data on it.
+   */
+  private TRTestCase createTestCase(ITestCaseDescriptor testCaseDesc)
+      throws InternalTestException {
+    final String klassName = testCaseDesc.getClassName();
+
+    // The class is only loaded and its constructor looked up once
+    logger.debug(String.format("[%s]: Loading class [%s]...", id, klassName));
+    final Constructor<?> klassConstructor = TRTestBindings.forClassName(
+        klassName).getConstructor();
+    logger.debug(String.format("[%s]: Instantiating class [%s]", id,
+        klassName));
+    Object testCaseObj;
+    try {
+      testCaseObj = klassConstructor.newInstance(testCaseDesc.getId(),
+          testCaseDesc.getDescription(), testCaseDesc.getTests(),
+          testCaseDesc.getSetUpInfo(), testCaseDesc.getEnvironment());
+    } catch (Exception ex) {
+      throw new InternalTestException(String.format(
+          "Could not construct [%s] object ", klassName), ex);
+    }
+
+    // Set provider's data on test case object
+    final TRTestCase testCase = (TRTestCase )testCaseObj;
+    testCase.setInputDirectory(inputProvider.getComponentInputDirectory());
+    testCase.setOutputManager(outputMgr);
+    testCase.setTimeout(testCaseDesc.getTimeout());
+
+    return testCase;
+  }
+
+  /**
+   * Hands out a suite's test cases to its workers.
+   */
+  private interface TestCaseQueue {
+    /**
+     * @return The worker's next test case, or null if there are no more
+     */
+    ITestCaseDescriptor next(int worker) throws InternalTestException;
+  }
+
+  /**
+   * Runs the test cases the queue gives it with its own test runner.
+   */
+  private class Worker implements Callable<Boolean> {
+    private final int index;
+    private final TestCaseQueue queue;
+    private final AtomicBoolean aborted;
+    private final ExecutorService testPool;
+
+    public Worker(int workerIdx, TestCaseQueue testCaseQueue,
+        AtomicBoolean abortFlag, ExecutorService threadSafeTestPool) {
+      index = workerIdx;
+      queue = testCaseQueue;
+      aborted = abortFlag;
+      testPool = threadSafeTestPool;
     }
 
-    return allTestCasesPassed;
+    public Boolean call() throws InternalTestException {
+      final TRTestRunner testRunner = new TRTestRunner(reporter, testPool);
+      boolean allTestCasesPassed = true;
+
+      while (aborted.get() == false) {
+        final TRTestCase testCase;
+        try {
+          final ITestCaseDescriptor testCaseDesc = queue.next(index);
+          if (testCaseDesc == null) {
+            break;
+          }
+          testCase = createTestCase(testCaseDesc);
+        } catch (InternalTestException ex) {
+          aborted.set(true);
+          throw ex;
+        }
+        testRunner.setTestCase(testCase);
+        if (testRunner.run() == false) {
+          allTestCasesPassed = false;
+        }
+      }
+
+      return allTestCasesPassed;
+    }
   }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.splandroid.tr.TRException;
+import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.parsers.PrimitiveKind;
+
+/**
+ * Checks a test suite before it is run: that each test case's class can be
+ * loaded and built, that every argument has an annotated setter of its kind,
+ * and that every test has an annotated test method. The bindings it resolves
+ * are kept, so the runner does not look them up again.
+ */
+public class TRTestSuiteValidator {
+  private final static Logger logger = Logger
+      .getLogger(TRTestSuiteValidator.class);
+
+  private TRTestSuiteValidator() {
+  }
+
+  /**
+   * Validate a test suite's test cases.
+   * 
+   * @param suiteId
+   *          - The test suite's ID
+   * @param testCases
+   *          - The test cases to be run
+   * @throws TRException
+   *           listing every problem found if any test case is invalid
+   */
+  public static void validate(String suiteId,
+      List<ITestCaseDescriptor> testCases) throws TRException {
+    final List<String> problems = new ArrayList<String>();
+
+    for (ITestCaseDescriptor testCase : testCases) {
+      final String testCaseId = testCase.getId();
+      try {
+        validateTestCase(testCase);
+      } catch (InternalTestException ex) {
+        final String problem = String.format("Test case [%s]: %s",
+            testCaseId, ex.getMessage());
+        logger.error(String.format("[%s]: %s", suiteId, problem));
+        problems.add(problem);
+      }
+    }
+
+    if (problems.size() > 0) {
+      final StringBuilder msg = new StringBuilder(String.format(
+          "Test suite [%s] has %d invalid test cases:", suiteId,
+          problems.size()));
+      for (String problem : problems) {
+        msg.append("\n  ").append(problem);
+      }
+      throw new TRException(msg.toString());
+    }
+
+    logger.debug(String.format("[%s]: Validated %d test cases", suiteId,
+        testCases.size()));
+  }
+
+  private static void validateTestCase(ITestCaseDescriptor testCase)
+      throws InternalTestException {
+    final String testCaseId = testCase.getId();
+
+    TRTestBindings bindings;
+    try {
+      bindings = TRTestBindings.forClassName(testCase.getClassName());
+      bindings.getConstructor();
+    } catch (InternalTestException ex) {
+      ex.setPhase(TRTestPhase.SETUP);
+      throw ex;
+    }
+
+    final ITestArguments setUpInfo = testCase.getSetUpInfo();
+    if (setUpInfo != null) {
+      try {
+        for (String argName : setUpInfo.keySet()) {
+          bindings.getExecuteSetter(argName, getKind(setUpInfo, argName),
+              testCaseId);
+        }
+      } catch (InternalTestException ex) {
+        ex.setPhase(TRTestPhase.PRE_EXEC_SETUP);
+        throw ex;
+      }
+    }
+
+    try {
+      for (ITestDescriptor test : testCase.getTests()) {
+        final String testId = test.getId();
+        final ITestArguments args = test.getArguments();
+        for (String argName : args.keySet()) {
+          bindings.getTestSetter(argName, getKind(args, argName), testId,
+              testCaseId);
+        }
+        bindings.getTestMethod(testId, testCaseId);
+      }
+    } catch (InternalTestException ex) {
+      ex.setPhase(TRTestPhase.TESTING);
+      throw ex;
+    }
+  }
+
+  /**
+   * Get the kind a setter must take for an argument: its primitive type, or
+   * the class of its value.
+   */
+  private static Class<?> getKind(Map<String, Object> args, String argName) {
+    final PrimitiveKind primitiveKind = TRTestBindings.getPrimitiveKind(args,
+        argName);
+    if (primitiveKind != null) {
+      return primitiveKind.getType();
+    }
+    return args.get(argName).getClass();
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+/**
+ * The cause reported for a test case that ran for longer than its timeout and
+ * was stopped by the watchdog.
+ */
+@SuppressWarnings(value = { "serial" })
+public class TRTestTimeoutException extends Exception {
+  private final long timeout;
+
+  public TRTestTimeoutException(String testCaseId, long timeoutms) {
+    super(String.format("Test case [%s] timed out after %d ms", testCaseId,
+        timeoutms));
+    timeout = timeoutms;
+  }
+
+  public TRTestTimeoutException(String testCaseId, long timeoutms,
+      Throwable cause) {
+    this(testCaseId, timeoutms);
+    initCause(cause);
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+}
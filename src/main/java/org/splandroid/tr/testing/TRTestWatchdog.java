@@ -0,0 +1,140 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Stops test cases that run for longer than their timeout. One scheduler thread
+ * watches all running test cases; when a test case's timeout expires the thread
+ * running it is interrupted and the test case is asked to kill anything it has
+ * started.
+ */
+final class TRTestWatchdog {
+  private static Logger logger = Logger.getLogger(TRTestWatchdog.class);
+
+  private static final ScheduledExecutorService scheduler = Executors
+      .newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "TRTestWatchdog");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  private TRTestWatchdog() {
+  }
+
+  /**
+   * Start watching a test case.
+   * 
+   * @param testThread
+   *          - The thread running the test case
+   * @return The watch, or null if the test case has no timeout
+   */
+  static Watch watch(TRTestCase testCase, Thread testThread) {
+    final long timeout = testCase.getTimeout();
+    if (timeout <= 0) {
+      return null;
+    }
+
+    final Watch watch = new Watch(testCase, testThread);
+    watch.future = scheduler.schedule(watch, timeout, TimeUnit.MILLISECONDS);
+    return watch;
+  }
+
+  /**
+   * A single test case's timeout. Once cancelled, or once the timeout has
+   * expired, it does nothing more.
+   */
+  static final class Watch implements Runnable {
+    private final TRTestCase testCase;
+    private final Thread thread;
+
+    private ScheduledFuture<?> future = null;
+    private boolean expired = false;
+    private boolean cancelled = false;
+
+    private Watch(TRTestCase watchedTestCase, Thread testThread) {
+      testCase = watchedTestCase;
+      thread = testThread;
+    }
+
+    public void run() {
+      synchronized (this) {
+        if (cancelled == true) {
+          return;
+        }
+        expired = true;
+        logger.error(String.format(
+            "Test case [%s] timed out after %d ms, stopping it",
+            testCase.getId(), testCase.getTimeout()));
+        thread.interrupt();
+      }
+
+      try {
+        testCase.onTimeout();
+      } catch (Throwable thr) {
+        logger.error(String.format("Failed to stop test case [%s]: %s",
+            testCase.getId(), thr.getMessage()), thr);
+      }
+    }
+
+    /**
+     * Has the test case's timeout expired?
+     */
+    synchronized boolean hasExpired() {
+      return expired;
+    }
+
+    /**
+     * Mark the timeout as expired without interrupting the test case, for a
+     * test case that is given up on before the watchdog has run.
+     */
+    synchronized void expire() {
+      expired = true;
+    }
+
+    /**
+     * Stop watching the test case. Must be called by the thread running the
+     * test case; if the timeout expired the thread's interrupt is cleared so
+     * that it does not leak into tearing the test case down.
+     * 
+     * @return true if the timeout expired
+     */
+    boolean cancel() {
+      final boolean timedOut;
+      synchronized (this) {
+        cancelled = true;
+        timedOut = expired;
+      }
+      future.cancel(false);
+      if (timedOut == true) {
+        Thread.interrupted();
+      }
+      return timedOut;
+    }
+  }
+}
@@ -26,4 +26,11 @@ import java.lang.annotation.Target;
 @Retention(value = RetentionPolicy.RUNTIME)
 @Target(value = ElementType.METHOD)
 public @interface Test {
+  /**
+   * A thread-safe test only reads the results of the test case's execute phase.
+   * Thread-safe tests may be run concurrently with the test case's other tests,
+   * each on its own copy of the test case so that test setter fields are not
+   * shared.
+   */
+  boolean threadSafe() default false;
 }
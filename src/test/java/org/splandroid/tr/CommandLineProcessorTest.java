@@ -0,0 +1,64 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+public class CommandLineProcessorTest extends TestCase {
+  private CommandLineProcessor cliProcessor;
+
+  public void setUp() {
+    cliProcessor = new CommandLineProcessor("TR", "TEST-INF", "TEST-RES",
+        "tr.prop", "tr.log");
+  }
+
+  /**
+   * Tests that a component named like the merge option is tested rather than
+   * taken as a request to merge results.
+   */
+  public void testComponentNamedMerge() throws TRException {
+    assertFalse(cliProcessor.process(new String[] { "merge", "other" }));
+
+    assertFalse(cliProcessor.isMergeCommand());
+    final Collection<TestSuiteInfo> suites = cliProcessor.getTestSuites();
+    assertEquals(2, suites.size());
+    final Iterator<TestSuiteInfo> it = suites.iterator();
+    assertEquals("merge", it.next().getComponent());
+    assertEquals("other", it.next().getComponent());
+  }
+
+  /**
+   * Tests that the merge option takes every argument as a results input.
+   */
+  public void testMergeOption() throws TRException {
+    assertFalse(cliProcessor.process(new String[] { "-m", "shard1",
+        "shard2" }));
+
+    assertTrue(cliProcessor.isMergeCommand());
+    final Collection<File> inputs = cliProcessor.getMergeInputs();
+    assertEquals(2, inputs.size());
+    final Iterator<File> it = inputs.iterator();
+    assertEquals(new File("shard1"), it.next());
+    assertEquals(new File("shard2"), it.next());
+  }
+}
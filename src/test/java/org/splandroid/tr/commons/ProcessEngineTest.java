@@ -0,0 +1,160 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.commons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that processes started through the process engine are watched, and
+ * their streams pumped, on the engine's fixed number of threads.
+ */
+public class ProcessEngineTest extends TestCase {
+  private static final String UNIX_SHELL = "/bin/sh";
+  private static final File UNIX_WD = new File("/");
+
+  private static boolean isWindows = false;
+
+  static {
+    isWindows = (System.getProperty("os.name").toUpperCase().indexOf("WINDOWS") >= 0);
+  }
+
+  private ByteArrayOutputStream out;
+  private ByteArrayOutputStream err;
+
+  @Override
+  protected void setUp() {
+    out = new ByteArrayOutputStream();
+    err = new ByteArrayOutputStream();
+  }
+
+  private KillableProcess startShell(String script, ByteArrayOutputStream out,
+      ByteArrayOutputStream err) {
+    final KillableProcess proc = new KillableProcess(UNIX_SHELL, UNIX_WD,
+        new PooledPumpStreamHandler(out, err, null));
+    proc.addCommandLine("-c");
+    proc.addCommandLine(script);
+    proc.start();
+    return proc;
+  }
+
+  /**
+   * Tests that a process's exit is found along with its return value.
+   */
+  public void testExit() throws InterruptedException {
+    if (isWindows) {
+      return;
+    }
+
+    final ProcessStatus status = startShell("exit 3", out, err).waitFor();
+    assertNull(status.getException());
+    assertEquals(3, status.getReturnValue());
+  }
+
+  /**
+   * Tests that output longer than a pump's buffer is copied whole.
+   */
+  public void testLongOutput() throws InterruptedException {
+    if (isWindows) {
+      return;
+    }
+
+    final int noBytes = 100000;
+    final ProcessStatus status = startShell(String.format(
+        "head -c %d /dev/zero", noBytes), out, err).waitFor();
+    assertEquals(0, status.getReturnValue());
+    assertEquals(noBytes, out.size());
+    assertEquals(0, err.size());
+  }
+
+  /**
+   * Tests that standard error is copied apart from standard output.
+   */
+  public void testErrorOutput() throws InterruptedException {
+    if (isWindows) {
+      return;
+    }
+
+    final ProcessStatus status = startShell("echo out; echo err >&2", out, err)
+        .waitFor();
+    assertEquals(0, status.getReturnValue());
+    assertEquals("out\n", out.toString());
+    assertEquals("err\n", err.toString());
+  }
+
+  /**
+   * Tests that a running process can be killed, and is then found to have
+   * finished.
+   */
+  public void testKill() throws InterruptedException {
+    if (isWindows) {
+      return;
+    }
+
+    final KillableProcess proc = startShell("exec sleep 60", out, err);
+    assertTrue(proc.isRunning());
+
+    final long started = System.currentTimeMillis();
+    proc.kill();
+    final ProcessStatus status = proc.waitFor();
+    assertTrue(System.currentTimeMillis() - started < 10000);
+    assertFalse(proc.isRunning());
+    assertTrue(status.getReturnValue() != 0);
+  }
+
+  /**
+   * Tests that many short processes running at once all finish with their
+   * output, without the engine using more threads than it has.
+   */
+  public void testManyProcesses() throws InterruptedException {
+    if (isWindows) {
+      return;
+    }
+
+    final int noProcesses = 50;
+    final List<KillableProcess> procs = new ArrayList<KillableProcess>();
+    final List<ByteArrayOutputStream> outs = new ArrayList<ByteArrayOutputStream>();
+    for (int idx = 0; idx < noProcesses; idx++) {
+      final ByteArrayOutputStream procOut = new ByteArrayOutputStream();
+      outs.add(procOut);
+      procs.add(startShell(String.format("echo %d", idx), procOut,
+          new ByteArrayOutputStream()));
+    }
+
+    for (int idx = 0; idx < noProcesses; idx++) {
+      final ProcessStatus status = procs.get(idx).waitFor();
+      assertEquals(0, status.getReturnValue());
+      assertEquals(String.format("%d\n", idx), outs.get(idx).toString());
+    }
+
+    int noEngineThreads = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("ProcessEngine-")) {
+        noEngineThreads++;
+      }
+    }
+    assertTrue(noEngineThreads > 0);
+    assertTrue(noEngineThreads <= Math.max(2, Runtime.getRuntime()
+        .availableProcessors()));
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.splandroid.tr.MockeryLoggingTestCase;
+import org.splandroid.tr.events.TRTestEvent;
+import org.splandroid.tr.events.TRTestEventKind;
+import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.reporting.IReportFacade;
+
+public class CoordinatorTest extends MockeryLoggingTestCase {
+  private static final String COMPONENT = "component";
+  private static final String TEST_CLASS = "org.splandroid.tr.testing.testclasses.TRTestSuiteTestClass";
+
+  private File workDir;
+
+  public void setUp() {
+    super.setUp();
+    try {
+      workDir = File.createTempFile("coordinator", "");
+    } catch (IOException ex) {
+      fail(ex.getMessage());
+    }
+    workDir.delete();
+    workDir.mkdirs();
+  }
+
+  public void tearDown() {
+    super.tearDown();
+    try {
+      FileUtils.deleteDirectory(workDir);
+    } catch (IOException ex) {
+      logger.warn(ex.getMessage());
+    }
+  }
+
+  /**
+   * Tests that two workers on the local host share a suite's test cases, and
+   * that their test events are reported by the coordinator.
+   */
+  public void testCoordinatorAndWorkers() throws Exception {
+    final int noTestCases = 8;
+    final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>();
+    for (int idx = 0; idx < noTestCases; idx++) {
+      testCases.add(new StubTestCaseDescriptor("testCase" + idx));
+    }
+
+    final List<String> calls = Collections
+        .synchronizedList(new ArrayList<String>());
+    final IReportFacade reporter = createReporter(calls);
+
+    final Coordinator coordinator = new Coordinator(new InetSocketAddress(
+        InetAddress.getLoopbackAddress(), 0));
+    coordinator.addSuite(COMPONENT, testCases, reporter);
+    final InetSocketAddress address = new InetSocketAddress(
+        InetAddress.getLoopbackAddress(), coordinator.getPort());
+
+    final AtomicInteger testCasesRun = new AtomicInteger(0);
+    final List<Thread> workers = new ArrayList<Thread>();
+    for (int idx = 0; idx < 2; idx++) {
+      final Worker worker = new Worker(address, new File(workDir, "TEST-INF")
+          .getPath(), new File(workDir, "TEST-RES").getPath(), new Date());
+      final Thread workerThread = new Thread(new Runnable() {
+        public void run() {
+          try {
+            testCasesRun.addAndGet(worker.run());
+          } catch (IOException ex) {
+            logger.error(ex.getMessage());
+          }
+        }
+      });
+      workerThread.start();
+      workers.add(workerThread);
+    }
+
+    final Map<String, Boolean> results = coordinator.run();
+    for (Thread workerThread : workers) {
+      workerThread.join(10000);
+    }
+
+    assertTrue(results.get(COMPONENT) == true);
+    assertEquals(noTestCases, testCasesRun.get());
+    assertEquals(noTestCases, Collections.frequency(calls, "startingTestCase"));
+    assertEquals(noTestCases, Collections.frequency(calls, "passedTestCase"));
+    assertEquals(2 * noTestCases, Collections.frequency(calls, "startingTest"));
+    assertEquals(2 * noTestCases, Collections.frequency(calls, "passedTest"));
+    assertEquals("startingTestSuite", calls.get(0));
+    assertEquals("passedTestSuite", calls.get(calls.size() - 1));
+  }
+
+  /**
+   * Tests that a test case whose workers are all lost is handed out a limited
+   * number of times, that each lost attempt is finished with an error and that
+   * the test case is then left as an error.
+   */
+  public void testLostWorkers() throws Exception {
+    final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>();
+    testCases.add(new StubTestCaseDescriptor("testCase"));
+    final List<String> calls = Collections
+        .synchronizedList(new ArrayList<String>());
+
+    final Coordinator coordinator = new Coordinator(new InetSocketAddress(
+        InetAddress.getLoopbackAddress(), 0));
+    coordinator.addSuite(COMPONENT, testCases, createReporter(calls));
+    final int port = coordinator.getPort();
+
+    // A worker that takes the test case and then disconnects, until it is
+    // no longer handed out
+    final AtomicInteger attempts = new AtomicInteger(0);
+    final Thread workerThread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          while (true) {
+            final Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                port);
+            try {
+              final DataOutputStream out = new DataOutputStream(socket
+                  .getOutputStream());
+              out.writeByte(Protocol.REQUEST);
+              out.flush();
+              final DataInputStream in = new DataInputStream(socket
+                  .getInputStream());
+              if (in.readByte() != Protocol.TEST_CASE) {
+                return;
+              }
+              attempts.incrementAndGet();
+              Protocol.writeEvent(out, new TRTestEvent(
+                  TRTestEventKind.TEST_CASE_STARTED, null, "testCase", null,
+                  false));
+              Protocol.writeEvent(out, new TRTestEvent(
+                  TRTestEventKind.TEST_STARTED, null, "one", null, false));
+              out.flush();
+            } finally {
+              socket.close();
+            }
+          }
+        } catch (IOException ex) {
+          // The coordinator has finished
+        }
+      }
+    });
+    workerThread.start();
+
+    final Map<String, Boolean> results = coordinator.run();
+    workerThread.join(10000);
+
+    assertTrue(results.get(COMPONENT) == false);
+    assertEquals(3, attempts.get());
+    assertEquals(3, Collections.frequency(calls, "startingTestCase"));
+    assertEquals(3, Collections.frequency(calls, "errorTestCase"));
+    assertEquals(3, Collections.frequency(calls, "errorTest"));
+    assertEquals("errorTestSuite", calls.get(calls.size() - 1));
+  }
+
+  /**
+   * Build a reporter that records the names of the methods called on it.
+   */
+  private static IReportFacade createReporter(final List<String> calls) {
+    return (IReportFacade )Proxy.newProxyInstance(IReportFacade.class
+        .getClassLoader(), new Class<?>[] { IReportFacade.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            calls.add(method.getName());
+            return null;
+          }
+        });
+  }
+
+  @SuppressWarnings(value = { "serial" })
+  private static class StubTestArguments extends HashMap<String, Object>
+      implements ITestArguments {
+  }
+
+  private static class StubTestDescriptor implements ITestDescriptor {
+    private final String id;
+
+    public StubTestDescriptor(String testId) {
+      id = testId;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public ITestArguments getArguments() {
+      return new StubTestArguments();
+    }
+  }
+
+  private static class StubTestCaseDescriptor implements ITestCaseDescriptor {
+    private final String id;
+
+    public StubTestCaseDescriptor(String testCaseId) {
+      id = testCaseId;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getDescription() {
+      return id + " description";
+    }
+
+    public String getClassName() {
+      return TEST_CLASS;
+    }
+
+    public List<ITestDescriptor> getTests() {
+      final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+      tests.add(new StubTestDescriptor("one"));
+      tests.add(new StubTestDescriptor("two"));
+      return tests;
+    }
+
+    public ITestArguments getSetUpInfo() {
+      return null;
+    }
+
+    public Map<String, String> getEnvironment() {
+      return null;
+    }
+
+    public long getTimeout() {
+      return 0;
+    }
+  }
+}
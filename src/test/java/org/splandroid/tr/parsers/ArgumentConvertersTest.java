@@ -0,0 +1,80 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+
+import org.splandroid.tr.TRException;
+import org.splandroid.tr.extensions.simpledemo.IntegerPair;
+import org.splandroid.tr.extensions.simpledemo.IntegerPairConverter;
+
+public class ArgumentConvertersTest extends TestCase {
+  /**
+   * Tests that the java.lang kinds are converted as their String constructors
+   * would build them.
+   */
+  public void testBuiltInConverters() throws Exception {
+    assertEquals(Integer.valueOf(-42),
+        ArgumentConverters.getConverter(Integer.class.getName()).convert("-42"));
+    assertEquals(Double.valueOf(3.141), ArgumentConverters.getConverter(
+        Double.class.getName()).convert("3.141"));
+    assertEquals(Boolean.TRUE, ArgumentConverters.getConverter(
+        Boolean.class.getName()).convert("TRUE"));
+    assertEquals("value", ArgumentConverters.getConverter(
+        String.class.getName()).convert("value"));
+  }
+
+  /**
+   * Tests that converters listed as services are found.
+   */
+  public void testServiceConverter() throws Exception {
+    final IArgumentConverter converter = ArgumentConverters
+        .getConverter(IntegerPair.class.getName());
+    assertTrue(converter instanceof IntegerPairConverter);
+    assertEquals(new IntegerPair(1, -2), converter.convert("1:-2"));
+  }
+
+  /**
+   * Tests that other kinds are built with their String constructor, and that
+   * kinds that cannot be built are rejected.
+   */
+  public void testStringConstructorConverter() throws Exception {
+    final IArgumentConverter converter = ArgumentConverters
+        .getConverter(BigDecimal.class.getName());
+    assertEquals(new BigDecimal("1.5"), converter.convert("1.5"));
+    assertSame(converter,
+        ArgumentConverters.getConverter(BigDecimal.class.getName()));
+
+    try {
+      converter.convert("not a number");
+      fail("Invalid value converted");
+    } catch (NumberFormatException ex) {
+      // Expected
+    }
+
+    try {
+      ArgumentConverters.getConverter("no.such.Kind");
+      fail("Missing kind converted");
+    } catch (TRException ex) {
+      // Expected
+    }
+  }
+}
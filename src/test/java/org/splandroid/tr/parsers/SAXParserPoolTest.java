@@ -0,0 +1,79 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParser;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class SAXParserPoolTest extends TestCase {
+  private static class CountingHandler extends DefaultHandler {
+    private int elements = 0;
+
+    @Override
+    public void startElement(String uri, String localName, String qName,
+        Attributes attrs) {
+      elements++;
+    }
+  }
+
+  private static int countElements(SAXParser parser, String xml)
+      throws Exception {
+    final CountingHandler handler = new CountingHandler();
+    parser.parse(new ByteArrayInputStream(xml.getBytes()), handler);
+    return handler.elements;
+  }
+
+  /**
+   * Tests that a released parser is handed out again and can still parse,
+   * even after a failed parse.
+   */
+  public void testReuse() throws Exception {
+    final SAXParser parser = SAXParserPool.acquire();
+    try {
+      countElements(parser, "<a><b>");
+      fail("Bad XML was parsed");
+    } catch (Exception ex) {
+      // Expected
+    }
+    SAXParserPool.release(parser);
+
+    // Other parsers may have been pooled before this one
+    final List<SAXParser> acquired = new ArrayList<SAXParser>();
+    SAXParser reused = null;
+    while (reused != parser && acquired.size() < 100) {
+      reused = SAXParserPool.acquire();
+      assertFalse(acquired.contains(reused));
+      acquired.add(reused);
+    }
+    assertSame(parser, reused);
+    assertEquals(3, countElements(reused, "<a><b/><c/></a>"));
+
+    for (SAXParser pooled : acquired) {
+      SAXParserPool.release(pooled);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TestCasePipelineTest extends TestCase {
+  /**
+   * A source of numbered test cases that fails after a given number, if any,
+   * and counts how many have been read.
+   */
+  private static class CountingSource implements ITestCaseSource {
+    private final int noTestCases;
+    private final boolean fail;
+    private final AtomicInteger read = new AtomicInteger(0);
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    public CountingSource(int count, boolean failAtEnd) {
+      noTestCases = count;
+      fail = failAtEnd;
+    }
+
+    public ITestCaseDescriptor next() throws ParserException {
+      final int idx = read.get();
+      if (idx == noTestCases) {
+        if (fail == true) {
+          throw new ParserException("Bad test case");
+        }
+        return null;
+      }
+      read.incrementAndGet();
+      return new Descriptor(Integer.toString(idx));
+    }
+
+    public void close() {
+      closed.countDown();
+    }
+  }
+
+  private static class Descriptor implements ITestCaseDescriptor {
+    private final String id;
+
+    public Descriptor(String testCaseId) {
+      id = testCaseId;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getDescription() {
+      return id;
+    }
+
+    public String getClassName() {
+      return null;
+    }
+
+    public List<ITestDescriptor> getTests() {
+      return null;
+    }
+
+    public ITestArguments getSetUpInfo() {
+      return null;
+    }
+
+    public Map<String, String> getEnvironment() {
+      return null;
+    }
+
+    public long getTimeout() {
+      return 0;
+    }
+  }
+
+  private static void waitForReads(CountingSource source, int count)
+      throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (source.read.get() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+  }
+
+  /**
+   * Tests that test cases are handed out in order, and that the reader stops
+   * once the queue is full.
+   */
+  public void testOrderAndBackpressure() throws Exception {
+    final CountingSource source = new CountingSource(100, false);
+    final ITestCaseSource pipeline = new TestCasePipeline("pipeline", source, 4);
+
+    // The queue holds 4 and the reader waits with a 5th
+    waitForReads(source, 5);
+    Thread.sleep(50);
+    assertEquals(5, source.read.get());
+
+    for (int idx = 0; idx < 100; idx++) {
+      assertEquals(Integer.toString(idx), pipeline.next().getId());
+    }
+    assertNull(pipeline.next());
+    assertNull(pipeline.next());
+    assertTrue(source.closed.await(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Tests that an error reading the source is reported after the test cases
+   * read before it.
+   */
+  public void testError() throws Exception {
+    final ITestCaseSource pipeline = new TestCasePipeline("pipeline",
+        new CountingSource(2, true), 4);
+
+    assertEquals("0", pipeline.next().getId());
+    assertEquals("1", pipeline.next().getId());
+    try {
+      pipeline.next();
+      fail("Error was not reported");
+    } catch (ParserException ex) {
+      assertEquals("Bad test case", ex.getMessage());
+    }
+    assertNull(pipeline.next());
+  }
+
+  /**
+   * Tests that closing the pipeline stops the reader and closes the source.
+   */
+  public void testClose() throws Exception {
+    final CountingSource source = new CountingSource(100, false);
+    final ITestCaseSource pipeline = new TestCasePipeline("pipeline", source, 2);
+
+    assertEquals("0", pipeline.next().getId());
+    pipeline.close();
+    assertTrue(source.closed.await(5, TimeUnit.SECONDS));
+    assertTrue(source.read.get() < 100);
+  }
+}
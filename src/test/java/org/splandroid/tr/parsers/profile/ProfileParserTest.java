@@ -20,6 +20,7 @@ package org.splandroid.tr.parsers.profile;
 
 import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -28,7 +29,6 @@ import org.jmock.Expectations;
 import org.splandroid.tr.MockeryLoggingTestCase;
 import org.splandroid.tr.parsers.IArgumentSymbol;
 import org.splandroid.tr.parsers.IEnvironmentSymbol;
-import org.splandroid.tr.parsers.IParser;
 import org.splandroid.tr.parsers.ISymbol;
 import org.splandroid.tr.parsers.ISymbolMap;
 import org.splandroid.tr.parsers.ITestSymbol;
@@ -44,7 +44,7 @@ import org.splandroid.tr.parsers.profile.xml.InvalidXML;
 import org.splandroid.tr.parsers.profile.xml.OneCapabilityOneTestXML;
 
 public class ProfileParserTest extends MockeryLoggingTestCase {
-  private IParser parser;
+  private ProfileParser parser;
 
   public static List<IEnvironmentSymbol> getProfileEnvironment(
       String[] varNames, String[] varValues) {
@@ -174,6 +174,9 @@ public class ProfileParserTest extends MockeryLoggingTestCase {
     } catch (ParserException ex) {
       assertTrue(false);
     }
+    assertEquals(new HashSet<String>(Arrays
+        .asList(EnvironmentTestXML.existVarNames)), parser
+        .getExpectedEnvironmentNames());
 
     context.assertIsSatisfied();
   }
@@ -225,4 +228,29 @@ public class ProfileParserTest extends MockeryLoggingTestCase {
 
     assertTrue(false);
   }
+
+  /**
+   * Test that a parsed capability cannot be changed.
+   */
+  public void testParsedCapabilityIsFrozen() throws ParserException {
+    final ISymbolMap symbolTable = new ProfileParserTestSymbolMap();
+    final byte[] xmlBytes = OneCapabilityOneTestXML.profileXML.getBytes();
+    parser.setSymbolTable(symbolTable).parse(new ByteArrayInputStream(xmlBytes));
+
+    final ISymbol capSym = symbolTable.get(OneCapabilityOneTestXML.capabilityId);
+    try {
+      capSym.addSymbol(new TestSymbol("another"), ITestSymbol.CONTEXT);
+      fail("Parsed capability was changed");
+    } catch (ParserException ex) {
+      // Expected
+    }
+    try {
+      capSym.getSymbolsInContext(ITestSymbol.CONTEXT).clear();
+      fail("Parsed capability's tests were changed");
+    } catch (UnsupportedOperationException ex) {
+      // Expected
+    }
+    assertNull(capSym.getSymbol("another", ITestSymbol.CONTEXT));
+    assertTrue(capSym.getSymbolsInContext("none").isEmpty());
+  }
 }
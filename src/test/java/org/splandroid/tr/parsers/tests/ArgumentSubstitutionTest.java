@@ -162,4 +162,22 @@ public class ArgumentSubstitutionTest extends TestCase {
     assertTrue(replacement != null);
     assertTrue(target.equals(replacement));
   }
+
+  public void testRepeatedSubstitutionUsesCurrentMaps() throws TRException {
+    final String value = String.format("[%1$s%2$s%1$s]", anchor, intArgName);
+    map.put(intArgName, intArgValue);
+    assertEquals("[42]", subs.addMap(map).substitute(value));
+
+    map.put(intArgName, longArgValue);
+    assertEquals("[667]", subs.substitute(value));
+
+    subs.clearMaps();
+    try {
+      subs.substitute(value);
+      fail("Missing argument was substituted");
+    } catch (TRException ex) {
+      assertEquals(String.format("%s [%s] not found", kind, intArgName),
+          ex.getMessage());
+    }
+  }
 }
@@ -74,4 +74,22 @@ public class EnvironmentSubstitutionTest extends TestCase {
     assertTrue(replacement != null);
     assertTrue(target.equals(replacement));
   }
+
+  public void testNoTokens() throws TRException {
+    populateMap();
+    subs.addMap(env);
+    final String plain = "no variables here";
+    final String anchored = String.format("only %s one anchor", anchor);
+    assertSame(plain, subs.substitute(plain));
+    assertFalse(subs.isRemembered(plain));
+    assertSame(anchored, subs.substitute(anchored));
+    assertTrue(subs.isRemembered(anchored));
+    assertSame(anchored, subs.substitute(anchored));
+
+    // A remembered string still looks its tokens up again
+    final String value = String.format("%1$s%2$s%1$s", anchor, VAR_TWO);
+    assertEquals(VALUE_TWO, subs.substitute(value));
+    env.put(VAR_TWO, VALUE_ONE);
+    assertEquals(VALUE_ONE, subs.substitute(value));
+  }
 }
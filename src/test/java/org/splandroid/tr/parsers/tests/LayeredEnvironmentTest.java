@@ -0,0 +1,100 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class LayeredEnvironmentTest extends TestCase {
+  private Map<String, String> profileEnvironment;
+
+  public void setUp() {
+    final Map<String, String> variables = new HashMap<String, String>();
+    variables.put("HOME", "/profile/home");
+    variables.put("LANG", "C");
+    profileEnvironment = Collections.unmodifiableMap(variables);
+  }
+
+  /**
+   * Tests that an environment with no variables of its own is the profile's.
+   */
+  public void testProfileOnly() {
+    final Map<String, String> environment = new LayeredEnvironment(
+        profileEnvironment);
+
+    assertEquals(profileEnvironment, environment);
+    assertEquals(2, environment.size());
+    assertEquals("C", environment.get("LANG"));
+    assertNull(environment.get("PATH"));
+  }
+
+  /**
+   * Tests that a test case's variables override the profile's without
+   * changing them for other test cases.
+   */
+  public void testOverrides() {
+    final Map<String, String> environment = new LayeredEnvironment(
+        profileEnvironment);
+    final Map<String, String> other = new LayeredEnvironment(
+        profileEnvironment);
+
+    assertEquals("/profile/home", environment.put("HOME", "/test/home"));
+    assertNull(environment.put("PATH", "/bin"));
+
+    final Map<String, String> expected = new HashMap<String, String>();
+    expected.put("HOME", "/test/home");
+    expected.put("LANG", "C");
+    expected.put("PATH", "/bin");
+    assertEquals(expected, environment);
+    assertEquals(3, environment.size());
+    assertTrue(environment.containsKey("PATH"));
+
+    assertEquals(profileEnvironment, other);
+    assertEquals("/profile/home", profileEnvironment.get("HOME"));
+  }
+
+  /**
+   * Tests that test cases with no variables of their own share the profile's
+   * environment block, and that a test case's variables are set in its own.
+   */
+  public void testEnvironmentBlock() {
+    final ProfileEnvironment profile = new ProfileEnvironment(
+        profileEnvironment);
+    final LayeredEnvironment environment = new LayeredEnvironment(profile);
+    final LayeredEnvironment other = new LayeredEnvironment(profile);
+
+    final String[] profileBlock = profile.getEnvironmentBlock();
+    assertSame(profileBlock, environment.getEnvironmentBlock());
+    assertSame(profileBlock, other.getEnvironmentBlock());
+    assertTrue(Arrays.asList(profileBlock).contains("HOME=/profile/home"));
+
+    environment.put("HOME", "/test/home");
+    final List<String> block = Arrays.asList(environment
+        .getEnvironmentBlock());
+    assertTrue(block.contains("HOME=/test/home"));
+    assertTrue(block.contains("LANG=C"));
+    assertFalse(block.contains("HOME=/profile/home"));
+    assertSame(profileBlock, other.getEnvironmentBlock());
+  }
+}
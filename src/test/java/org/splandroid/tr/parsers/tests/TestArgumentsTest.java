@@ -0,0 +1,127 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.splandroid.tr.parsers.PrimitiveKind;
+
+public class TestArgumentsTest extends TestCase {
+  private final ArgumentKeys keys = new ArgumentKeys(new String[] { "name",
+      "count" }, new PrimitiveKind[] { null, PrimitiveKind.INT });
+
+  private TestArguments buildArguments(String id, String name, int count) {
+    final TestArguments args = new TestArguments(id, keys);
+    args.putArgument("name", name, name);
+    args.putPrimitive("count", count, String.valueOf(count));
+    return args;
+  }
+
+  /**
+   * Tests that the arguments read the same by position and through the Map
+   * methods, in the order of their keys.
+   */
+  public void testPositionalAndMapViews() {
+    final TestArguments args = buildArguments("check", "a name", 42);
+
+    assertEquals(2, args.size());
+    assertEquals("name", args.getArgumentId(0));
+    assertEquals("count", args.getArgumentId(1));
+    assertNull(args.getPrimitiveKind(0));
+    assertEquals(PrimitiveKind.INT, args.getPrimitiveKind(1));
+    assertEquals(42L, args.getPrimitiveBits(1));
+    assertEquals(42, args.getInt("count"));
+
+    final Map<String, Object> expected = new HashMap<String, Object>();
+    expected.put("name", "a name");
+    expected.put("count", Integer.valueOf(42));
+    assertEquals(expected, args);
+    assertEquals(expected.hashCode(), args.hashCode());
+
+    final List<String> ids = new ArrayList<String>(args.keySet());
+    assertEquals("name", ids.get(0));
+    assertEquals("count", ids.get(1));
+
+    assertNull(args.get("missing"));
+    assertFalse(args.containsKey("missing"));
+  }
+
+  /**
+   * Tests that a primitive argument reads as missing until it has been put, so
+   * an argument cannot be substituted with a later one.
+   */
+  public void testUnsetPrimitive() {
+    final TestArguments args = new TestArguments("check", keys);
+    assertNull(args.get("count"));
+    args.putPrimitive("count", 7, "7");
+    assertEquals(Integer.valueOf(7), args.get("count"));
+  }
+
+  /**
+   * Tests that arguments sharing keys hold their own values, and cannot be
+   * changed once frozen.
+   */
+  public void testFrozen() {
+    final TestArguments one = buildArguments("one", "first", 1);
+    final TestArguments two = buildArguments("two", "second", 2);
+    one.put("name", "renamed");
+    one.freeze();
+
+    assertEquals("renamed", one.get("name"));
+    assertEquals("second", two.get("name"));
+    assertEquals(2, two.getInt("count"));
+
+    try {
+      one.put("name", "again");
+      fail("Frozen arguments were changed");
+    } catch (UnsupportedOperationException ex) {
+      // Expected
+    }
+    try {
+      one.remove("name");
+      fail("An argument was removed");
+    } catch (UnsupportedOperationException ex) {
+      // Expected
+    }
+  }
+
+  /**
+   * Tests that an argument not in the keys, or of the wrong kind, is refused.
+   */
+  public void testUnknownArgument() {
+    final TestArguments args = new TestArguments("check", keys);
+    try {
+      args.put("missing", "value");
+      fail("An unknown argument was put");
+    } catch (IllegalArgumentException ex) {
+      // Expected
+    }
+    try {
+      args.putArgument("count", Integer.valueOf(1), "1");
+      fail("A primitive argument was put as an object");
+    } catch (IllegalArgumentException ex) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.parsers.PrimitiveKind;
+
+public class TestCaseDescriptorCodecTest extends TestCase {
+  /**
+   * Tests that a decoded test case matches the encoded one, with arguments
+   * rebuilt from the text they were parsed from.
+   */
+  public void testRoundTrip() throws IOException {
+    final TestArguments setUpInfo = new TestArguments("capability",
+        new ArgumentKeys(new String[] { "count", "ratio", "name" },
+            new PrimitiveKind[3]));
+    setUpInfo.putArgument("count", new Integer("42"), "42");
+    setUpInfo.putArgument("ratio", new Double("3.10"), "3.10");
+    setUpInfo.putArgument("name", "a name", "a %other% name");
+
+    final TestArguments testArgs = new TestArguments("check",
+        new ArgumentKeys(new String[] { "enabled" }, new PrimitiveKind[1]));
+    testArgs.putArgument("enabled", Boolean.TRUE, "true");
+    final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+    tests.add(new TestDescriptor("check", testArgs));
+
+    final Map<String, String> environment = new HashMap<String, String>();
+    environment.put("MY_VAR", "value");
+
+    final ITestCaseDescriptor testCase = new TestCaseDescriptor("testCase",
+        "A test case", "some.Class", tests, setUpInfo, environment);
+
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    TestCaseDescriptorCodec.encode(testCase, new DataOutputStream(encoded));
+    final ITestCaseDescriptor decoded = TestCaseDescriptorCodec
+        .decode(new DataInputStream(new ByteArrayInputStream(encoded
+            .toByteArray())));
+
+    assertEquals("testCase", decoded.getId());
+    assertEquals("A test case", decoded.getDescription());
+    assertEquals("some.Class", decoded.getClassName());
+    assertEquals(environment, decoded.getEnvironment());
+
+    final ITestArguments decodedSetUpInfo = decoded.getSetUpInfo();
+    assertEquals(setUpInfo, decodedSetUpInfo);
+    assertEquals("3.10",
+        ((TestArguments )decodedSetUpInfo).getSource("ratio"));
+    assertEquals("a name", ((TestArguments )decodedSetUpInfo).getSource("name"));
+
+    assertEquals(1, decoded.getTests().size());
+    final ITestDescriptor decodedTest = decoded.getTests().get(0);
+    assertEquals("check", decodedTest.getId());
+    assertEquals(testArgs, decodedTest.getArguments());
+  }
+
+  /**
+   * Tests that primitive arguments are decoded as primitives of their kind.
+   */
+  public void testPrimitiveRoundTrip() throws IOException {
+    final TestArguments setUpInfo = new TestArguments("capability",
+        new ArgumentKeys(new String[] { "count", "ratio", "enabled" },
+            new PrimitiveKind[] { PrimitiveKind.INT, PrimitiveKind.DOUBLE,
+                PrimitiveKind.BOOLEAN }));
+    setUpInfo.putPrimitive("count", PrimitiveKind.INT.parse("42"), "42");
+    setUpInfo.putPrimitive("ratio", PrimitiveKind.DOUBLE.parse("3.10"), "3.10");
+    setUpInfo.putPrimitive("enabled", PrimitiveKind.BOOLEAN.parse("true"),
+        "true");
+
+    final ITestCaseDescriptor testCase = new TestCaseDescriptor("testCase",
+        "A test case", "some.Class", new ArrayList<ITestDescriptor>(),
+        setUpInfo, null);
+
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    TestCaseDescriptorCodec.encode(testCase, new DataOutputStream(encoded));
+    final TestArguments decoded = (TestArguments )TestCaseDescriptorCodec
+        .decode(
+            new DataInputStream(new ByteArrayInputStream(encoded.toByteArray())))
+        .getSetUpInfo();
+
+    assertEquals(setUpInfo, decoded);
+    assertEquals(PrimitiveKind.INT, decoded.getPrimitiveKind("count"));
+    assertEquals(42, decoded.getInt("count"));
+    assertEquals(Integer.valueOf(42), decoded.get("count"));
+    assertEquals(3.10, decoded.getDouble("ratio"));
+    assertEquals("3.10", decoded.getSource("ratio"));
+    assertTrue(decoded.getBoolean("enabled"));
+  }
+
+  private static ITestCaseDescriptor encodeDecode(ITestCaseDescriptor testCase,
+      TestCaseDescriptorCodec.Decoder decoder) throws IOException {
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    TestCaseDescriptorCodec.encode(testCase, new DataOutputStream(encoded));
+    return decoder.decode(new DataInputStream(new ByteArrayInputStream(encoded
+        .toByteArray())));
+  }
+
+  /**
+   * Tests that test cases decoded together share their profile's environment,
+   * over which their own variables are layered again, and keep the kinds
+   * their arguments were declared with.
+   */
+  public void testSharedDecoding() throws IOException {
+    final Map<String, String> profileVariables = new HashMap<String, String>();
+    profileVariables.put("PROFILE_VAR", "profile");
+    final ProfileEnvironment profileEnvironment = new ProfileEnvironment(
+        profileVariables);
+    final LayeredEnvironment firstEnvironment = new LayeredEnvironment(
+        profileEnvironment);
+    final LayeredEnvironment secondEnvironment = new LayeredEnvironment(
+        profileEnvironment);
+    secondEnvironment.put("PROFILE_VAR", "test case");
+
+    final ArgumentKeys keys = new ArgumentKeys(new String[] { "name" },
+        new PrimitiveKind[1], new String[] { "java.lang.String" });
+    final TestArguments setUpInfo = new TestArguments("capability", keys);
+    setUpInfo.putArgument("name", "a name", "a name");
+
+    final TestCaseDescriptorCodec.Decoder decoder = new TestCaseDescriptorCodec.Decoder();
+    final ITestCaseDescriptor first = encodeDecode(new TestCaseDescriptor(
+        "first", "First", "some.Class", new ArrayList<ITestDescriptor>(),
+        setUpInfo, firstEnvironment), decoder);
+    final ITestCaseDescriptor second = encodeDecode(new TestCaseDescriptor(
+        "second", "Second", "some.Class", new ArrayList<ITestDescriptor>(),
+        setUpInfo, secondEnvironment), decoder);
+
+    final LayeredEnvironment firstDecoded = (LayeredEnvironment )first
+        .getEnvironment();
+    final LayeredEnvironment secondDecoded = (LayeredEnvironment )second
+        .getEnvironment();
+    assertSame(firstDecoded.getProfileVariables(), secondDecoded
+        .getProfileVariables());
+    assertNull(firstDecoded.getTestCaseVariables());
+    assertEquals("profile", firstDecoded.get("PROFILE_VAR"));
+    assertEquals("test case", secondDecoded.get("PROFILE_VAR"));
+
+    final TestArguments decodedSetUpInfo = (TestArguments )second
+        .getSetUpInfo();
+    assertEquals(setUpInfo, decodedSetUpInfo);
+    assertEquals("java.lang.String", decodedSetUpInfo.getArgumentKind(0));
+  }
+}
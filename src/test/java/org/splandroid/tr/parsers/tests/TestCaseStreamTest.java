@@ -0,0 +1,180 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.splandroid.tr.parsers.ISymbol;
+import org.splandroid.tr.parsers.ISymbolMap;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestCaseSelector;
+import org.splandroid.tr.parsers.ITestCaseSource;
+import org.splandroid.tr.parsers.ParserException;
+import org.splandroid.tr.parsers.profile.ProfileParser;
+
+public class TestCaseStreamTest extends TestCase {
+  private static final String profileXML = "<profile>"
+      + "<capability id=\"cap\" description=\"A capability\" class=\"some.Class\">"
+      + "<arguments><argument id=\"name\" kind=\"java.lang.String\"/>"
+      + "<argument id=\"count\" kind=\"int\"/></arguments>"
+      + "<test id=\"check\"><arguments>"
+      + "<argument id=\"expected\" kind=\"java.lang.String\"/>"
+      + "</arguments></test>" + "</capability></profile>";
+
+  private static final String testCaseXML = "<testcase id=\"%s\" description=\"Test case %s\">"
+      + "<cap name=\"%s\" count=\"%d\"><check expected=\"$MY_VAR$\"/>"
+      + "<environment><variable name=\"MY_VAR\" value=\"%s value\"/></environment>"
+      + "</cap></testcase>";
+
+  private ISymbolMap symbols;
+
+  @SuppressWarnings(value = { "serial" })
+  private static class TestSymbolMap extends HashMap<String, ISymbol> implements
+      ISymbolMap {
+  }
+
+  public void setUp() throws Exception {
+    symbols = new TestSymbolMap();
+    new ProfileParser().setSymbolTable(symbols).parse(
+        new ByteArrayInputStream(profileXML.getBytes()));
+  }
+
+  private static String testCase(String id, int count) {
+    return String.format(testCaseXML, id, id, id, count, id);
+  }
+
+  private ITestCaseSource stream(String testsXML) throws Exception {
+    final TestsParser parser = new TestsParser(
+        new ArrayList<ITestCaseDescriptor>());
+    parser.setSymbolTable(symbols);
+    return parser.stream(new ByteArrayInputStream(testsXML.getBytes()));
+  }
+
+  /**
+   * Tests that streamed test cases match those parsed all at once.
+   */
+  public void testStreamMatchesParse() throws Exception {
+    final String testsXML = "<tests>" + testCase("one", 1)
+        + testCase("two", 2) + testCase("three", 3) + "</tests>";
+
+    final List<ITestCaseDescriptor> parsed = new ArrayList<ITestCaseDescriptor>();
+    final TestsParser parser = new TestsParser(parsed);
+    parser.setSymbolTable(symbols);
+    parser.parse(new ByteArrayInputStream(testsXML.getBytes()));
+
+    final ITestCaseSource source = stream(testsXML);
+    for (ITestCaseDescriptor expected : parsed) {
+      final ITestCaseDescriptor actual = source.next();
+      assertNotNull(actual);
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getDescription(), actual.getDescription());
+      assertEquals(expected.getSetUpInfo(), actual.getSetUpInfo());
+      assertEquals(expected.getEnvironment(), actual.getEnvironment());
+      assertEquals(expected.getTests().get(0).getArguments(), actual
+          .getTests().get(0).getArguments());
+    }
+    assertNull(source.next());
+    assertNull(source.next());
+    source.close();
+
+    assertEquals(3, parsed.size());
+    assertEquals(Integer.valueOf(2), parsed.get(1).getSetUpInfo().get("count"));
+    assertEquals("two value", parsed.get(1).getTests().get(0).getArguments()
+        .get("expected"));
+  }
+
+  /**
+   * Tests that test cases are read on demand, so those before an error in the
+   * file are handed out before the error is reported.
+   */
+  public void testStreamIsLazy() throws Exception {
+    final ITestCaseSource source = stream("<tests>" + testCase("one", 1)
+        + testCase("two", 2) + "<testcase id=\"bad\"></testcase></tests>");
+
+    assertEquals("one", source.next().getId());
+    assertEquals("two", source.next().getId());
+    try {
+      source.next();
+      fail("Invalid test case was read");
+    } catch (ParserException ex) {
+      // Expected
+    }
+  }
+
+  /**
+   * Tests that test cases that are not selected are skipped without being
+   * built, whether the file is parsed or streamed.
+   */
+  public void testSelection() throws Exception {
+    final String testsXML = "<tests>" + testCase("one", 1)
+        + "<testcase id=\"bad\"><cap count=\"x\"/></testcase>"
+        + testCase("two", 2) + testCase("three", 3) + "</tests>";
+    final ITestCaseSelector selector = new ITestCaseSelector() {
+      public boolean isSelected(String testCaseId) {
+        return testCaseId.startsWith("t");
+      }
+    };
+
+    final List<ITestCaseDescriptor> parsed = new ArrayList<ITestCaseDescriptor>();
+    final TestsParser parser = new TestsParser(parsed);
+    parser.setTestCaseSelector(selector).setSymbolTable(symbols);
+    parser.parse(new ByteArrayInputStream(testsXML.getBytes()));
+    assertEquals(2, parsed.size());
+    assertEquals("two", parsed.get(0).getId());
+    assertEquals("three", parsed.get(1).getId());
+
+    final ITestCaseSource source = parser.stream(new ByteArrayInputStream(
+        testsXML.getBytes()));
+    assertEquals("two", source.next().getId());
+    assertEquals("three", source.next().getId());
+    assertNull(source.next());
+  }
+
+  /**
+   * Tests that variables missing from a test case's environment are taken
+   * from the process environment the parser is given.
+   */
+  public void testProcessEnvironment() throws Exception {
+    final Map<String, String> processEnvironment = new HashMap<String, String>();
+    processEnvironment.put("MY_VAR", "process value");
+    processEnvironment.put("OTHER_VAR", "other value");
+    final String testsXML = "<tests>" + testCase("one", 1)
+        + "<testcase id=\"two\" description=\"Test case two\">"
+        + "<cap name=\"two\" count=\"2\"><check expected=\"$OTHER_VAR$\"/>"
+        + "</cap></testcase></tests>";
+
+    final List<ITestCaseDescriptor> parsed = new ArrayList<ITestCaseDescriptor>();
+    final TestsParser parser = new TestsParser(parsed);
+    parser.setProcessEnvironment(processEnvironment).setSymbolTable(symbols);
+    parser.parse(new ByteArrayInputStream(testsXML.getBytes()));
+
+    assertEquals("one value", parsed.get(0).getTests().get(0).getArguments()
+        .get("expected"));
+    assertEquals("other value", parsed.get(1).getTests().get(0)
+        .getArguments().get("expected"));
+    assertTrue(parser.getProcessEnvironmentNames().contains("OTHER_VAR"));
+    assertFalse(parser.getProcessEnvironmentNames().contains("MY_VAR"));
+  }
+}
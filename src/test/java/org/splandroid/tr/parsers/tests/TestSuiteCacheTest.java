@@ -0,0 +1,101 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.parsers.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.parsers.PrimitiveKind;
+
+public class TestSuiteCacheTest extends TestCase {
+  private static final Charset utf8 = Charset.forName("UTF-8");
+  private static final byte[] profileXML = "<profile/>".getBytes(utf8);
+  private static final byte[] testsXML = "<tests/>".getBytes(utf8);
+
+  private File cacheFile = null;
+
+  @Override
+  protected void setUp() throws Exception {
+    cacheFile = File.createTempFile("tests", ".cache");
+    cacheFile.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    cacheFile.delete();
+  }
+
+  private static List<ITestCaseDescriptor> buildTestCases() {
+    final TestArguments testArgs = new TestArguments("check",
+        new ArgumentKeys(new String[] { "count" },
+            new PrimitiveKind[] { PrimitiveKind.INT }));
+    testArgs.putPrimitive("count", PrimitiveKind.INT.parse("7"), "7");
+    testArgs.freeze();
+    final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+    tests.add(new TestDescriptor("check", testArgs));
+
+    final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>();
+    testCases.add(new TestCaseDescriptor("first", "First", "some.Class",
+        tests, null, null));
+    testCases.add(new TestCaseDescriptor("second", "Second", "some.Class",
+        new ArrayList<ITestDescriptor>(), null, null));
+    return testCases;
+  }
+
+  /**
+   * Tests that stored test cases are loaded while the XML files are unchanged.
+   */
+  public void testLoadStored() throws IOException {
+    assertNull(new TestSuiteCache(cacheFile, profileXML, testsXML).load());
+
+    new TestSuiteCache(cacheFile, profileXML, testsXML).store(
+        buildTestCases(), Arrays.asList("PATH", "TR_CACHE_TEST_UNSET"));
+    final List<ITestCaseDescriptor> testCases = new TestSuiteCache(cacheFile,
+        profileXML, testsXML).load();
+
+    assertNotNull(testCases);
+    assertEquals(2, testCases.size());
+    assertEquals("first", testCases.get(0).getId());
+    assertEquals("second", testCases.get(1).getId());
+    final TestArguments testArgs = (TestArguments )testCases.get(0)
+        .getTests().get(0).getArguments();
+    assertEquals(7, testArgs.getInt("count"));
+  }
+
+  /**
+   * Tests that stored test cases are not loaded once either XML file changes.
+   */
+  public void testChangedSource() throws IOException {
+    new TestSuiteCache(cacheFile, profileXML, testsXML).store(
+        buildTestCases(), new ArrayList<String>());
+
+    assertNull(new TestSuiteCache(cacheFile, profileXML,
+        "<tests></tests>".getBytes(utf8)).load());
+    assertNull(new TestSuiteCache(cacheFile, "<profile></profile>"
+        .getBytes(utf8), testsXML).load());
+  }
+}
@@ -174,6 +174,9 @@ public class TestsParserTest extends MockeryLoggingTestCase {
         one(capSymbol).getKindClass();
         will(returnValue(OneCapabilityOneTestXML.capabilityClass));
 
+        one(capSymbol).getTimeout();
+        will(returnValue(0L));
+
         one(capSymbol).getSymbol(OneCapabilityOneTestXML.testId,
             ITestSymbol.CONTEXT);
         will(returnValue(testSymbol));
@@ -338,6 +341,9 @@ public class TestsParserTest extends MockeryLoggingTestCase {
         one(capSymbol).getKindClass();
         will(returnValue(OneCapabilityOneTestNoEnvironmentXML.capabilityClass));
 
+        one(capSymbol).getTimeout();
+        will(returnValue(0L));
+
         one(capSymbol).getSymbol(OneCapabilityOneTestNoEnvironmentXML.testId,
             ITestSymbol.CONTEXT);
         will(returnValue(testSymbol));
@@ -0,0 +1,69 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.reporting;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+public class TRTestResultsTest extends TestCase {
+  private File resultsDir;
+
+  public void setUp() throws IOException {
+    resultsDir = File.createTempFile("results", "");
+    resultsDir.delete();
+    resultsDir.mkdirs();
+  }
+
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(resultsDir);
+  }
+
+  /**
+   * Tests that saved results are loaded back, ordered by component and test
+   * case ID, and that a later result replaces an earlier one.
+   */
+  public void testSaveAndLoad() throws IOException {
+    final TRTestResults results = new TRTestResults();
+    results.add(new TRTestResults.Result("b", "two", TRTestResults.Status.FAILED,
+        20));
+    results.add(new TRTestResults.Result("a", "one",
+        TRTestResults.Status.PASSED, 10));
+    results.save(resultsDir, "Shard 1/2");
+
+    final TRTestResults loaded = new TRTestResults();
+    assertEquals(2, loaded.load(resultsDir).size());
+    assertNotNull(loaded.add(new TRTestResults.Result("b", "two",
+        TRTestResults.Status.ERROR, 30)));
+
+    final Iterator<TRTestResults.Result> it = loaded.getResults().iterator();
+    final TRTestResults.Result first = it.next();
+    assertEquals("a", first.getComponent());
+    assertEquals("one", first.getTestCaseId());
+    assertEquals(TRTestResults.Status.PASSED, first.getStatus());
+    assertEquals(10, first.getDuration());
+    final TRTestResults.Result second = it.next();
+    assertEquals(TRTestResults.Status.ERROR, second.getStatus());
+    assertFalse(it.hasNext());
+  }
+}
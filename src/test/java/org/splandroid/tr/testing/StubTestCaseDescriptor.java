@@ -0,0 +1,84 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestDescriptor;
+
+/**
+ * A test case descriptor for tests that only need a test case's ID, class and
+ * tests. It has no set up arguments, environment or timeout.
+ */
+class StubTestCaseDescriptor implements ITestCaseDescriptor {
+  private final String id;
+  private final String className;
+  private final List<ITestDescriptor> tests;
+
+  public StubTestCaseDescriptor(String testCaseId, String testClassName,
+      List<ITestDescriptor> testCaseTests) {
+    id = testCaseId;
+    className = testClassName;
+    tests = testCaseTests;
+  }
+
+  /**
+   * Create test cases with no class or tests.
+   */
+  public static List<ITestCaseDescriptor> createTestCases(String... ids) {
+    final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>();
+    for (String id : ids) {
+      testCases.add(new StubTestCaseDescriptor(id, null,
+          new ArrayList<ITestDescriptor>()));
+    }
+    return testCases;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getDescription() {
+    return id;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public List<ITestDescriptor> getTests() {
+    return tests;
+  }
+
+  public ITestArguments getSetUpInfo() {
+    return null;
+  }
+
+  public Map<String, String> getEnvironment() {
+    return null;
+  }
+
+  public long getTimeout() {
+    return 0;
+  }
+}
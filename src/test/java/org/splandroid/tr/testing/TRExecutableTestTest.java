@@ -18,6 +18,7 @@
  */
 package org.splandroid.tr.testing;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
@@ -29,6 +30,8 @@ import java.util.Map;
 import java.util.Set;
 
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.splandroid.tr.MockeryLoggingTestCase;
 import org.splandroid.tr.parsers.ITestArguments;
 import org.splandroid.tr.parsers.ITestDescriptor;
@@ -46,6 +49,10 @@ public class TRExecutableTestTest extends MockeryLoggingTestCase {
 
   private static final String UNIX_EXE = "/bin/hostname";
   private static final String UNIX_WD = "/";
+  private static final String UNIX_SLEEP_EXE = "/bin/sleep";
+  private static final String UNIX_SLEEP_SECONDS = "60";
+  private static final String UNIX_CAT_EXE = "/bin/cat";
+  private static final String CAT_INPUT = "hello\n";
   private static final String WINDOWS_EXE = "C:\\WINDOWS\\system32\\hostname";
   private static final String WINDOWS_WD = "C:\\";
 
@@ -98,6 +105,37 @@ public class TRExecutableTestTest extends MockeryLoggingTestCase {
     }
   }
 
+  public class MySleepingTestClass extends TRExecutableTestCase {
+    public MySleepingTestClass(String testId, String description,
+        List<ITestDescriptor> tests, ITestArguments setUpInfo,
+        Map<String, String> environment) {
+      super(testId, description, tests, setUpInfo, environment);
+    }
+
+    public void execute() throws Exception {
+      runProcess(UNIX_SLEEP_EXE, new File(UNIX_WD), System.in,
+          new ByteArrayOutputStream(), new ByteArrayOutputStream(),
+          UNIX_SLEEP_SECONDS);
+    }
+  }
+
+  public class MyCatTestClass extends TRExecutableTestCase {
+    private final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    private volatile int exitCode = -1;
+
+    public MyCatTestClass(String testId, String description,
+        List<ITestDescriptor> tests, ITestArguments setUpInfo,
+        Map<String, String> environment) {
+      super(testId, description, tests, setUpInfo, environment);
+    }
+
+    public void execute() throws Exception {
+      exitCode = runProcess(UNIX_CAT_EXE, new File(UNIX_WD),
+          new ByteArrayInputStream(CAT_INPUT.getBytes()), outStream,
+          new ByteArrayOutputStream());
+    }
+  }
+
   private String osExecutable;
   private String osWorkingDir;
   private IReportFacade reporter;
@@ -283,4 +321,84 @@ public class TRExecutableTestTest extends MockeryLoggingTestCase {
 
     context.assertIsSatisfied();
   }
+
+  /**
+   * Test that a process that outlives the test case's timeout is killed, and
+   * that the test case is reported as an error caused by the timeout.
+   */
+  public void testExecutableTimeout() {
+    if (isWindows) {
+      return;
+    }
+
+    final String desc = "Timeout test";
+    final ITestDescriptor testDesc = context.mock(ITestDescriptor.class,
+        "Test one descriptor");
+    final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+    tests.add(testDesc);
+
+    final Throwable[] cause = new Throwable[1];
+
+    context.checking(new Expectations() {
+      {
+        // Reporter
+        one(reporter).startingTestCase(TEST_CASE_ID, desc);
+        one(reporter).errorTestCase(with(equal(TEST_CASE_ID)),
+            with(any(Throwable.class)));
+        will(new CustomAction("record the error") {
+          public Object invoke(Invocation invocation) {
+            cause[0] = (Throwable )invocation.getParameter(1);
+            return null;
+          }
+        });
+      }
+    });
+
+    final MySleepingTestClass testCase = new MySleepingTestClass(TEST_CASE_ID,
+        desc, tests, null, null);
+    testCase.setTimeout(500);
+
+    final long started = System.currentTimeMillis();
+    testRunner.setTestCase(testCase);
+    final boolean passed = testRunner.run();
+    assertTrue(passed == false);
+    assertTrue(System.currentTimeMillis() - started < 10000);
+    assertTrue(cause[0] instanceof TRTestTimeoutException);
+    assertTrue(Thread.currentThread().isInterrupted() == false);
+
+    context.assertIsSatisfied();
+  }
+
+  /**
+   * Test that a process reading a finite input to its end has its standard
+   * input closed once the input is exhausted, so that it exits.
+   */
+  public void testExecutableFiniteInput() throws Exception {
+    if (isWindows) {
+      return;
+    }
+
+    final MyCatTestClass testCase = new MyCatTestClass(TEST_CASE_ID,
+        "Finite input test", new ArrayList<ITestDescriptor>(), null, null);
+    final Exception[] error = new Exception[1];
+    final Thread executor = new Thread(new Runnable() {
+      public void run() {
+        try {
+          testCase.execute();
+        } catch (Exception ex) {
+          error[0] = ex;
+        }
+      }
+    });
+    executor.start();
+    executor.join(10000);
+    if (executor.isAlive() == true) {
+      testCase.onTimeout();
+      fail("Process reading a finite input did not exit");
+    }
+
+    assertNull(error[0]);
+    assertEquals(0, testCase.exitCode);
+    assertEquals(CAT_INPUT, testCase.outStream.toString());
+  }
 }
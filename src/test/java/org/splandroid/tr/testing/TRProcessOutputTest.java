@@ -0,0 +1,70 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class TRProcessOutputTest extends TestCase {
+  private File file;
+
+  public void setUp() throws IOException {
+    file = File.createTempFile("output", ".txt");
+  }
+
+  public void tearDown() {
+    file.delete();
+  }
+
+  /**
+   * Tests that output that fits in the head and tail is kept in full.
+   */
+  public void testShortOutput() throws IOException {
+    final TRProcessOutput output = new TRProcessOutput(file, 4, 4);
+    output.write("abcdef".getBytes());
+    output.close();
+
+    assertEquals("abcd", output.getHead());
+    assertEquals("ef", output.getTail());
+    assertFalse(output.isTruncated());
+    assertEquals("abcdef", output.toString());
+    assertEquals("abcdef", output.readAll());
+  }
+
+  /**
+   * Tests that only the head and tail of long output are kept in memory, while
+   * the whole output is written to the file.
+   */
+  public void testLongOutput() throws IOException {
+    final TRProcessOutput output = new TRProcessOutput(file, 3, 4);
+    output.write("abc".getBytes());
+    output.write("defgh".getBytes());
+    output.write('i');
+    output.write("jklmnopqrstuvwxyz".getBytes(), 10, 3);
+
+    assertEquals("abc", output.getHead());
+    assertEquals("ituv", output.getTail());
+    assertTrue(output.isTruncated());
+    assertEquals(12, output.getSize());
+    assertEquals("abcdefghituv", output.readAll());
+    output.close();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+
+public class TRTestCaseSchedulerTest extends TestCase {
+  private static final String COMPONENT = "component";
+
+  /**
+   * Tests that test cases are dealt out longest first, each going to the least
+   * loaded worker, and that a test case with no history is expected to take
+   * the mean time.
+   */
+  public void testLongestFirst() {
+    final DurationHistory history = new DurationHistory();
+    history.setDuration(COMPONENT, "short", 10);
+    history.setDuration(COMPONENT, "long", 100);
+    history.setDuration(COMPONENT, "medium", 40);
+    // "unknown" is expected to take the mean, 50
+
+    final List<ITestCaseDescriptor> testCases = StubTestCaseDescriptor
+        .createTestCases("short", "long", "unknown", "medium");
+    final TRTestCaseScheduler scheduler = new TRTestCaseScheduler(COMPONENT,
+        testCases, 2, history);
+
+    // Worker 0: long; worker 1: unknown, medium, short
+    assertEquals("long", scheduler.next(0).getId());
+    assertEquals("unknown", scheduler.next(1).getId());
+    assertEquals("medium", scheduler.next(1).getId());
+    assertEquals("short", scheduler.next(1).getId());
+    assertNull(scheduler.next(0));
+    assertNull(scheduler.next(1));
+  }
+
+  /**
+   * Tests that an idle worker steals the shortest test case left from another
+   * worker.
+   */
+  public void testWorkStealing() {
+    final DurationHistory history = new DurationHistory();
+    history.setDuration(COMPONENT, "a", 100);
+    history.setDuration(COMPONENT, "b", 30);
+    history.setDuration(COMPONENT, "c", 20);
+    history.setDuration(COMPONENT, "d", 10);
+
+    final List<ITestCaseDescriptor> testCases = StubTestCaseDescriptor
+        .createTestCases("a", "b", "c", "d");
+    final TRTestCaseScheduler scheduler = new TRTestCaseScheduler(COMPONENT,
+        testCases, 2, history);
+
+    // Worker 0: a; worker 1: b, c, d
+    assertEquals("a", scheduler.next(0).getId());
+    assertEquals("d", scheduler.next(0).getId());
+    assertEquals("b", scheduler.next(1).getId());
+    assertEquals("c", scheduler.next(1).getId());
+    assertNull(scheduler.next(1));
+  }
+
+  /**
+   * Tests that with no history the test cases are dealt out in turn.
+   */
+  public void testNoHistory() {
+    final List<ITestCaseDescriptor> testCases = StubTestCaseDescriptor
+        .createTestCases("a", "b", "c");
+    final TRTestCaseScheduler scheduler = new TRTestCaseScheduler(COMPONENT,
+        testCases, 2, null);
+
+    assertEquals("a", scheduler.next(0).getId());
+    assertEquals("b", scheduler.next(1).getId());
+    assertEquals("c", scheduler.next(0).getId());
+    assertNull(scheduler.next(1));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+
+public class TRTestCaseSharderTest extends TestCase {
+  private static final String COMPONENT = "component";
+
+  /**
+   * Tests that the shards, split by hash, cover every test case once, are
+   * balanced and do not depend on the order of the test cases.
+   */
+  public void testHashShards() {
+    final List<ITestCaseDescriptor> testCases = createTestCases(10);
+    final List<ITestCaseDescriptor> reversed = new ArrayList<ITestCaseDescriptor>();
+    for (int idx = testCases.size() - 1; idx >= 0; idx--) {
+      reversed.add(testCases.get(idx));
+    }
+    final TRTestCaseSharder sharder = new TRTestCaseSharder(COMPONENT, null);
+
+    final Set<String> seen = new HashSet<String>();
+    for (int shard = 1; shard <= 3; shard++) {
+      final List<ITestCaseDescriptor> shardTestCases = sharder.getShard(
+          testCases, shard, 3);
+      assertTrue(shardTestCases.size() == 3 || shardTestCases.size() == 4);
+      assertEquals(getIds(shardTestCases),
+          getIds(sharder.getShard(reversed, shard, 3)));
+      for (ITestCaseDescriptor testCase : shardTestCases) {
+        assertTrue(seen.add(testCase.getId()));
+      }
+    }
+    assertEquals(testCases.size(), seen.size());
+  }
+
+  /**
+   * Tests that with a duration history the test cases are packed longest first
+   * into the least loaded shard.
+   */
+  public void testHistoryShards() {
+    final List<ITestCaseDescriptor> testCases = createTestCases(4);
+    final DurationHistory history = new DurationHistory();
+    history.setDuration(COMPONENT, "testCase0", 100);
+    history.setDuration(COMPONENT, "testCase1", 60);
+    history.setDuration(COMPONENT, "testCase2", 30);
+    history.setDuration(COMPONENT, "testCase3", 20);
+    final TRTestCaseSharder sharder = new TRTestCaseSharder(COMPONENT, history);
+
+    final Set<String> first = getIds(sharder.getShard(testCases, 1, 2));
+    final Set<String> second = getIds(sharder.getShard(testCases, 2, 2));
+    assertEquals(1, first.size());
+    assertTrue(first.contains("testCase0"));
+    assertEquals(3, second.size());
+  }
+
+  private static Set<String> getIds(List<ITestCaseDescriptor> testCases) {
+    final Set<String> ids = new HashSet<String>();
+    for (ITestCaseDescriptor testCase : testCases) {
+      ids.add(testCase.getId());
+    }
+    return ids;
+  }
+
+  private static List<ITestCaseDescriptor> createTestCases(int noTestCases) {
+    final String[] ids = new String[noTestCases];
+    for (int idx = 0; idx < noTestCases; idx++) {
+      ids[idx] = "testCase" + idx;
+    }
+    return StubTestCaseDescriptor.createTestCases(ids);
+  }
+}
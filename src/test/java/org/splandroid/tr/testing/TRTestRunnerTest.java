@@ -18,18 +18,29 @@
  */
 package org.splandroid.tr.testing;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.jmock.Expectations;
 import org.splandroid.tr.ICalled;
 import org.splandroid.tr.MockeryLoggingTestCase;
+import org.splandroid.tr.parsers.IPrimitiveTestArguments;
 import org.splandroid.tr.parsers.ITestArguments;
 import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.parsers.PrimitiveKind;
 import org.splandroid.tr.reporting.IReportFacade;
 import org.splandroid.tr.testing.TRTestCase;
 import org.splandroid.tr.testing.TRTestFailed;
@@ -352,6 +363,143 @@ public class TRTestRunnerTest extends MockeryLoggingTestCase {
     }
   }
 
+  /**
+   * A test class whose thread-safe tests each check that they see their own
+   * test setter value. The tests wait for each other at a barrier, so they
+   * only pass if they are run concurrently.
+   */
+  class TestClassThreadSafe extends TRTestCase {
+    private final CyclicBarrier barrier;
+    private String value;
+
+    public TestClassThreadSafe(String testId, String description,
+        List<ITestDescriptor> tests, CyclicBarrier testBarrier) {
+      super(testId, description, tests, null, null);
+      barrier = testBarrier;
+    }
+
+    @TestSetter
+    public void setValue(String v) {
+      value = v;
+    }
+
+    private void checkValue(String target) throws Exception {
+      barrier.await(5, TimeUnit.SECONDS);
+      assertTrue(target.equals(value));
+    }
+
+    @Test(threadSafe = true)
+    public void testOne() throws Exception {
+      checkValue("one");
+    }
+
+    @Test(threadSafe = true)
+    public void testTwo() throws Exception {
+      checkValue("two");
+    }
+
+    @Test(threadSafe = true)
+    public void testThree() throws Exception {
+      checkValue("three");
+    }
+
+    public void execute() throws Exception {
+    }
+  }
+
+  /**
+   * A test class whose setters take primitives.
+   */
+  class TestClassPrimitiveSetters extends TRTestCase {
+    private int count;
+    private double ratio;
+    private int executedCount;
+
+    public TestClassPrimitiveSetters(String testId, String description,
+        List<ITestDescriptor> tests, ITestArguments setUpInfo) {
+      super(testId, description, tests, setUpInfo, null);
+    }
+
+    @TestExecuteSetter
+    public void setCount(int c) {
+      count = c;
+    }
+
+    @TestSetter
+    public void setRatio(double r) {
+      ratio = r;
+    }
+
+    public void execute() {
+      executedCount = count;
+    }
+
+    @Test
+    public void testOne() {
+      assertEquals(42, executedCount);
+      assertEquals(2.5, ratio);
+    }
+  }
+
+  /**
+   * A test class whose first test outlasts the test case's timeout.
+   */
+  class TestClassTimeout extends TRTestCase {
+    private volatile boolean ranTwo = false;
+    private volatile boolean interruptedInTearDown = true;
+
+    public TestClassTimeout(String testId, String description,
+        List<ITestDescriptor> tests, long timeoutms) {
+      super(testId, description, tests, null, null);
+      setTimeout(timeoutms);
+    }
+
+    public void execute() {
+    }
+
+    @Test
+    public void testOne() throws InterruptedException {
+      Thread.sleep(10000);
+    }
+
+    @Test
+    public void testTwo() {
+      ranTwo = true;
+    }
+
+    public void tearDown() {
+      interruptedInTearDown = Thread.currentThread().isInterrupted();
+    }
+  }
+
+  /**
+   * A test class whose test ignores interrupts until it is released.
+   */
+  class TestClassUninterruptible extends TRTestCase {
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    public TestClassUninterruptible(String testId, String description,
+        List<ITestDescriptor> tests, long timeoutms) {
+      super(testId, description, tests, null, null);
+      setTimeout(timeoutms);
+    }
+
+    public void execute() {
+    }
+
+    @Test
+    public void testOne() {
+      while (true) {
+        try {
+          release.await();
+          return;
+        } catch (InterruptedException ex) {
+          // Ignored
+        }
+      }
+    }
+  }
+
   public void setUp() {
     super.setUp();
     reporter = context.mock(IReportFacade.class, "reporter");
@@ -958,4 +1106,208 @@ public class TRTestRunnerTest extends MockeryLoggingTestCase {
 
     context.assertIsSatisfied();
   }
+
+  /**
+   * Tests that thread-safe tests are run concurrently, each with its own test
+   * setter values.
+   */
+  public void testThreadSafeTests() throws Exception {
+    final String id = "Test thread-safe tests";
+    final String desc = "A test whose tests run concurrently";
+
+    final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+    for (final String testId : new String[] { "one", "two", "three" }) {
+      tests.add(new ITestDescriptor() {
+        public String getId() {
+          return testId;
+        }
+
+        public ITestArguments getArguments() {
+          final ITestArguments args = new ThreadSafeTestArguments();
+          args.put("value", testId);
+          return args;
+        }
+      });
+    }
+
+    final List<String> calls = Collections
+        .synchronizedList(new ArrayList<String>());
+    final IReportFacade proxyReporter = (IReportFacade )Proxy
+        .newProxyInstance(IReportFacade.class.getClassLoader(),
+            new Class<?>[] { IReportFacade.class }, new InvocationHandler() {
+              public Object invoke(Object proxy, Method method, Object[] args) {
+                calls.add(method.getName());
+                return null;
+              }
+            });
+
+    final ExecutorService testPool = Executors.newFixedThreadPool(tests.size());
+    try {
+      final TRTestRunner concurrentRunner = new TRTestRunner(proxyReporter,
+          testPool);
+      concurrentRunner.setTestCase(new TestClassThreadSafe(id, desc, tests,
+          new CyclicBarrier(tests.size())));
+      final boolean passed = concurrentRunner.run();
+      assertTrue(passed == true);
+    } finally {
+      testPool.shutdown();
+    }
+
+    assertEquals(tests.size(), Collections.frequency(calls, "startingTest"));
+    assertEquals(tests.size(), Collections.frequency(calls, "passedTest"));
+    assertEquals("passedTestCase", calls.get(calls.size() - 1));
+  }
+
+  /**
+   * Tests that primitive arguments are passed to primitive setters by
+   * position, without being read through the Map methods.
+   */
+  public void testPrimitiveSetters() {
+    final String id = "Test primitive setters";
+    final String desc = "A test whose setters take primitives";
+
+    final IPrimitiveTestArguments setUpInfo = context.mock(
+        IPrimitiveTestArguments.class, "Setup info");
+    final IPrimitiveTestArguments testOneArgs = context.mock(
+        IPrimitiveTestArguments.class, "Test one arguments");
+    final ITestDescriptor testOneDesc = context.mock(ITestDescriptor.class,
+        "Test one descriptor");
+    final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+    tests.add(testOneDesc);
+
+    context.checking(new Expectations() {
+      {
+        one(setUpInfo).size();
+        will(returnValue(1));
+        one(setUpInfo).getArgumentId(0);
+        will(returnValue("count"));
+        one(setUpInfo).getPrimitiveKind(0);
+        will(returnValue(PrimitiveKind.INT));
+        one(setUpInfo).getPrimitiveBits(0);
+        will(returnValue(42L));
+        allowing(setUpInfo).getArgument(0);
+        will(returnValue(Integer.valueOf(42)));
+
+        one(testOneArgs).size();
+        will(returnValue(1));
+        one(testOneArgs).getArgumentId(0);
+        will(returnValue("ratio"));
+        one(testOneArgs).getPrimitiveKind(0);
+        will(returnValue(PrimitiveKind.DOUBLE));
+        one(testOneArgs).getPrimitiveBits(0);
+        will(returnValue(Double.doubleToRawLongBits(2.5)));
+        allowing(testOneArgs).getArgument(0);
+        will(returnValue(Double.valueOf(2.5)));
+
+        atLeast(1).of(testOneDesc).getId();
+        will(returnValue("one"));
+        one(testOneDesc).getArguments();
+        will(returnValue(testOneArgs));
+
+        one(reporter).startingTestCase(id, desc);
+        one(reporter).passedTestCase(id);
+        one(reporter).startingTest("one");
+        one(reporter).passedTest("one");
+      }
+    });
+
+    testRunner.setTestCase(new TestClassPrimitiveSetters(id, desc, tests,
+        setUpInfo));
+    final boolean passed = testRunner.run();
+    assertTrue(passed == true);
+
+    context.assertIsSatisfied();
+  }
+
+  /**
+   * Tests that once a test case's timeout expires its remaining tests are not
+   * run but reported as timed out, and the test case is reported as an error.
+   */
+  public void testTimeoutStopsTests() {
+    final String id = "Test timeout";
+    final String desc = "A test case that runs past its timeout";
+    final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+    for (final String testId : new String[] { "one", "two" }) {
+      tests.add(new ITestDescriptor() {
+        public String getId() {
+          return testId;
+        }
+
+        public ITestArguments getArguments() {
+          return new ThreadSafeTestArguments();
+        }
+      });
+    }
+
+    final List<String> calls = Collections
+        .synchronizedList(new ArrayList<String>());
+    final IReportFacade proxyReporter = (IReportFacade )Proxy
+        .newProxyInstance(IReportFacade.class.getClassLoader(),
+            new Class<?>[] { IReportFacade.class }, new InvocationHandler() {
+              public Object invoke(Object proxy, Method method, Object[] args) {
+                calls.add(method.getName());
+                return null;
+              }
+            });
+
+    final TestClassTimeout testCase = new TestClassTimeout(id, desc, tests,
+        200);
+    final TRTestRunner timeoutRunner = new TRTestRunner(proxyReporter);
+    timeoutRunner.setTestCase(testCase);
+    final boolean passed = timeoutRunner.run();
+
+    assertTrue(passed == false);
+    assertTrue(testCase.ranTwo == false);
+    assertTrue(testCase.interruptedInTearDown == false);
+    assertEquals(2, Collections.frequency(calls, "startingTest"));
+    assertEquals(2, Collections.frequency(calls, "errorTest"));
+    assertEquals("errorTestCase", calls.get(calls.size() - 1));
+    assertTrue(Thread.currentThread().isInterrupted() == false);
+  }
+
+  /**
+   * Tests that a test case that ignores its interrupt is abandoned once it has
+   * timed out, rather than holding up the test runner.
+   */
+  public void testTimeoutAbandonsTestCase() {
+    final String id = "Test abandoned";
+    final String desc = "A test case that ignores its interrupt";
+    final ITestDescriptor test = new ITestDescriptor() {
+      public String getId() {
+        return "one";
+      }
+
+      public ITestArguments getArguments() {
+        return new ThreadSafeTestArguments();
+      }
+    };
+
+    final TestClassUninterruptible testCase = new TestClassUninterruptible(id,
+        desc, Collections.singletonList(test), 100);
+    context.checking(new Expectations() {
+      {
+        one(reporter).startingTestCase(id, desc);
+        one(reporter).startingTest("one");
+        one(reporter).errorTestCase(with(equal(id)),
+            with(any(TRTestTimeoutException.class)));
+        allowing(reporter).passedTest("one");
+      }
+    });
+
+    testRunner.setTestCase(testCase);
+    try {
+      final long started = System.currentTimeMillis();
+      assertTrue(testRunner.run() == false);
+      assertTrue(System.currentTimeMillis() - started < 5000);
+    } finally {
+      testCase.release.countDown();
+    }
+
+    context.assertIsSatisfied();
+  }
+
+  @SuppressWarnings(value = { "serial" })
+  private static class ThreadSafeTestArguments extends HashMap<String, Object>
+      implements ITestArguments {
+  }
 }
@@ -19,9 +19,15 @@
 package org.splandroid.tr.testing;
 
 import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.jmock.Expectations;
 import org.splandroid.tr.MockeryLoggingTestCase;
@@ -108,6 +114,9 @@ public class TRTestSuiteTest extends MockeryLoggingTestCase {
         one(testCaseOne).getEnvironment();
         will(returnValue(null));
 
+        one(testCaseOne).getTimeout();
+        will(returnValue(0L));
+
         // Test case two
         one(testCaseTwo).getClassName();
         will(returnValue(TEST_CLASS));
@@ -127,6 +136,9 @@ public class TRTestSuiteTest extends MockeryLoggingTestCase {
         one(testCaseTwo).getEnvironment();
         will(returnValue(null));
 
+        one(testCaseTwo).getTimeout();
+        will(returnValue(0L));
+
         // Test input provider
         exactly(2).of(inputProv).getComponentInputDirectory();
         will(returnValue(new File("some-directory")));
@@ -159,4 +171,131 @@ public class TRTestSuiteTest extends MockeryLoggingTestCase {
 
     context.assertIsSatisfied();
   }
+
+  /**
+   * Run the same kind of suite with several workers. jMock mockeries are not
+   * safe to use from several threads so the collaborators here are stubs.
+   */
+  public void testSuiteConcurrently() {
+    final String suiteId = "concurrentSuiteId";
+    final int noTestCases = 16;
+    final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>();
+    for (int idx = 0; idx < noTestCases; idx++) {
+      testCases.add(new StubTestCaseDescriptor("testCase" + idx));
+    }
+
+    final List<String> calls = Collections
+        .synchronizedList(new ArrayList<String>());
+    final IReportFacade reporter = (IReportFacade )Proxy.newProxyInstance(
+        IReportFacade.class.getClassLoader(),
+        new Class<?>[] { IReportFacade.class }, new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            calls.add(method.getName());
+            return null;
+          }
+        });
+
+    final ITRTestInputProvider inputProv = new ITRTestInputProvider() {
+      public java.io.InputStream getProfileFileStream() {
+        return null;
+      }
+
+      public java.io.InputStream getTestsFileStream() {
+        return null;
+      }
+
+      public File getComponentInputDirectory() {
+        return new File("some-directory");
+      }
+
+      public void setComponent(String component) {
+      }
+    };
+
+    final ITRTestOutputManager outputMgr = new ITRTestOutputManager() {
+      public File createSuiteResultsDirectory() {
+        return null;
+      }
+
+      public File createComponentTestOutputDirectory(String testId) {
+        return new File(testId);
+      }
+
+      public void setComponent(String comp) {
+      }
+    };
+
+    final TRTestSuite suite = new TRTestSuite(suiteId, testCases, inputProv,
+        outputMgr, reporter, 4);
+    assertTrue(suite.run() == true);
+
+    assertEquals(1, Collections.frequency(calls, "startingTestSuite"));
+    assertEquals(1, Collections.frequency(calls, "passedTestSuite"));
+    assertEquals(noTestCases, Collections.frequency(calls, "startingTestCase"));
+    assertEquals(noTestCases, Collections.frequency(calls, "passedTestCase"));
+    assertEquals(2 * noTestCases, Collections.frequency(calls, "startingTest"));
+    assertEquals(2 * noTestCases, Collections.frequency(calls, "passedTest"));
+    assertEquals("startingTestSuite", calls.get(0));
+    assertEquals("passedTestSuite", calls.get(calls.size() - 1));
+  }
+
+  @SuppressWarnings(value = { "serial" })
+  private static class StubTestArguments extends HashMap<String, Object>
+      implements ITestArguments {
+  }
+
+  private static class StubTestDescriptor implements ITestDescriptor {
+    private final String id;
+
+    public StubTestDescriptor(String testId) {
+      id = testId;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public ITestArguments getArguments() {
+      return new StubTestArguments();
+    }
+  }
+
+  private static class StubTestCaseDescriptor implements ITestCaseDescriptor {
+    private final String id;
+
+    public StubTestCaseDescriptor(String testCaseId) {
+      id = testCaseId;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getDescription() {
+      return id + " description";
+    }
+
+    public String getClassName() {
+      return TEST_CLASS;
+    }
+
+    public List<ITestDescriptor> getTests() {
+      final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+      tests.add(new StubTestDescriptor("one"));
+      tests.add(new StubTestDescriptor("two"));
+      return tests;
+    }
+
+    public ITestArguments getSetUpInfo() {
+      return new StubTestArguments();
+    }
+
+    public Map<String, String> getEnvironment() {
+      return null;
+    }
+
+    public long getTimeout() {
+      return 0;
+    }
+  }
 }
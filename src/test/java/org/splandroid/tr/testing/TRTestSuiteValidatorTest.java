@@ -0,0 +1,102 @@
+/*
+ * Copyright Ian Johnson 2012
+ *
+ * This file is part of TestRobot.
+ *
+ * TestRobot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TestRobot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TestRobot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.splandroid.tr.testing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.splandroid.tr.TRException;
+import org.splandroid.tr.parsers.ITestArguments;
+import org.splandroid.tr.parsers.ITestCaseDescriptor;
+import org.splandroid.tr.parsers.ITestDescriptor;
+import org.splandroid.tr.testing.testclasses.TRTestSuiteTestClass;
+
+public class TRTestSuiteValidatorTest extends TestCase {
+  private static final String SUITE_ID = "suite";
+
+  @SuppressWarnings(value = { "serial" })
+  private static class Arguments extends HashMap<String, Object> implements
+      ITestArguments {
+  }
+
+  private static ITestDescriptor createTest(final String testId,
+      final ITestArguments args) {
+    return new ITestDescriptor() {
+      public String getId() {
+        return testId;
+      }
+
+      public ITestArguments getArguments() {
+        return args;
+      }
+    };
+  }
+
+  /**
+   * Tests that a test case whose tests all have annotated test methods is
+   * valid.
+   */
+  public void testValidSuite() throws TRException {
+    final List<ITestDescriptor> tests = new ArrayList<ITestDescriptor>();
+    tests.add(createTest("one", new Arguments()));
+    tests.add(createTest("two", new Arguments()));
+    final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>();
+    testCases.add(new StubTestCaseDescriptor("valid",
+        TRTestSuiteTestClass.class.getName(), tests));
+
+    TRTestSuiteValidator.validate(SUITE_ID, testCases);
+  }
+
+  /**
+   * Tests that every invalid test case is reported at once: a missing test
+   * method, a missing setter and a missing class.
+   */
+  public void testInvalidSuite() {
+    final List<ITestDescriptor> missingTest = new ArrayList<ITestDescriptor>();
+    missingTest.add(createTest("three", new Arguments()));
+
+    final Arguments args = new Arguments();
+    args.put("missing", "value");
+    final List<ITestDescriptor> missingSetter = new ArrayList<ITestDescriptor>();
+    missingSetter.add(createTest("one", args));
+
+    final List<ITestCaseDescriptor> testCases = new ArrayList<ITestCaseDescriptor>();
+    testCases.add(new StubTestCaseDescriptor("missingTest",
+        TRTestSuiteTestClass.class.getName(), missingTest));
+    testCases.add(new StubTestCaseDescriptor("missingSetter",
+        TRTestSuiteTestClass.class.getName(), missingSetter));
+    testCases.add(new StubTestCaseDescriptor("missingClass",
+        "no.such.TestClass", missingTest));
+
+    try {
+      TRTestSuiteValidator.validate(SUITE_ID, testCases);
+      fail("Invalid test suite validated");
+    } catch (TRException ex) {
+      final String msg = ex.getMessage();
+      assertTrue(msg, msg.contains("[missingTest]"));
+      assertTrue(msg, msg.contains("testThree"));
+      assertTrue(msg, msg.contains("[missingSetter]"));
+      assertTrue(msg, msg.contains("setMissing"));
+      assertTrue(msg, msg.contains("[missingClass]"));
+    }
+  }
+}